@@ -0,0 +1,214 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Генератор синтетических дорожных сетей для бенчмарков.
+ * Города получают координаты на плоскости (км), веса дорог выводятся из них:
+ * длина - расстояние с коэффициентом извилистости, время - длина при скорости
+ * класса дороги (минуты), стоимость - топливо и плата за проезд по магистралям.
+ * Одинаковое зерно даёт одинаковую сеть.
+ */
+public class NetworkGenerator {
+    // Среднее расстояние между соседними городами, км
+    private static final double SPACING_KM = 10;
+    // Средняя степень города в случайном геометрическом графе
+    private static final double GEOMETRIC_DEGREE = 6;
+    // Магистрали проходят через каждую HIGHWAY_STEP-ю строку и столбец сетки
+    private static final int HIGHWAY_STEP = 16;
+    // Стоимость топлива и плата за магистраль, рублей за км
+    private static final double FUEL_PER_KM = 4;
+    private static final double TOLL_PER_KM = 3;
+
+    private NetworkGenerator() {
+    }
+
+    /**
+     * Сеть заданного типа из cities городов
+     */
+    public static Graph generate(NetworkType type, int cities, long seed) {
+        if (cities < 2) {
+            throw new IllegalArgumentException("Сеть должна содержать хотя бы два города: " + cities);
+        }
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+        for (int i = 0; i < cities; i++) {
+            graph.addCity(new City(i + 1, "Город " + (i + 1)));
+        }
+        switch (type) {
+            case GRID -> buildGrid(graph, cities, random, false);
+            case RANDOM_GEOMETRIC -> buildGeometric(graph, cities, random);
+            case HIGHWAY -> buildGrid(graph, cities, random, true);
+        }
+        return graph;
+    }
+
+    /**
+     * Случайные запросы между городами сети со случайным порядком приоритетов
+     */
+    public static List<Request> randomRequests(CompactGraph graph, int count, long seed) {
+        Random random = new Random(seed);
+        List<Request> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<Criteria> priorities = new ArrayList<>(List.of(Criteria.values()));
+            Collections.shuffle(priorities, random);
+            requests.add(new Request(graph.name(random.nextInt(graph.cityCount())),
+                graph.name(random.nextInt(graph.cityCount())), priorities));
+        }
+        return requests;
+    }
+
+    /**
+     * Запись сети и запросов во входной файл формата input.txt
+     */
+    public static void writeInput(CompactGraph graph, List<Request> requests, Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("[CITIES]");
+            writer.newLine();
+            for (int node = 0; node < graph.cityCount(); node++) {
+                City city = graph.city(node);
+                writer.write(city.getId() + ": " + city.getName());
+                writer.newLine();
+            }
+            writer.write("[ROADS]");
+            writer.newLine();
+            for (int edge = 0; edge < graph.edgeCount(); edge++) {
+                // Каждая дорога записывается один раз
+                if (edge < graph.twin(edge)) {
+                    writer.write(graph.city(graph.source(edge)).getId() + " - "
+                        + graph.city(graph.target(edge)).getId() + ": "
+                        + graph.weight(edge, Criteria.LENGTH) + ", "
+                        + graph.weight(edge, Criteria.TIME) + ", "
+                        + graph.weight(edge, Criteria.COST));
+                    writer.newLine();
+                }
+            }
+            writer.write("[REQUESTS]");
+            writer.newLine();
+            for (Request request : requests) {
+                writer.write(request.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Сетка со случайным смещением городов; для HIGHWAY поверх неё
+     * прокладываются магистрали между узлами каждой HIGHWAY_STEP-й строки и столбца
+     */
+    private static void buildGrid(Graph graph, int cities, Random random, boolean highways) {
+        int side = (int) Math.ceil(Math.sqrt(cities));
+        float[] x = new float[cities];
+        float[] y = new float[cities];
+        for (int i = 0; i < cities; i++) {
+            x[i] = (float) ((i % side + random.nextDouble() * 0.4 - 0.2) * SPACING_KM);
+            y[i] = (float) ((i / side + random.nextDouble() * 0.4 - 0.2) * SPACING_KM);
+        }
+
+        for (int i = 0; i < cities; i++) {
+            int row = i / side;
+            int col = i % side;
+            if (col + 1 < side && i + 1 < cities) {
+                addLocalRoad(graph, i, i + 1, x, y, random);
+            }
+            if (i + side < cities) {
+                addLocalRoad(graph, i, i + side, x, y, random);
+            }
+            if (highways && row % HIGHWAY_STEP == 0 && col % HIGHWAY_STEP == 0) {
+                if (col + HIGHWAY_STEP < side && i + HIGHWAY_STEP < cities) {
+                    addHighway(graph, i, i + HIGHWAY_STEP, x, y, random);
+                }
+                if (i + HIGHWAY_STEP * side < cities) {
+                    addHighway(graph, i, i + HIGHWAY_STEP * side, x, y, random);
+                }
+            }
+        }
+    }
+
+    /**
+     * Случайный геометрический граф: города равномерно разбросаны по квадрату,
+     * дорогой соединяются города ближе радиуса. Соседи ищутся по сетке ячеек
+     * со стороной не меньше радиуса, упорядоченной сортировкой подсчётом
+     */
+    private static void buildGeometric(Graph graph, int cities, Random random) {
+        double area = SPACING_KM * SPACING_KM * cities;
+        double extent = Math.sqrt(area);
+        double radius = Math.sqrt(GEOMETRIC_DEGREE * area / (Math.PI * cities));
+        int cellsPerSide = Math.max(1, (int) (extent / radius));
+        double cellSize = extent / cellsPerSide;
+
+        float[] x = new float[cities];
+        float[] y = new float[cities];
+        int[] cellStart = new int[cellsPerSide * cellsPerSide + 1];
+        int[] cellOf = new int[cities];
+        for (int i = 0; i < cities; i++) {
+            x[i] = (float) (random.nextDouble() * extent);
+            y[i] = (float) (random.nextDouble() * extent);
+            int cx = Math.min(cellsPerSide - 1, (int) (x[i] / cellSize));
+            int cy = Math.min(cellsPerSide - 1, (int) (y[i] / cellSize));
+            cellOf[i] = cy * cellsPerSide + cx;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cellsPerSide * cellsPerSide; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellCities = new int[cities];
+        int[] cursor = Arrays.copyOf(cellStart, cellsPerSide * cellsPerSide);
+        for (int i = 0; i < cities; i++) {
+            cellCities[cursor[cellOf[i]]++] = i;
+        }
+
+        double radiusSquared = radius * radius;
+        for (int i = 0; i < cities; i++) {
+            int cx = cellOf[i] % cellsPerSide;
+            int cy = cellOf[i] / cellsPerSide;
+            for (int ny = Math.max(0, cy - 1); ny <= Math.min(cellsPerSide - 1, cy + 1); ny++) {
+                for (int nx = Math.max(0, cx - 1); nx <= Math.min(cellsPerSide - 1, cx + 1); nx++) {
+                    int cell = ny * cellsPerSide + nx;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int j = cellCities[k];
+                        double dx = x[i] - x[j];
+                        double dy = y[i] - y[j];
+                        // Каждая пара рассматривается один раз
+                        if (j > i && dx * dx + dy * dy <= radiusSquared) {
+                            addLocalRoad(graph, i, j, x, y, random);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Местная дорога: извилистость 1.1-1.4, скорость 40-80 км/ч, только топливо
+     */
+    private static void addLocalRoad(Graph graph, int from, int to, float[] x, float[] y, Random random) {
+        double length = distance(from, to, x, y) * (1.1 + random.nextDouble() * 0.3);
+        double speed = 40 + random.nextDouble() * 40;
+        addRoad(graph, from, to, length, speed, FUEL_PER_KM);
+    }
+
+    /**
+     * Магистраль: почти прямая, скорость 100-120 км/ч, топливо и плата за проезд
+     */
+    private static void addHighway(Graph graph, int from, int to, float[] x, float[] y, Random random) {
+        double length = distance(from, to, x, y) * (1.02 + random.nextDouble() * 0.05);
+        double speed = 100 + random.nextDouble() * 20;
+        addRoad(graph, from, to, length, speed, FUEL_PER_KM + TOLL_PER_KM);
+    }
+
+    private static void addRoad(Graph graph, int from, int to, double lengthKm, double speed, double costPerKm) {
+        int length = Math.max(1, (int) Math.round(lengthKm));
+        int time = Math.max(1, (int) Math.ceil(lengthKm * 60 / speed));
+        int cost = (int) Math.round(lengthKm * costPerKm);
+        graph.addRoad(from, to, length, time, cost);
+    }
+
+    private static double distance(int from, int to, float[] x, float[] y) {
+        double dx = x[from] - x[to];
+        double dy = y[from] - y[to];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
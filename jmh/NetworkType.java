@@ -0,0 +1,8 @@
+/**
+ * Тип синтетической дорожной сети для генератора NetworkGenerator
+ */
+public enum NetworkType {
+    GRID,              // Прямоугольная сетка городов с дорогами к соседям
+    RANDOM_GEOMETRIC,  // Случайные точки, дороги между близкими городами
+    HIGHWAY            // Сетка местных дорог с редкой сетью скоростных магистралей
+}
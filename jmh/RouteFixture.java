@@ -0,0 +1,143 @@
+import benchmarks.RouteOperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Синтетическая сеть (NetworkGenerator) и случайные запросы к ней для JMH-бенчмарков
+ * из пакета benchmarks. Результаты пакета и входной файл для парсеров готовятся
+ * при первом обращении, поэтому бенчмарки поисков не тратят на них время подготовки.
+ * Кэш маршрутов не подключается: повторный запрос ищется заново
+ */
+public class RouteFixture implements RouteOperations {
+    private static final long NETWORK_SEED = 42;
+    private static final long REQUEST_SEED = 7;
+
+    private final Graph graph;
+    private final List<Request> requests;
+    private ExecutorService executor;
+    private BatchSolver solver;
+    private List<RequestResult> results;
+    private Path input;
+    private Path output;
+
+    public RouteFixture(String network, int cities, int queries, String storage) {
+        graph = NetworkGenerator.generate(NetworkType.valueOf(network), cities, NETWORK_SEED);
+        requests = NetworkGenerator.randomRequests(graph.freeze(), queries, REQUEST_SEED);
+        switch (storage) {
+            case "HEAP" -> {
+            }
+            case "OFF_HEAP" -> graph.moveOffHeap();
+            case "COMPRESSED" -> graph.compress();
+            default -> throw new IllegalArgumentException("Неизвестный способ хранения графа: " + storage);
+        }
+    }
+
+    @Override
+    public int requestCount() {
+        return requests.size();
+    }
+
+    @Override
+    public void setQueueType(String queueType) {
+        graph.setQueueType(QueueType.valueOf(queueType));
+    }
+
+    @Override
+    public long shortestRoute(int request, String criteria) {
+        Request query = requests.get(request);
+        return graph.findShortestRoute(query.getFromCity(), query.getToCity(), Criteria.valueOf(criteria))
+            .getSegmentCount();
+    }
+
+    @Override
+    public long routesByAllCriteria(int request) {
+        Request query = requests.get(request);
+        long checksum = 0;
+        for (Route route : graph.findRoutesByAllCriteria(query.getFromCity(), query.getToCity())) {
+            checksum += route.getSegmentCount();
+        }
+        return checksum;
+    }
+
+    @Override
+    public long compromiseRoute(int request) {
+        Request query = requests.get(request);
+        return graph.findCompromiseRoute(query.getFromCity(), query.getToCity(), query.getPriorities())
+            .getTotalCost();
+    }
+
+    @Override
+    public long paretoRoutes(int request) {
+        Request query = requests.get(request);
+        return graph.findParetoRoutes(query.getFromCity(), query.getToCity()).getRoutes().size();
+    }
+
+    @Override
+    public long solveBatch() throws IOException {
+        if (solver == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            executor = BatchSolver.newExecutor(threads);
+            solver = new BatchSolver(graph, executor, SearchMode.DIJKSTRA, threads * 64);
+        }
+        results = new ArrayList<>(requests.size());
+        solver.solve(requests.iterator(), results::add);
+        return results.size();
+    }
+
+    @Override
+    public long writeResults(boolean channel) throws IOException {
+        if (results == null) {
+            solveBatch();
+        }
+        if (output == null) {
+            output = Files.createTempFile("benchmark-output", ".txt");
+        }
+        if (channel) {
+            try (ChannelResultWriter writer = new ChannelResultWriter(output)) {
+                for (RequestResult result : results) {
+                    writer.writeRequestResult(result);
+                }
+            }
+        } else {
+            ResultWriter writer = new ResultWriter(output.toString());
+            for (RequestResult result : results) {
+                writer.writeRequestResult(result);
+            }
+            writer.close();
+        }
+        return Files.size(output);
+    }
+
+    @Override
+    public long parse(boolean fast) throws IOException {
+        if (input == null) {
+            input = Files.createTempFile("benchmark-input", ".txt");
+            NetworkGenerator.writeInput(graph.freeze(), requests, input);
+        }
+        Graph parsed = fast ? new FastParser(input.toString()).parse() : new Parser(input.toString()).parse();
+        return parsed.edgeCount();
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        try {
+            if (input != null) {
+                Files.deleteIfExists(input);
+            }
+            if (output != null) {
+                Files.deleteIfExists(output);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
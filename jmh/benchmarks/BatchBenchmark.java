@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетная обработка: все QUERIES запросов через BatchSolver на всех ядрах
+ * (три кратчайших маршрута и компромиссный на запрос)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+    private static final int QUERIES = 200;
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "HIGHWAY"})
+    public String network;
+
+    @Param({"1000", "10000", "100000"})
+    public int cities;
+
+    private RouteOperations operations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        operations = RouteOperations.create(network, cities, QUERIES, "HEAP");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        operations.close();
+    }
+
+    @Benchmark
+    public long solveBatch() throws IOException {
+        return operations.solveBatch();
+    }
+}
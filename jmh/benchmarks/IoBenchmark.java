@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ввод и вывод: запись результатов QUERIES запросов (ResultWriter и ChannelResultWriter)
+ * и разбор входного файла с сетью и запросами (Parser и FastParser).
+ * Результаты и входной файл готовятся до измерений
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IoBenchmark {
+    private static final int QUERIES = 200;
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "HIGHWAY"})
+    public String network;
+
+    @Param({"1000", "10000", "100000"})
+    public int cities;
+
+    private RouteOperations operations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        operations = RouteOperations.create(network, cities, QUERIES, "HEAP");
+        operations.writeResults(true);
+        operations.parse(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        operations.close();
+    }
+
+    @Benchmark
+    public long resultWriter() throws IOException {
+        return operations.writeResults(false);
+    }
+
+    @Benchmark
+    public long channelResultWriter() throws IOException {
+        return operations.writeResults(true);
+    }
+
+    @Benchmark
+    public long parser() throws IOException {
+        return operations.parse(false);
+    }
+
+    @Benchmark
+    public long fastParser() throws IOException {
+        return operations.parse(true);
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одиночные запросы к большим сетям из 1 и 10 млн городов, на куче и по сжатому графу.
+ * Сеть из 10 млн городов занимает в куче несколько гигабайт, поэтому форк получает -Xmx16g
+ * (меняется параметром -jvmArgsAppend). Без этих размеров: java -jar benchmarks.jar -e LargeNetwork
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class LargeNetworkBenchmark {
+    private static final int QUERIES = 50;
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "HIGHWAY"})
+    public String network;
+
+    @Param({"1000000", "10000000"})
+    public int cities;
+
+    @Param({"HEAP", "COMPRESSED"})
+    public String storage;
+
+    private RouteOperations operations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        operations = RouteOperations.create(network, cities, QUERIES, storage);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        operations.close();
+    }
+
+    @Benchmark
+    public long shortestTime() {
+        return operations.shortestRoute(nextRequest(), "TIME");
+    }
+
+    @Benchmark
+    public long compromiseRoute() {
+        return operations.compromiseRoute(nextRequest());
+    }
+
+    private int nextRequest() {
+        int request = next;
+        next = (next + 1) % operations.requestCount();
+        return request;
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одиночные запросы к синтетической сети: кратчайшие маршруты по каждому критерию,
+ * маршруты по всем критериям, компромиссный маршрут и Парето-фронт.
+ * Каждый вызов обрабатывает следующий из QUERIES случайных запросов по кругу
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    private static final int QUERIES = 200;
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "HIGHWAY"})
+    public String network;
+
+    @Param({"1000", "10000", "100000"})
+    public int cities;
+
+    private RouteOperations operations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        operations = RouteOperations.create(network, cities, QUERIES, "HEAP");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        operations.close();
+    }
+
+    @Benchmark
+    public long shortestLength() {
+        return operations.shortestRoute(nextRequest(), "LENGTH");
+    }
+
+    @Benchmark
+    public long shortestTime() {
+        return operations.shortestRoute(nextRequest(), "TIME");
+    }
+
+    @Benchmark
+    public long shortestCost() {
+        return operations.shortestRoute(nextRequest(), "COST");
+    }
+
+    @Benchmark
+    public long routesByAllCriteria() {
+        return operations.routesByAllCriteria(nextRequest());
+    }
+
+    @Benchmark
+    public long compromiseRoute() {
+        return operations.compromiseRoute(nextRequest());
+    }
+
+    @Benchmark
+    public long paretoRoutes() {
+        return operations.paretoRoutes(nextRequest());
+    }
+
+    private int nextRequest() {
+        int request = next;
+        next = (next + 1) % operations.requestCount();
+        return request;
+    }
+}
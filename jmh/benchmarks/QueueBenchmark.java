@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение очередей с приоритетом (QueueType) в поиске Дейкстры по каждому критерию:
+ * стандартная PriorityQueue, индексированная d-арная куча и очередь корзин Дайла.
+ * Каждый вызов обрабатывает следующий из QUERIES случайных запросов по кругу
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBenchmark {
+    private static final int QUERIES = 200;
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "HIGHWAY"})
+    public String network;
+
+    @Param({"10000", "100000"})
+    public int cities;
+
+    @Param({"PRIORITY_QUEUE", "DARY_HEAP", "BUCKET_QUEUE"})
+    public String queue;
+
+    @Param({"LENGTH", "TIME", "COST"})
+    public String criteria;
+
+    private RouteOperations operations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        operations = RouteOperations.create(network, cities, QUERIES, "HEAP");
+        operations.setQueueType(queue);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        operations.close();
+    }
+
+    @Benchmark
+    public long shortestRoute() {
+        return operations.shortestRoute(nextRequest(), criteria);
+    }
+
+    private int nextRequest() {
+        int request = next;
+        next = (next + 1) % operations.requestCount();
+        return request;
+    }
+}
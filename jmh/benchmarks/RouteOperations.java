@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.io.IOException;
+
+/**
+ * Измеряемые операции над синтетической сетью.
+ * JMH не принимает бенчмарки из пакета по умолчанию, а классы программы лежат именно в нём
+ * и недоступны из именованного пакета, поэтому бенчмарки работают с сетью через этот интерфейс.
+ * Реализация - RouteFixture в пакете по умолчанию, создаётся отражением один раз на сеть.
+ * Каждая операция возвращает контрольное значение для Blackhole
+ */
+public interface RouteOperations extends AutoCloseable {
+    /**
+     * Сеть network (GRID, RANDOM_GEOMETRIC, HIGHWAY) из cities городов с queries
+     * случайными запросами; storage - хранение графа (HEAP, OFF_HEAP, COMPRESSED)
+     */
+    static RouteOperations create(String network, int cities, int queries, String storage) {
+        try {
+            return Class.forName("RouteFixture")
+                .asSubclass(RouteOperations.class)
+                .getConstructor(String.class, int.class, int.class, String.class)
+                .newInstance(network, cities, queries, storage);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось подготовить сеть " + network + " из " + cities + " городов", e);
+        }
+    }
+
+    /**
+     * Число запросов; номера запросов в операциях - от 0 до requestCount() - 1
+     */
+    int requestCount();
+
+    /**
+     * Очередь с приоритетом поисков (PRIORITY_QUEUE, DARY_HEAP, BUCKET_QUEUE)
+     */
+    void setQueueType(String queueType);
+
+    /**
+     * Кратчайший маршрут запроса по критерию criteria (LENGTH, TIME, COST)
+     */
+    long shortestRoute(int request, String criteria);
+
+    /**
+     * Маршруты запроса по всем трём критериям
+     */
+    long routesByAllCriteria(int request);
+
+    /**
+     * Компромиссный маршрут запроса по его приоритетам
+     */
+    long compromiseRoute(int request);
+
+    /**
+     * Парето-фронт маршрутов запроса
+     */
+    long paretoRoutes(int request);
+
+    /**
+     * Все запросы пакетом через BatchSolver на всех ядрах
+     */
+    long solveBatch() throws IOException;
+
+    /**
+     * Запись результатов всех запросов: ResultWriter или ChannelResultWriter (channel)
+     */
+    long writeResults(boolean channel) throws IOException;
+
+    /**
+     * Разбор входного файла с сетью и запросами: Parser или FastParser (fast)
+     */
+    long parse(boolean fast) throws IOException;
+
+    /**
+     * Остановка потоков пакетной обработки и удаление временных файлов
+     */
+    @Override
+    void close();
+}
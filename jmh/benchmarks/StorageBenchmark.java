@@ -0,0 +1,70 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одиночные запросы при разных способах хранения графа: массивы на куче,
+ * прямые буферы вне кучи (Graph.moveOffHeap) и сжатый граф (Graph.compress).
+ * Каждый вызов обрабатывает следующий из QUERIES случайных запросов по кругу
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final int QUERIES = 200;
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "HIGHWAY"})
+    public String network;
+
+    @Param({"1000", "10000", "100000"})
+    public int cities;
+
+    @Param({"HEAP", "OFF_HEAP", "COMPRESSED"})
+    public String storage;
+
+    private RouteOperations operations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        operations = RouteOperations.create(network, cities, QUERIES, storage);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        operations.close();
+    }
+
+    @Benchmark
+    public long shortestLength() {
+        return operations.shortestRoute(nextRequest(), "LENGTH");
+    }
+
+    @Benchmark
+    public long compromiseRoute() {
+        return operations.compromiseRoute(nextRequest());
+    }
+
+    private int nextRequest() {
+        int request = next;
+        next = (next + 1) % operations.requestCount();
+        return request;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Целенаправленный поиск A* с нижними оценками по ориентирам (ALT).
+ * Ключ города в очереди - расстояние от source плюс нижняя оценка до target.
+ * Оценка согласована (максимум согласованных оценок по ориентирам),
+ * поэтому каждый город извлекается не более одного раза
+ */
+public class AltSearch {
+    private AltSearch() {
+    }
+
+    /**
+     * Поиск кратчайшего пути от source до target по заданному критерию.
+     * Возвращает последовательность рёбер или null, если путь не существует
+     */
+    public static int[] shortestPath(CompactGraph graph, Landmarks landmarks, int source, int target,
+                                     Criteria criteria, QueueType queueType) {
+        return shortestPath(graph, landmarks, source, target, criteria, queueType, null);
+    }
+
+    /**
+     * То же с подсчётом работы поиска в stats (null - без подсчёта)
+     */
+    public static int[] shortestPath(CompactGraph graph, Landmarks landmarks, int source, int target,
+                                     Criteria criteria, QueueType queueType, SearchStats stats) {
+        if (landmarks.lowerBound(criteria, source, target) == Integer.MAX_VALUE) {
+            return null;
+        }
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph);
+        try {
+            // Ключи A* растут не только на вес ребра, поэтому окна очереди корзин недостаточно
+            NodeQueue queue = workspace.queue(graph, criteria,
+                queueType == QueueType.BUCKET_QUEUE ? QueueType.DARY_HEAP : queueType);
+
+            workspace.update(source, 0, -1);
+            queue.push(source, landmarks.lowerBound(criteria, source, target));
+            long relaxed = 0;
+            int pushes = 1;
+            int pops = 0;
+            int peak = 0;
+
+            while (!queue.isEmpty()) {
+                peak = Math.max(peak, queue.size());
+                int node = queue.pop();
+                pops++;
+                if (node == target) {
+                    break;
+                }
+
+                int distance = workspace.distance(node);
+                int end = graph.edgeEnd(node);
+                relaxed += end - graph.edgeStart(node);
+                for (int edge = graph.edgeStart(node); edge < end; edge++) {
+                    int neighbor = graph.target(edge);
+                    int newDistance = distance + graph.weight(edge, criteria);
+
+                    if (newDistance < workspace.distance(neighbor)) {
+                        workspace.update(neighbor, newDistance, edge);
+                        queue.push(neighbor, newDistance + landmarks.lowerBound(criteria, neighbor, target));
+                        pushes++;
+                    }
+                }
+            }
+
+            if (stats != null) {
+                stats.add(pops, relaxed, pushes, pops, peak);
+            }
+            return workspace.path(graph, source, target);
+        } finally {
+            workspace.release();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CSR-представление графа в примитивных массивах на куче
+ */
+public class ArrayCompactGraph extends CompactGraph {
+    private final City[] cities;
+    private final String[] names;
+    private final Map<String, Integer> index;
+    private final int[] offsets;
+    private final int[] sources;
+    private final int[] targets;
+    private final int[] twins;
+    private final int[][] weights;
+    private final int[] maxWeights;
+
+    /**
+     * Граф с той же структурой, что у base (массивы и таблица названий общие), и весами weights
+     */
+    private ArrayCompactGraph(ArrayCompactGraph base, int[][] weights, int[] maxWeights) {
+        this.cities = base.cities;
+        this.names = base.names;
+        this.index = base.index;
+        this.offsets = base.offsets;
+        this.sources = base.sources;
+        this.targets = base.targets;
+        this.twins = base.twins;
+        this.weights = weights;
+        this.maxWeights = maxWeights;
+    }
+
+    ArrayCompactGraph(City[] cities, int[] offsets, int[] sources, int[] targets,
+                      int[] twins, int[][] weights) {
+        this.cities = cities;
+        this.names = new String[cities.length];
+        this.index = new HashMap<>(cities.length * 2);
+        for (int i = 0; i < cities.length; i++) {
+            names[i] = cities[i].getName();
+            index.put(names[i], i);
+        }
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.twins = twins;
+        this.weights = weights;
+        this.maxWeights = new int[weights.length];
+        for (int c = 0; c < weights.length; c++) {
+            for (int weight : weights[c]) {
+                maxWeights[c] = Math.max(maxWeights[c], weight);
+            }
+        }
+    }
+
+    @Override
+    int[] copyWeights(Criteria criteria) {
+        return weights[criteria.ordinal()].clone();
+    }
+
+    /**
+     * Копируются только массивы весов изменённых критериев,
+     * структура и веса остальных критериев - общие с этим графом
+     */
+    @Override
+    CompactGraph withWeights(WeightChanges changes) {
+        int[][] nextWeights = weights.clone();
+        int[] nextMaxWeights = maxWeights.clone();
+        for (Criteria criteria : Criteria.values()) {
+            int c = criteria.ordinal();
+            if (changes.count(criteria) > 0) {
+                nextWeights[c] = weights[c].clone();
+                nextMaxWeights[c] = changes.applyTo(IntBuffer.wrap(nextWeights[c]), criteria, maxWeights[c]);
+            }
+        }
+        return new ArrayCompactGraph(this, nextWeights, nextMaxWeights);
+    }
+
+    @Override
+    public int cityCount() {
+        return cities.length;
+    }
+
+    @Override
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    @Override
+    public int indexOf(String name) {
+        Integer id = index.get(name);
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    public City city(int node) {
+        return cities[node];
+    }
+
+    @Override
+    public String name(int node) {
+        return names[node];
+    }
+
+    @Override
+    Object nameTable() {
+        return names;
+    }
+
+    @Override
+    public int edgeStart(int node) {
+        return offsets[node];
+    }
+
+    @Override
+    public int edgeEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    @Override
+    public int source(int edge) {
+        return sources[edge];
+    }
+
+    @Override
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    @Override
+    public int twin(int edge) {
+        return twins[edge];
+    }
+
+    @Override
+    public int weight(int edge, Criteria criteria) {
+        return weights[criteria.ordinal()][edge];
+    }
+
+    @Override
+    public int maxWeight(Criteria criteria) {
+        return maxWeights[criteria.ordinal()];
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Параллельная обработка пакета запросов.
+ * Запросы и три поиска по критериям внутри каждого запроса выполняются
+ * на переданном исполнителе, а результаты отдаются получателю строго
+ * в порядке входных запросов. Запросы обрабатываются порциями по window штук,
+ * в работе одновременно не больше двух порций, поэтому память не растёт
+ * с размером пакета.
+ *
+ * В режиме DIJKSTRA запросы порции с общим городом отправления группируются
+ * (RequestPlanner): на группу и критерий выполняется один поиск до всех
+ * городов назначения группы. С setFusedSearch(true) три поиска группы
+ * выполняются одним совмещённым поиском (FusedSearch).
+ *
+ * Для непрерывных потоков запросов есть режим stream: запросы не собираются
+ * в порции, а результаты записываются отдельным потоком сразу по готовности.
+ */
+public class BatchSolver {
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+    // Признак конца потока в очереди записи
+    private static final Pending END = new Pending(null, null);
+
+    private final Graph graph;
+    private final Executor executor;
+    private final SearchMode mode;
+    private final int window;
+    private volatile boolean fusedSearch;
+
+    public BatchSolver(Graph graph, Executor executor, SearchMode mode, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Размер окна должен быть положительным: " + window);
+        }
+        this.graph = graph;
+        this.executor = executor;
+        this.mode = mode;
+        this.window = window;
+    }
+
+    /**
+     * Совмещённый поиск по всем критериям для групп режима DIJKSTRA
+     */
+    public void setFusedSearch(boolean fusedSearch) {
+        this.fusedSearch = fusedSearch;
+    }
+
+    /**
+     * Получатель результатов в порядке входных запросов
+     */
+    @FunctionalInterface
+    public interface ResultConsumer {
+        void accept(RequestResult result) throws IOException;
+    }
+
+    /**
+     * Пул из threads обычных (платформенных) потоков-демонов. Сборка нацелена на Java 17,
+     * где виртуальных потоков нет; задачи, которые ждут результатов (например,
+     * обработчики HTTP), получают отдельный пул с запасом потоков
+     */
+    public static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "route-solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Обработка всех запросов с сохранением порядка результатов
+     */
+    public void solve(Iterator<Request> requests, ResultConsumer consumer) throws IOException {
+        ArrayDeque<CompletableFuture<List<RequestResult>>> inFlight = new ArrayDeque<>();
+        while (requests.hasNext()) {
+            List<Request> chunk = new ArrayList<>(window);
+            while (requests.hasNext() && chunk.size() < window) {
+                chunk.add(requests.next());
+            }
+            inFlight.add(submitChunk(chunk));
+            if (inFlight.size() >= MAX_CHUNKS_IN_FLIGHT) {
+                emit(await(inFlight.poll()), consumer);
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            emit(await(inFlight.poll()), consumer);
+        }
+    }
+
+    /**
+     * Потоковая обработка: конвейер чтение -> поиск -> запись.
+     * Запросы читаются по одному в вызывающем потоке и сразу отправляются на поиск,
+     * поток записи отдаёт результаты получателю в порядке запросов по мере готовности.
+     * В работе одновременно не больше capacity запросов: при заполнении очереди
+     * чтение ждёт записи, поэтому память не зависит от длины потока.
+     * Ошибка поиска по отдельному запросу выводится в stderr и не прерывает поток;
+     * ошибка получателя (IOException или RuntimeException) останавливает чтение
+     * и передаётся вызывающему после завершения потока записи
+     */
+    public void stream(Iterator<Request> requests, ResultConsumer consumer, int capacity) throws IOException {
+        BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(capacity);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> drain(queue, consumer, failure), "route-writer");
+        writer.start();
+
+        try {
+            while (failure.get() == null && requests.hasNext()) {
+                Request request = requests.next();
+                put(queue, new Pending(request, submit(request)));
+            }
+        } finally {
+            put(queue, END);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание записи результатов прервано");
+            }
+        }
+        Exception error = failure.get();
+        if (error instanceof IOException io) {
+            throw io;
+        }
+        if (error != null) {
+            throw (RuntimeException) error;
+        }
+    }
+
+    /**
+     * Цикл потока записи. После ошибки получателя очередь продолжает опустошаться до END,
+     * чтобы читающий поток не заблокировался на заполненной очереди
+     */
+    private static void drain(BlockingQueue<Pending> queue, ResultConsumer consumer,
+                              AtomicReference<Exception> failure) {
+        while (true) {
+            Pending pending;
+            try {
+                pending = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, new InterruptedIOException("Запись результатов прервана"));
+                return;
+            }
+            if (pending == END) {
+                return;
+            }
+            if (failure.get() != null) {
+                continue;
+            }
+
+            RequestResult result;
+            try {
+                result = await(pending.result());
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка обработки запроса: " + pending.request() + " - " + e.getMessage());
+                continue;
+            }
+            try {
+                consumer.accept(result);
+            } catch (IOException | RuntimeException e) {
+                failure.set(e);
+            }
+        }
+    }
+
+    private static void put(BlockingQueue<Pending> queue, Pending pending) throws InterruptedIOException {
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Чтение запросов прервано");
+        }
+    }
+
+    private static void emit(List<RequestResult> results, ResultConsumer consumer) throws IOException {
+        for (RequestResult result : results) {
+            consumer.accept(result);
+        }
+    }
+
+    /**
+     * Запуск обработки порции запросов
+     */
+    private CompletableFuture<List<RequestResult>> submitChunk(List<Request> chunk) {
+        if (mode == SearchMode.DIJKSTRA) {
+            return submitGrouped(chunk);
+        }
+
+        List<CompletableFuture<RequestResult>> futures = new ArrayList<>(chunk.size());
+        for (Request request : chunk) {
+            futures.add(submit(request));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<RequestResult> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<RequestResult> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Один поиск на группу (город отправления, критерий) до всех городов назначения группы
+     */
+    private CompletableFuture<List<RequestResult>> submitGrouped(List<Request> chunk) {
+        Map<String, RequestPlanner.SourceGroup> groups = RequestPlanner.plan(chunk);
+        Map<String, List<CompletableFuture<List<Route>>>> routes = new HashMap<>();
+        List<CompletableFuture<?>> all = new ArrayList<>();
+
+        // Компромисс ищется отдельно для каждого запроса (лексикографический поиск)
+        List<CompletableFuture<Route>> compromises = new ArrayList<>(chunk.size());
+        for (Request request : chunk) {
+            CompletableFuture<Route> compromise = compromise(request);
+            compromises.add(compromise);
+            all.add(compromise);
+        }
+
+        for (RequestPlanner.SourceGroup group : groups.values()) {
+            List<CompletableFuture<List<Route>>> byCriteria = new ArrayList<>();
+            if (fusedSearch) {
+                CompletableFuture<List<List<Route>>> fused = CompletableFuture.supplyAsync(
+                    () -> graph.findRoutesByAllCriteria(group.getFromCity(), group.getToCities()), executor);
+                for (Criteria criteria : Criteria.values()) {
+                    CompletableFuture<List<Route>> future =
+                        fused.thenApply(routesByCriteria -> routesByCriteria.get(criteria.ordinal()));
+                    byCriteria.add(future);
+                    all.add(future);
+                }
+            } else {
+                for (Criteria criteria : Criteria.values()) {
+                    CompletableFuture<List<Route>> future = CompletableFuture.supplyAsync(
+                        () -> graph.findShortestRoutes(group.getFromCity(), group.getToCities(), criteria),
+                        executor);
+                    byCriteria.add(future);
+                    all.add(future);
+                }
+            }
+            routes.put(group.getFromCity(), byCriteria);
+        }
+
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<RequestResult> results = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                Request request = chunk.get(i);
+                int index = groups.get(request.getFromCity()).indexOf(request.getToCity());
+                List<CompletableFuture<List<Route>>> byCriteria = routes.get(request.getFromCity());
+                Route shortest = byCriteria.get(Criteria.LENGTH.ordinal()).join().get(index);
+                Route fastest = byCriteria.get(Criteria.TIME.ordinal()).join().get(index);
+                Route cheapest = byCriteria.get(Criteria.COST.ordinal()).join().get(index);
+                Route compromise = compromises.get(i).join();
+                results.add(new RequestResult(request, shortest, fastest, cheapest, compromise));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Запуск трёх независимых поисков (или одного совмещённого) и поиска компромиссного маршрута.
+     * Задачи не блокируют потоки исполнителя в ожидании друг друга
+     */
+    public CompletableFuture<RequestResult> submit(Request request) {
+        CompletableFuture<Route> compromise = compromise(request);
+        if (fusedSearch && mode == SearchMode.DIJKSTRA) {
+            CompletableFuture<List<Route>> routes = CompletableFuture.supplyAsync(
+                () -> graph.findRoutesByAllCriteria(request.getFromCity(), request.getToCity()), executor);
+            return routes.thenCombine(compromise, (byCriteria, best) -> new RequestResult(request,
+                byCriteria.get(Criteria.LENGTH.ordinal()), byCriteria.get(Criteria.TIME.ordinal()),
+                byCriteria.get(Criteria.COST.ordinal()), best));
+        }
+
+        CompletableFuture<Route> shortest = search(request, Criteria.LENGTH);
+        CompletableFuture<Route> fastest = search(request, Criteria.TIME);
+        CompletableFuture<Route> cheapest = search(request, Criteria.COST);
+
+        return CompletableFuture.allOf(shortest, fastest, cheapest, compromise).thenApply(ignored ->
+            new RequestResult(request, shortest.join(), fastest.join(), cheapest.join(), compromise.join()));
+    }
+
+    private CompletableFuture<Route> search(Request request, Criteria criteria) {
+        return CompletableFuture.supplyAsync(
+            () -> graph.findShortestRoute(request.getFromCity(), request.getToCity(), criteria, mode),
+            executor);
+    }
+
+    private CompletableFuture<Route> compromise(Request request) {
+        return CompletableFuture.supplyAsync(
+            () -> graph.findCompromiseRoute(request.getFromCity(), request.getToCity(), request.getPriorities()),
+            executor);
+    }
+
+    /**
+     * Ожидание результата с пробросом исходного исключения поиска
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Запрос, отправленный на поиск, в очереди записи
+     */
+    private record Pending(Request request, CompletableFuture<RequestResult> result) {
+    }
+}
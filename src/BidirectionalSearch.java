@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * Двунаправленный алгоритм Дейкстры для запросов "из точки в точку".
+ * Прямой поиск идёт от source, обратный - от target. Так как все дороги
+ * двусторонние, обратный поиск использует те же исходящие рёбра.
+ * Поиск останавливается, когда сумма последних извлечённых ключей обеих сторон
+ * не меньше лучшего найденного пути через точку встречи
+ */
+public class BidirectionalSearch {
+    private BidirectionalSearch() {
+    }
+
+    /**
+     * Поиск кратчайшего пути от source до target по заданному критерию.
+     * Возвращает последовательность рёбер или null, если путь не существует
+     */
+    public static int[] shortestPath(CompactGraph graph, int source, int target,
+                                     Criteria criteria, QueueType queueType) {
+        return shortestPath(graph, source, target, criteria, queueType, null);
+    }
+
+    /**
+     * То же с подсчётом работы поиска в stats (null - без подсчёта)
+     */
+    public static int[] shortestPath(CompactGraph graph, int source, int target,
+                                     Criteria criteria, QueueType queueType, SearchStats stats) {
+        if (source == target) {
+            return new int[0];
+        }
+
+        SearchWorkspace[] workspaces = {SearchWorkspace.acquire(graph), SearchWorkspace.acquire(graph)};
+        try {
+            NodeQueue[] queues = {
+                workspaces[0].queue(graph, criteria, queueType),
+                workspaces[1].queue(graph, criteria, queueType)
+            };
+            int[] lastKeys = new int[2];
+
+            workspaces[0].update(source, 0, -1);
+            workspaces[1].update(target, 0, -1);
+            queues[0].push(source, 0);
+            queues[1].push(target, 0);
+
+            int best = Integer.MAX_VALUE;
+            int meeting = -1;
+            long relaxed = 0;
+            int pushes = 2;
+            int pops = 0;
+            int settled = 0;
+            int peak = 0;
+
+            while (!queues[0].isEmpty() && !queues[1].isEmpty()) {
+                // Расширяем сторону с меньшей очередью
+                int side = queues[0].size() <= queues[1].size() ? 0 : 1;
+                SearchWorkspace own = workspaces[side];
+                SearchWorkspace other = workspaces[1 - side];
+
+                peak = Math.max(peak, queues[0].size() + queues[1].size());
+                int node = queues[side].pop();
+                int distance = own.distance(node);
+                pops++;
+
+                // Критерий остановки: ни один путь через неисследованные города не короче лучшего
+                if (best != Integer.MAX_VALUE && (long) distance + lastKeys[1 - side] >= best) {
+                    break;
+                }
+                lastKeys[side] = distance;
+                settled++;
+
+                int end = graph.edgeEnd(node);
+                relaxed += end - graph.edgeStart(node);
+                for (int edge = graph.edgeStart(node); edge < end; edge++) {
+                    int neighbor = graph.target(edge);
+                    int newDistance = distance + graph.weight(edge, criteria);
+
+                    if (newDistance < own.distance(neighbor)) {
+                        own.update(neighbor, newDistance, edge);
+                        queues[side].push(neighbor, newDistance);
+                        pushes++;
+
+                        // Проверка точки встречи с другой стороной
+                        int otherDistance = other.distance(neighbor);
+                        if (otherDistance != Integer.MAX_VALUE && newDistance + otherDistance < best) {
+                            best = newDistance + otherDistance;
+                            meeting = neighbor;
+                        }
+                    }
+                }
+            }
+
+            if (stats != null) {
+                stats.add(settled, relaxed, pushes, pops, peak);
+            }
+            if (meeting < 0) {
+                return null;
+            }
+            return joinPaths(graph, workspaces, source, target, meeting);
+        } finally {
+            workspaces[0].release();
+            workspaces[1].release();
+        }
+    }
+
+    /**
+     * Склейка пути source -> meeting из прямого поиска и meeting -> target из обратного.
+     * Рёбра обратного поиска направлены к meeting, поэтому берутся в обратном направлении
+     */
+    private static int[] joinPaths(CompactGraph graph, SearchWorkspace[] workspaces,
+                                   int source, int target, int meeting) {
+        int[] forward = workspaces[0].path(graph, source, meeting);
+        SearchWorkspace backward = workspaces[1];
+
+        int backwardHops = 0;
+        for (int node = meeting; node != target; node = graph.source(backward.predecessor(node))) {
+            backwardHops++;
+        }
+
+        int[] edges = Arrays.copyOf(forward, forward.length + backwardHops);
+        int position = forward.length;
+        for (int node = meeting; node != target; node = graph.source(backward.predecessor(node))) {
+            edges[position++] = graph.twin(backward.predecessor(node));
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * Кольцевая очередь корзин (алгоритм Дейкстры в варианте Дайла).
+ * Подходит для небольших целых весов: при максимальном весе ребра C
+ * все ключи в очереди лежат в окне [min, min + C], поэтому достаточно C + 1 корзины.
+ * Корзины - двусвязные списки на массивах, что даёт уменьшение ключа за O(1).
+ * Ключи должны извлекаться монотонно, как в алгоритме Дейкстры
+ */
+public class BucketQueue implements NodeQueue {
+    private final int[] heads;
+    private final int[] next;
+    private final int[] previous;
+    private final int[] keys;
+    private int current;
+    private int size;
+
+    public BucketQueue(int capacity, int maxWeight) {
+        this.heads = new int[maxWeight + 1];
+        this.next = new int[capacity];
+        this.previous = new int[capacity];
+        this.keys = new int[capacity];
+        Arrays.fill(heads, -1);
+        Arrays.fill(keys, -1);
+    }
+
+    @Override
+    public void push(int node, int key) {
+        int oldKey = keys[node];
+        if (oldKey >= 0) {
+            if (oldKey <= key) {
+                return;
+            }
+            unlink(node, oldKey);
+        } else {
+            if (size == 0) {
+                current = key;
+            }
+            size++;
+        }
+
+        // Вставка в начало списка корзины
+        int bucket = key % heads.length;
+        int head = heads[bucket];
+        next[node] = head;
+        previous[node] = -1;
+        if (head >= 0) {
+            previous[head] = node;
+        }
+        heads[bucket] = node;
+        keys[node] = key;
+        current = Math.min(current, key);
+    }
+
+    @Override
+    public int pop() {
+        // Ищем следующую непустую корзину
+        while (heads[current % heads.length] < 0) {
+            current++;
+        }
+        int node = heads[current % heads.length];
+        unlink(node, current);
+        keys[node] = -1;
+        size--;
+        return node;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        // Освобождаем только непустые корзины окна
+        for (int i = 0; i < heads.length && size > 0; i++) {
+            for (int node = heads[i]; node >= 0; node = next[node]) {
+                keys[node] = -1;
+                size--;
+            }
+            heads[i] = -1;
+        }
+        size = 0;
+    }
+
+    private void unlink(int node, int key) {
+        int prev = previous[node];
+        int following = next[node];
+        if (prev >= 0) {
+            next[prev] = following;
+        } else {
+            heads[key % heads.length] = following;
+        }
+        if (following >= 0) {
+            previous[following] = prev;
+        }
+    }
+}
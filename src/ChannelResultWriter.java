@@ -0,0 +1,180 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Запись результатов в файл через FileChannel в том же формате, что и ResultWriter.
+ * Строки кодируются в UTF-8 сразу в прямой ByteBuffer без промежуточных String:
+ * названия городов кодируются один раз и берутся из кэша (для компактных маршрутов -
+ * по индексу города в таблице названий снимка графа, которая не меняется
+ * при изменении весов дорог), числа записываются по цифрам,
+ * буфер сбрасывается в канал только при заполнении и по flush/close
+ */
+public class ChannelResultWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] ARROW = bytes(" -> ");
+    private static final byte[] NOT_FOUND = bytes(": Маршрут не найден");
+    private static final byte[] LENGTH = bytes(" | Д=");
+    private static final byte[] TIME = bytes(", В=");
+    private static final byte[] COST = bytes(", С=");
+    private static final byte[] SEPARATOR = bytes(": ");
+    private static final byte[] NEW_LINE = bytes(System.lineSeparator());
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    // Названия городов и типов маршрутов в UTF-8
+    private final Map<String, byte[]> encoded = new HashMap<>();
+    // Названия городов по индексам для таблицы названий последнего встреченного снимка графа
+    // (общей для снимков после изменения весов)
+    private Object nameTable;
+    private byte[][] nodeNames;
+    private final byte[] digits = new byte[20];
+
+    public ChannelResultWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Запись результата маршрута с указанием типа
+     */
+    public void writeRouteResult(String routeType, Route route) throws IOException {
+        put(encode(routeType));
+        if (route.isEmpty()) {
+            put(NOT_FOUND);
+            put(NEW_LINE);
+            return;
+        }
+
+        put(SEPARATOR);
+        for (int i = 0; i < route.getCityCount(); i++) {
+            if (i > 0) {
+                put(ARROW);
+            }
+            put(cityName(route, i));
+        }
+        put(LENGTH);
+        putNumber(route.getTotalLength());
+        put(TIME);
+        putNumber(route.getTotalTime());
+        put(COST);
+        putNumber(route.getTotalCost());
+        put(NEW_LINE);
+    }
+
+    /**
+     * Запись всех маршрутов по запросу с разделяющей пустой строкой
+     */
+    public void writeRequestResult(RequestResult result) throws IOException {
+        writeRouteResult(ResultWriter.routeType(Criteria.LENGTH), result.getShortestRoute());
+        writeRouteResult(ResultWriter.routeType(Criteria.TIME), result.getFastestRoute());
+        writeRouteResult(ResultWriter.routeType(Criteria.COST), result.getCheapestRoute());
+        writeRouteResult("КОМПРОМИСС", result.getCompromiseRoute());
+        writeEmptyLine();
+    }
+
+    /**
+     * Запись пустой строки для разделения запросов
+     */
+    public void writeEmptyLine() throws IOException {
+        put(NEW_LINE);
+    }
+
+    /**
+     * Сброс буфера в файл, чтобы записанные результаты сразу стали видны читателю
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Сброс буфера и закрытие канала
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Название города в UTF-8. Для компактного маршрута берётся по индексу города
+     * в снимке графа, без обращения к строке названия
+     */
+    private byte[] cityName(Route route, int index) {
+        CompactGraph graph = route.graph();
+        if (graph == null) {
+            return encode(route.getCityName(index));
+        }
+        if (graph.nameTable() != nameTable) {
+            nameTable = graph.nameTable();
+            nodeNames = new byte[graph.cityCount()][];
+        }
+        int node = route.node(index);
+        byte[] bytes = nodeNames[node];
+        if (bytes == null) {
+            bytes = bytes(graph.name(node));
+            nodeNames[node] = bytes;
+        }
+        return bytes;
+    }
+
+    private byte[] encode(String text) {
+        byte[] bytes = encoded.get(text);
+        if (bytes == null) {
+            bytes = bytes(text);
+            encoded.put(text, bytes);
+        }
+        return bytes;
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            flush();
+            if (bytes.length > buffer.capacity()) {
+                // Строка длиннее буфера пишется в канал напрямую
+                ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+                return;
+            }
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * Десятичная запись числа: цифры собираются с конца во временном массиве
+     */
+    private void putNumber(long value) throws IOException {
+        if (buffer.remaining() < digits.length) {
+            flush();
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+        }
+        int position = digits.length;
+        long rest = value;
+        do {
+            digits[--position] = (byte) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        buffer.put(digits, position, digits.length - position);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,220 @@
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Замороженное компактное представление графа в формате CSR
+ * (compressed sparse row).
+ * Города пронумерованы плотными индексами 0..n-1 в порядке добавления,
+ * исходящие рёбра города u занимают диапазон [edgeStart(u), edgeEnd(u)).
+ * Каждая дорога хранится двумя направленными рёбрами, связанными между собой через twin.
+ *
+ * Алгоритмы поиска обращаются к графу только через эти методы, поэтому
+ * данные могут лежать как в массивах на куче (ArrayCompactGraph), так и
+ * в отображённом в память файле снимка (MappedCompactGraph).
+ */
+public abstract class CompactGraph {
+
+    /**
+     * Построение CSR-представления из списка дорог.
+     * Дороги заданы индексами городов и тремя весами;
+     * рёбра раскладываются по городам сортировкой подсчётом
+     */
+    public static CompactGraph build(List<City> cityList, int roadCount,
+                                     int[] roadFrom, int[] roadTo,
+                                     int[] roadLength, int[] roadTime, int[] roadCost) {
+        City[] cities = cityList.toArray(new City[0]);
+        int n = cities.length;
+        int m = roadCount * 2;
+
+        // Подсчёт степеней вершин и префиксные суммы
+        int[] offsets = new int[n + 1];
+        for (int r = 0; r < roadCount; r++) {
+            offsets[roadFrom[r] + 1]++;
+            offsets[roadTo[r] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        int[] twins = new int[m];
+        int[] lengths = new int[m];
+        int[] times = new int[m];
+        int[] costs = new int[m];
+        int[] cursor = Arrays.copyOf(offsets, n);
+
+        // Каждая дорога даёт прямое и обратное ребро с одинаковыми весами
+        for (int r = 0; r < roadCount; r++) {
+            int a = cursor[roadFrom[r]]++;
+            int b = cursor[roadTo[r]]++;
+            sources[a] = roadFrom[r];
+            targets[a] = roadTo[r];
+            sources[b] = roadTo[r];
+            targets[b] = roadFrom[r];
+            twins[a] = b;
+            twins[b] = a;
+            lengths[a] = lengths[b] = roadLength[r];
+            times[a] = times[b] = roadTime[r];
+            costs[a] = costs[b] = roadCost[r];
+        }
+
+        // Порядок совпадает с порядком констант Criteria
+        int[][] weights = {lengths, times, costs};
+        return new ArrayCompactGraph(cities, offsets, sources, targets, twins, weights);
+    }
+
+    public abstract int cityCount();
+
+    public abstract int edgeCount();
+
+    /**
+     * Плотный индекс города по названию или -1, если город не найден
+     */
+    public abstract int indexOf(String name);
+
+    public abstract City city(int node);
+
+    public abstract String name(int node);
+
+    /**
+     * Таблица названий городов снимка. Снимки после изменения весов делят её с исходным,
+     * поэтому по ней можно хранить данные о городах, пока не меняется состав сети
+     */
+    Object nameTable() {
+        return this;
+    }
+
+    public abstract int edgeStart(int node);
+
+    public abstract int edgeEnd(int node);
+
+    public abstract int source(int edge);
+
+    public abstract int target(int edge);
+
+    /**
+     * Ребро той же дороги в обратном направлении
+     */
+    public abstract int twin(int edge);
+
+    public abstract int weight(int edge, Criteria criteria);
+
+    /**
+     * Максимальный вес ребра по критерию (размер окна для очереди корзин)
+     */
+    public abstract int maxWeight(Criteria criteria);
+
+    /**
+     * Копия весов рёбер по критерию
+     */
+    int[] copyWeights(Criteria criteria) {
+        int[] copy = new int[edgeCount()];
+        for (int edge = 0; edge < copy.length; edge++) {
+            copy[edge] = weight(edge, criteria);
+        }
+        return copy;
+    }
+
+    /**
+     * Граф с той же структурой и новыми весами рёбер из changes.
+     * Общая реализация копирует граф в массивы на куче; ArrayCompactGraph и MappedCompactGraph
+     * разделяют с новым графом структуру и веса неизменённых критериев
+     */
+    CompactGraph withWeights(WeightChanges changes) {
+        int n = cityCount();
+        int m = edgeCount();
+        City[] cities = new City[n];
+        int[] offsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            cities[node] = city(node);
+            offsets[node + 1] = edgeEnd(node);
+        }
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        int[] twins = new int[m];
+        for (int edge = 0; edge < m; edge++) {
+            sources[edge] = source(edge);
+            targets[edge] = target(edge);
+            twins[edge] = twin(edge);
+        }
+        int[][] weights = new int[Criteria.values().length][];
+        for (Criteria criteria : Criteria.values()) {
+            int[] copy = copyWeights(criteria);
+            for (int i = 0; i < changes.count(criteria); i++) {
+                copy[changes.edge(criteria, i)] = changes.value(criteria, i);
+            }
+            weights[criteria.ordinal()] = copy;
+        }
+        return new ArrayCompactGraph(cities, offsets, sources, targets, twins, weights);
+    }
+
+    /**
+     * Новые веса отдельных рёбер по критериям (пакет изменений весов GraphUpdate)
+     */
+    static final class WeightChanges {
+        private final int[][] edges = new int[Criteria.values().length][];
+        private final int[][] values = new int[Criteria.values().length][];
+        private final int[] counts = new int[Criteria.values().length];
+
+        void set(int edge, Criteria criteria, int value) {
+            int c = criteria.ordinal();
+            if (edges[c] == null) {
+                edges[c] = new int[16];
+                values[c] = new int[16];
+            } else if (counts[c] == edges[c].length) {
+                edges[c] = Arrays.copyOf(edges[c], counts[c] * 2);
+                values[c] = Arrays.copyOf(values[c], counts[c] * 2);
+            }
+            edges[c][counts[c]] = edge;
+            values[c][counts[c]] = value;
+            counts[c]++;
+        }
+
+        int count(Criteria criteria) {
+            return counts[criteria.ordinal()];
+        }
+
+        int edge(Criteria criteria, int i) {
+            return edges[criteria.ordinal()][i];
+        }
+
+        int value(Criteria criteria, int i) {
+            return values[criteria.ordinal()][i];
+        }
+
+        /**
+         * Запись изменений критерия в копию его весов; возвращает новый максимум.
+         * Все веса пересматриваются, только если уменьшен вес, равный прежнему максимуму max
+         */
+        int applyTo(IntBuffer weights, Criteria criteria, int max) {
+            boolean rescan = false;
+            for (int i = 0; i < count(criteria); i++) {
+                int edge = edge(criteria, i);
+                int value = value(criteria, i);
+                int previous = weights.get(edge);
+                weights.put(edge, value);
+                if (value >= max) {
+                    max = value;
+                } else if (previous == max) {
+                    rescan = true;
+                }
+            }
+            if (rescan) {
+                max = 0;
+                for (int edge = 0; edge < weights.limit(); edge++) {
+                    max = Math.max(max, weights.get(edge));
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Создание компактного объекта Route из последовательности рёбер (массив не копируется).
+     * Названия городов разрешаются только при обращении к ним
+     */
+    public Route createRoute(int[] edges) {
+        return new Route(this, edges);
+    }
+}
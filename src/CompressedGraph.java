@@ -0,0 +1,551 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Сжатое представление графа для сетей, которые не помещаются в память в виде CompactGraph
+ * (там 24 байта на направленное ребро: source, target, twin и три веса).
+ *
+ * Города перенумерованы в порядке обхода в ширину, поэтому соседи обычно получают близкие
+ * номера. Рёбра города лежат подряд в общем массиве байтов и отсортированы по соседу;
+ * запись ребра - разность номера соседа с предыдущим (zigzag varint, для первого ребра -
+ * с самим городом) и три веса в порядке Criteria. Вес меньше ESCAPE занимает один байт,
+ * больший - байт ESCAPE и varint остатка. На дорожных сетях это 4-6 байт на ребро.
+ *
+ * Сжатый граф строится из CompactGraph или сразу из разобранных дорог (GraphBuilder.buildCompressed,
+ * FastParser.parseCompressed), не создавая CSR-представления. Graph в сжатом виде
+ * (Graph.compress, параметр --compressed) отвечает на запросы через этот класс.
+ *
+ * Рёбра не имеют номеров, поэтому поиск работает со своим циклом Дейкстры,
+ * декодируя записи прямо при релаксации; предшественник города - позиция записи ребра.
+ * Граф неизменяем; изменения графа требуют нового сжатия
+ */
+public class CompressedGraph {
+    private static final int ESCAPE = 0xFF;
+    private static final int CRITERIA_COUNT = Criteria.values().length;
+
+    private final int cityCount;
+    private final int edgeCount;
+    // Записи рёбер города node занимают байты [offsets[node], offsets[node + 1])
+    private final int[] offsets;
+    private final byte[] data;
+    private final int[] maxWeights;
+
+    // Таблица городов в новой нумерации: идентификаторы, названия в UTF-8 и хеш-таблица
+    private final int[] cityIds;
+    private final int[] nameOffsets;
+    private final byte[] names;
+    private final int[] hashTable;
+
+    private CompressedGraph(int cityCount, int edgeCount, int[] offsets, byte[] data, int[] maxWeights,
+                            int[] cityIds, int[] nameOffsets, byte[] names, int[] hashTable) {
+        this.cityCount = cityCount;
+        this.edgeCount = edgeCount;
+        this.offsets = offsets;
+        this.data = data;
+        this.maxWeights = maxWeights;
+        this.cityIds = cityIds;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+        this.hashTable = hashTable;
+    }
+
+    /**
+     * Исходный граф для сжатия: списки смежности с весами рёбер и таблица городов
+     */
+    interface Adjacency {
+        int cityCount();
+
+        int edgeCount();
+
+        int edgeStart(int node);
+
+        int edgeEnd(int node);
+
+        int target(int edge);
+
+        int weight(int edge, Criteria criteria);
+
+        City city(int node);
+    }
+
+    /**
+     * Сжатие компактного представления графа. Массив записей рёбер ограничен 2 ГБ
+     */
+    public static CompressedGraph compress(CompactGraph graph) {
+        return compress(new Adjacency() {
+            @Override
+            public int cityCount() {
+                return graph.cityCount();
+            }
+
+            @Override
+            public int edgeCount() {
+                return graph.edgeCount();
+            }
+
+            @Override
+            public int edgeStart(int node) {
+                return graph.edgeStart(node);
+            }
+
+            @Override
+            public int edgeEnd(int node) {
+                return graph.edgeEnd(node);
+            }
+
+            @Override
+            public int target(int edge) {
+                return graph.target(edge);
+            }
+
+            @Override
+            public int weight(int edge, Criteria criteria) {
+                return graph.weight(edge, criteria);
+            }
+
+            @Override
+            public City city(int node) {
+                return graph.city(node);
+            }
+        });
+    }
+
+    /**
+     * Сжатие графа, заданного списками смежности
+     */
+    static CompressedGraph compress(Adjacency graph) {
+        int n = graph.cityCount();
+        int[] order = breadthFirstOrder(graph);
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[order[i]] = i;
+        }
+
+        int[] offsets = new int[n + 1];
+        int[] maxWeights = new int[CRITERIA_COUNT];
+        Output out = new Output((int) Math.max(16, Math.min((long) graph.edgeCount() * 5, Integer.MAX_VALUE - 8)));
+        for (int node = 0; node < n; node++) {
+            int original = order[node];
+            int start = graph.edgeStart(original);
+            int degree = graph.edgeEnd(original) - start;
+
+            // Сосед в старших битах, номер ребра в городе - в младших: при равных соседях
+            // сохраняется исходный порядок параллельных рёбер
+            long[] edges = new long[degree];
+            for (int i = 0; i < degree; i++) {
+                edges[i] = (long) rank[graph.target(start + i)] << 32 | i;
+            }
+            Arrays.sort(edges);
+
+            int previous = node;
+            for (long entry : edges) {
+                int edge = start + (int) entry;
+                int neighbor = (int) (entry >>> 32);
+                out.writeVarint(zigzag(neighbor - previous));
+                previous = neighbor;
+                for (Criteria criteria : Criteria.values()) {
+                    int weight = graph.weight(edge, criteria);
+                    maxWeights[criteria.ordinal()] = Math.max(maxWeights[criteria.ordinal()], weight);
+                    out.writeWeight(weight);
+                }
+            }
+            offsets[node + 1] = out.size();
+        }
+
+        int[] cityIds = new int[n];
+        int[] nameOffsets = new int[n + 1];
+        byte[][] encoded = new byte[n][];
+        for (int node = 0; node < n; node++) {
+            City city = graph.city(order[node]);
+            cityIds[node] = city.getId();
+            encoded[node] = city.getName().getBytes(StandardCharsets.UTF_8);
+            nameOffsets[node + 1] = Math.addExact(nameOffsets[node], encoded[node].length);
+        }
+        byte[] names = new byte[nameOffsets[n]];
+        for (int node = 0; node < n; node++) {
+            System.arraycopy(encoded[node], 0, names, nameOffsets[node], encoded[node].length);
+        }
+
+        return new CompressedGraph(n, graph.edgeCount(), offsets, out.toArray(), maxWeights,
+            cityIds, nameOffsets, names, GraphSnapshot.buildHashTable(encoded));
+    }
+
+    /**
+     * Порядок обхода в ширину по всем компонентам связности: order[новый номер] = старый
+     */
+    private static int[] breadthFirstOrder(Adjacency graph) {
+        int n = graph.cityCount();
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        int tail = 0;
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            visited[root] = true;
+            order[tail++] = root;
+            for (int head = tail - 1; head < tail; head++) {
+                int node = order[head];
+                for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                    int neighbor = graph.target(edge);
+                    if (!visited[neighbor]) {
+                        visited[neighbor] = true;
+                        order[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    public int cityCount() {
+        return cityCount;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Индекс города в новой нумерации или -1, если город не найден
+     */
+    public int indexOf(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int mask = hashTable.length - 1;
+        for (int slot = GraphSnapshot.hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int entry = hashTable[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int node = entry - 1;
+            if (Arrays.equals(names, nameOffsets[node], nameOffsets[node + 1], key, 0, key.length)) {
+                return node;
+            }
+        }
+    }
+
+    public City city(int node) {
+        return new City(cityIds[node], name(node));
+    }
+
+    public String name(int node) {
+        return new String(names, nameOffsets[node], nameOffsets[node + 1] - nameOffsets[node],
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Приблизительный объём данных графа в байтах (без заголовков объектов)
+     */
+    public long sizeInBytes() {
+        return data.length + names.length
+            + (long) Integer.BYTES * (offsets.length + cityIds.length + nameOffsets.length + hashTable.length);
+    }
+
+    /**
+     * Кратчайший маршрут между городами по критерию или пустой маршрут, если пути нет
+     */
+    public Route findShortestRoute(String from, String to, Criteria criteria) {
+        return findShortestRoute(from, to, criteria, QueueType.DARY_HEAP);
+    }
+
+    public Route findShortestRoute(String from, String to, Criteria criteria, QueueType queueType) {
+        return findShortestRoutes(from, List.of(to), criteria, queueType, null).get(0);
+    }
+
+    /**
+     * Маршруты из одного города в несколько за один поиск, в порядке городов назначения.
+     * Поиск останавливается, когда извлечены все цели; stats - подсчёт работы (null - без подсчёта)
+     */
+    public List<Route> findShortestRoutes(String from, List<String> toCities, Criteria criteria,
+                                          QueueType queueType, SearchStats stats) {
+        int source = indexOf(from);
+        int[] targets = new int[toCities.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = indexOf(toCities.get(i));
+            if (source < 0 || targets[i] < 0) {
+                throw new IllegalArgumentException("Город не найден: " + from + " или " + toCities.get(i));
+            }
+        }
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(cityCount);
+        try {
+            NodeQueue queue = workspace.queue(cityCount, maxWeights[criteria.ordinal()], criteria, queueType);
+            int criterion = criteria.ordinal();
+            int remaining = 0;
+            for (int target : targets) {
+                if (!workspace.isTarget(target)) {
+                    workspace.markTarget(target);
+                    remaining++;
+                }
+            }
+            workspace.update(source, 0, -1);
+            queue.push(source, 0);
+            long relaxed = 0;
+            int pushes = 1;
+            int pops = 0;
+            int peak = 0;
+
+            while (!queue.isEmpty()) {
+                peak = Math.max(peak, queue.size());
+                int node = queue.pop();
+                pops++;
+                if (workspace.isTarget(node) && --remaining == 0) {
+                    break;
+                }
+
+                // Декодирование записей рёбер города прямо в цикле релаксации
+                int distance = workspace.distance(node);
+                int neighbor = node;
+                int position = offsets[node];
+                int end = offsets[node + 1];
+                while (position < end) {
+                    int record = position;
+                    int delta = data[position++];
+                    if (delta < 0) {
+                        long decoded = readVarint(record);
+                        delta = (int) (decoded >>> 32);
+                        position = (int) decoded;
+                    }
+                    neighbor += unzigzag(delta);
+                    relaxed++;
+
+                    int weight = 0;
+                    for (int c = 0; c < CRITERIA_COUNT; c++) {
+                        int value = data[position++] & 0xFF;
+                        if (value == ESCAPE) {
+                            long decoded = readVarint(position);
+                            value = ESCAPE + (int) (decoded >>> 32);
+                            position = (int) decoded;
+                        }
+                        if (c == criterion) {
+                            weight = value;
+                        }
+                    }
+
+                    int newDistance = distance + weight;
+                    if (newDistance < workspace.distance(neighbor)) {
+                        workspace.update(neighbor, newDistance, record);
+                        queue.push(neighbor, newDistance);
+                        pushes++;
+                    }
+                }
+            }
+
+            if (stats != null) {
+                stats.add(pops, relaxed, pushes, pops, peak);
+            }
+            List<Route> routes = new ArrayList<>(targets.length);
+            for (int target : targets) {
+                routes.add(route(workspace, source, target));
+            }
+            return routes;
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Компромиссный маршрут: лучший по приоритетам (лексикографически) среди всех маршрутов,
+     * как LexicographicSearch, но с декодированием записей рёбер. Пустой маршрут, если пути нет
+     */
+    public Route findCompromiseRoute(String from, String to, List<Criteria> priorities, SearchStats stats) {
+        int source = indexOf(from);
+        int target = indexOf(to);
+        if (source < 0 || target < 0) {
+            throw new IllegalArgumentException("Город не найден: " + from + " или " + to);
+        }
+
+        int n = cityCount;
+        int k = priorities.size();
+        Criteria[] order = priorities.toArray(new Criteria[0]);
+        SearchWorkspace workspace = SearchWorkspace.acquire(Math.multiplyExact(n, Math.max(k, 1)));
+        try {
+            LexicographicSearch.TupleHeap queue = new LexicographicSearch.TupleHeap(k);
+            int[] key = new int[k];
+            int[] next = new int[k];
+            int[] weights = new int[CRITERIA_COUNT];
+            for (int i = 0; i < k; i++) {
+                workspace.update(i * n + source, 0, -1);
+            }
+            if (k == 0) {
+                workspace.update(source, 0, -1);
+            }
+            queue.push(source, key);
+            long relaxed = 0;
+            int pushes = 1;
+            int pops = 0;
+            int settled = 0;
+            int peak = 0;
+
+            while (!queue.isEmpty()) {
+                peak = Math.max(peak, queue.size());
+                int node = queue.pop(key);
+                pops++;
+                if (!LexicographicSearch.current(workspace, n, node, key)) {
+                    continue;
+                }
+                settled++;
+                if (node == target) {
+                    break;
+                }
+
+                int neighbor = node;
+                int position = offsets[node];
+                int end = offsets[node + 1];
+                while (position < end) {
+                    int record = position;
+                    long decoded = readVarint(position);
+                    neighbor += unzigzag((int) (decoded >>> 32));
+                    position = readWeights((int) decoded, weights);
+                    relaxed++;
+
+                    for (int i = 0; i < k; i++) {
+                        next[i] = key[i] + weights[order[i].ordinal()];
+                    }
+                    if (LexicographicSearch.better(workspace, n, neighbor, next)) {
+                        // Предшественник хранится в значении первого приоритета
+                        workspace.update(neighbor, k > 0 ? next[0] : 0, record);
+                        for (int i = 1; i < k; i++) {
+                            workspace.update(i * n + neighbor, next[i], -1);
+                        }
+                        queue.push(neighbor, next);
+                        pushes++;
+                    }
+                }
+            }
+
+            if (stats != null) {
+                stats.add(settled, relaxed, pushes, pops, peak);
+            }
+            return route(workspace, source, target);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Маршрут по позициям записей рёбер-предшественников или пустой маршрут, если target не достигнут.
+     * Город записи находится двоичным поиском по offsets, веса - декодированием записи
+     */
+    private Route route(SearchWorkspace workspace, int source, int target) {
+        List<RoadSegment> segments = new ArrayList<>();
+        if (source != target && workspace.predecessor(target) < 0) {
+            return new Route(segments);
+        }
+        int[] weights = new int[CRITERIA_COUNT];
+        for (int node = target; node != source; ) {
+            int record = workspace.predecessor(node);
+            int previous = sourceOf(record);
+            readWeights((int) readVarint(record), weights);
+            segments.add(new RoadSegment(name(previous), name(node), weights[Criteria.LENGTH.ordinal()],
+                weights[Criteria.TIME.ordinal()], weights[Criteria.COST.ordinal()]));
+            node = previous;
+        }
+        Collections.reverse(segments);
+        return new Route(segments);
+    }
+
+    /**
+     * Чтение трёх весов записи с позиции position в weights; возвращает позицию после них
+     */
+    private int readWeights(int position, int[] weights) {
+        for (int c = 0; c < CRITERIA_COUNT; c++) {
+            int value = data[position++] & 0xFF;
+            if (value == ESCAPE) {
+                long decoded = readVarint(position);
+                value = ESCAPE + (int) (decoded >>> 32);
+                position = (int) decoded;
+            }
+            weights[c] = value;
+        }
+        return position;
+    }
+
+    /**
+     * Город, которому принадлежит запись ребра на позиции position
+     */
+    private int sourceOf(int position) {
+        // Последний город с offsets[node] <= position; у пустых городов перед ним диапазон пуст
+        int low = 0;
+        int high = cityCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Чтение varint с позиции position: значение в старших 32 битах, следующая позиция - в младших
+     */
+    private long readVarint(int position) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = data[position++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return (long) value << 32 | position;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Растущий массив байтов записей рёбер
+     */
+    private static final class Output {
+        private byte[] bytes;
+        private int size;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeWeight(int weight) {
+            if (weight < ESCAPE) {
+                writeByte(weight);
+            } else {
+                writeByte(ESCAPE);
+                writeVarint(weight - ESCAPE);
+            }
+        }
+
+        void writeByte(int value) {
+            if (size == bytes.length) {
+                if (size == Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Сжатый граф не помещается в массив размером 2 ГБ");
+                }
+                bytes = Arrays.copyOf(bytes, (int) Math.min((long) size * 2, Integer.MAX_VALUE - 8));
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
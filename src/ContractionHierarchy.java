@@ -0,0 +1,619 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Иерархия сжатия (Contraction Hierarchies) для одного критерия.
+ *
+ * Предварительная обработка: города по очереди "сжимаются" в порядке приоритета
+ * (разность рёбер + число уже сжатых соседей). При сжатии города v для каждой пары
+ * его соседей u, w добавляется ярлык u - w, если поиск свидетеля не нашёл пути
+ * короче u - v - w в обход v. Сжимаются раунды независимых множеств городов
+ * (локальные минимумы приоритета), что позволяет выполнять поиск свидетелей
+ * и пересчёт приоритетов параллельно на всех ядрах.
+ *
+ * Запрос: двунаправленный поиск только по рёбрам, ведущим к городам более высокого ранга,
+ * с последующей распаковкой ярлыков в исходные рёбра графа.
+ */
+public class ContractionHierarchy {
+    // Предел числа извлечённых городов в поиске свидетеля
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final CompactGraph graph;
+    private final Criteria criteria;
+    private final int[] ranks;
+
+    // Дуги иерархии: исходные дороги и ярлыки
+    private final int[] arcEnds1;
+    private final int[] arcEnds2;
+    private final int[] arcChildren1;
+    private final int[] arcChildren2;
+    private final int[] arcEdges;
+    private final int[] arcMiddles;
+
+    // Граф "вверх": для каждого города дуги к городам более высокого ранга
+    private final int[] upOffsets;
+    private final int[] upHeads;
+    private final int[] upArcs;
+    private final int[] upWeights;
+
+    private ContractionHierarchy(Builder builder) {
+        this.graph = builder.graph;
+        this.criteria = builder.criteria;
+        this.ranks = builder.ranks;
+        this.arcEnds1 = Arrays.copyOf(builder.arcEnds1, builder.arcCount);
+        this.arcEnds2 = Arrays.copyOf(builder.arcEnds2, builder.arcCount);
+        this.arcChildren1 = Arrays.copyOf(builder.arcChildren1, builder.arcCount);
+        this.arcChildren2 = Arrays.copyOf(builder.arcChildren2, builder.arcCount);
+        this.arcEdges = Arrays.copyOf(builder.arcEdges, builder.arcCount);
+        this.arcMiddles = Arrays.copyOf(builder.arcMiddles, builder.arcCount);
+
+        int n = graph.cityCount();
+        this.upOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            upOffsets[v + 1] = upOffsets[v] + builder.upward[v].length;
+        }
+        this.upHeads = new int[upOffsets[n]];
+        this.upArcs = new int[upOffsets[n]];
+        this.upWeights = new int[upOffsets[n]];
+        for (int v = 0; v < n; v++) {
+            int position = upOffsets[v];
+            for (int arc : builder.upward[v]) {
+                upHeads[position] = arcEnds1[arc] == v ? arcEnds2[arc] : arcEnds1[arc];
+                upArcs[position] = arc;
+                upWeights[position] = builder.arcWeights[arc];
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Восстановление иерархии из массивов в порядке arrays(); используется загрузчиком снимка графа
+     */
+    ContractionHierarchy(CompactGraph graph, Criteria criteria, int[][] arrays) {
+        this.graph = graph;
+        this.criteria = criteria;
+        this.ranks = arrays[0];
+        this.arcEnds1 = arrays[1];
+        this.arcEnds2 = arrays[2];
+        this.arcChildren1 = arrays[3];
+        this.arcChildren2 = arrays[4];
+        this.arcEdges = arrays[5];
+        this.arcMiddles = arrays[6];
+        this.upOffsets = arrays[7];
+        this.upHeads = arrays[8];
+        this.upArcs = arrays[9];
+        this.upWeights = arrays[10];
+    }
+
+    /**
+     * Построение иерархии для заданного критерия
+     */
+    public static ContractionHierarchy build(CompactGraph graph, Criteria criteria) {
+        Builder builder = new Builder(graph, criteria);
+        builder.contractAll();
+        return new ContractionHierarchy(builder);
+    }
+
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    public Criteria criteria() {
+        return criteria;
+    }
+
+    /**
+     * Ранг города - порядковый номер его сжатия
+     */
+    public int rank(int node) {
+        return ranks[node];
+    }
+
+    /**
+     * Число дуг иерархии (исходные дороги и ярлыки)
+     */
+    public int arcCount() {
+        return arcEdges.length;
+    }
+
+    /**
+     * Все массивы иерархии без копирования: ранги, шесть массивов дуг и граф "вверх"
+     */
+    int[][] arrays() {
+        return new int[][] {ranks, arcEnds1, arcEnds2, arcChildren1, arcChildren2, arcEdges, arcMiddles,
+                upOffsets, upHeads, upArcs, upWeights};
+    }
+
+    /**
+     * Поиск кратчайшего пути от source до target.
+     * Возвращает последовательность исходных рёбер или null, если путь не существует
+     */
+    public int[] shortestPath(int source, int target) {
+        return shortestPath(source, target, null);
+    }
+
+    /**
+     * То же с подсчётом работы поиска в stats (null - без подсчёта)
+     */
+    public int[] shortestPath(int source, int target, SearchStats stats) {
+        if (source == target) {
+            return new int[0];
+        }
+
+        SearchWorkspace[] workspaces = {SearchWorkspace.acquire(graph), SearchWorkspace.acquire(graph)};
+        try {
+            NodeQueue[] queues = {
+                workspaces[0].queue(graph, criteria, QueueType.DARY_HEAP),
+                workspaces[1].queue(graph, criteria, QueueType.DARY_HEAP)
+            };
+            boolean[] finished = new boolean[2];
+            workspaces[0].update(source, 0, -1);
+            workspaces[1].update(target, 0, -1);
+            queues[0].push(source, 0);
+            queues[1].push(target, 0);
+
+            int best = Integer.MAX_VALUE;
+            int meeting = -1;
+            int side = 1;
+            long relaxed = 0;
+            int pushes = 2;
+            int pops = 0;
+            int settled = 0;
+            int peak = 0;
+
+            while (!(finished[0] && finished[1])) {
+                // Чередуем направления, пока оба не завершены
+                side = finished[1 - side] ? side : 1 - side;
+                if (queues[side].isEmpty()) {
+                    finished[side] = true;
+                    continue;
+                }
+
+                SearchWorkspace own = workspaces[side];
+                SearchWorkspace other = workspaces[1 - side];
+                peak = Math.max(peak, queues[0].size() + queues[1].size());
+                int node = queues[side].pop();
+                int distance = own.distance(node);
+                pops++;
+                if (distance >= best) {
+                    finished[side] = true;
+                    continue;
+                }
+                settled++;
+
+                int end = upOffsets[node + 1];
+                relaxed += end - upOffsets[node];
+                for (int i = upOffsets[node]; i < end; i++) {
+                    int head = upHeads[i];
+                    int newDistance = distance + upWeights[i];
+                    if (newDistance < own.distance(head)) {
+                        own.update(head, newDistance, upArcs[i]);
+                        queues[side].push(head, newDistance);
+                        pushes++;
+                    }
+                    int otherDistance = other.distance(head);
+                    if (otherDistance != Integer.MAX_VALUE && own.distance(head) + otherDistance < best) {
+                        best = own.distance(head) + otherDistance;
+                        meeting = head;
+                    }
+                }
+            }
+
+            if (stats != null) {
+                stats.add(settled, relaxed, pushes, pops, peak);
+            }
+            if (meeting < 0) {
+                return null;
+            }
+            return unpackPath(workspaces, source, target, meeting);
+        } finally {
+            workspaces[0].release();
+            workspaces[1].release();
+        }
+    }
+
+    /**
+     * Распаковка пути source -> meeting -> target из дуг иерархии в исходные рёбра
+     */
+    private int[] unpackPath(SearchWorkspace[] workspaces, int source, int target, int meeting) {
+        // Дуги прямого поиска собираются от meeting к source и разворачиваются
+        int[] forwardArcs = new int[16];
+        int forwardCount = 0;
+        for (int node = meeting; node != source; node = otherEnd(workspaces[0].predecessor(node), node)) {
+            if (forwardCount == forwardArcs.length) {
+                forwardArcs = Arrays.copyOf(forwardArcs, forwardCount * 2);
+            }
+            forwardArcs[forwardCount++] = workspaces[0].predecessor(node);
+        }
+
+        IntList edges = new IntList();
+        int node = source;
+        for (int i = forwardCount - 1; i >= 0; i--) {
+            unpackArc(forwardArcs[i], node, edges);
+            node = otherEnd(forwardArcs[i], node);
+        }
+        while (node != target) {
+            int arc = workspaces[1].predecessor(node);
+            unpackArc(arc, node, edges);
+            node = otherEnd(arc, node);
+        }
+        return edges.toArray();
+    }
+
+    /**
+     * Распаковка дуги, проходимой начиная с города from.
+     * Рекурсия по ярлыкам заменена явным стеком
+     */
+    private void unpackArc(int rootArc, int rootFrom, IntList edges) {
+        IntList stack = new IntList();
+        stack.add(rootArc);
+        stack.add(rootFrom);
+        while (stack.size() > 0) {
+            int from = stack.removeLast();
+            int arc = stack.removeLast();
+            if (arcMiddles[arc] < 0) {
+                int edge = arcEdges[arc];
+                edges.add(graph.source(edge) == from ? edge : graph.twin(edge));
+                continue;
+            }
+
+            // Сначала проходим дочернюю дугу, которая касается from
+            int middle = arcMiddles[arc];
+            int first = arcChildren1[arc];
+            int second = arcChildren2[arc];
+            if (arcEnds1[first] != from && arcEnds2[first] != from) {
+                first = arcChildren2[arc];
+                second = arcChildren1[arc];
+            }
+            stack.add(second);
+            stack.add(middle);
+            stack.add(first);
+            stack.add(from);
+        }
+    }
+
+    private int otherEnd(int arc, int node) {
+        return arcEnds1[arc] == node ? arcEnds2[arc] : arcEnds1[arc];
+    }
+
+    /**
+     * Растущий массив int без упаковки в Integer
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Состояние построения иерархии
+     */
+    private static final class Builder {
+        final CompactGraph graph;
+        final Criteria criteria;
+        final int n;
+        final int[] ranks;
+        final int[][] upward;
+
+        // Дуги: концы, вес, дочерние дуги, исходное ребро, промежуточный город
+        int[] arcEnds1;
+        int[] arcEnds2;
+        int[] arcWeights;
+        int[] arcChildren1;
+        int[] arcChildren2;
+        int[] arcEdges;
+        int[] arcMiddles;
+        int arcCount;
+
+        // Текущий граф несжатых городов: соседи и дуги к ним
+        final int[][] neighbors;
+        final int[][] neighborArcs;
+        final int[] degrees;
+        final boolean[] contracted;
+        final boolean[] inRound;
+        final int[] deletedNeighbors;
+        final int[] priorities;
+        final ThreadLocal<WitnessSearch> witness;
+
+        Builder(CompactGraph graph, Criteria criteria) {
+            this.graph = graph;
+            this.criteria = criteria;
+            this.n = graph.cityCount();
+            this.ranks = new int[n];
+            this.upward = new int[n][];
+            this.neighbors = new int[n][];
+            this.neighborArcs = new int[n][];
+            this.degrees = new int[n];
+            this.contracted = new boolean[n];
+            this.inRound = new boolean[n];
+            this.deletedNeighbors = new int[n];
+            this.priorities = new int[n];
+            this.witness = ThreadLocal.withInitial(() -> new WitnessSearch(n));
+
+            int capacity = Math.max(16, graph.edgeCount());
+            arcEnds1 = new int[capacity];
+            arcEnds2 = new int[capacity];
+            arcWeights = new int[capacity];
+            arcChildren1 = new int[capacity];
+            arcChildren2 = new int[capacity];
+            arcEdges = new int[capacity];
+            arcMiddles = new int[capacity];
+
+            for (int v = 0; v < n; v++) {
+                int degree = graph.edgeEnd(v) - graph.edgeStart(v);
+                neighbors[v] = new int[Math.max(degree, 2)];
+                neighborArcs[v] = new int[Math.max(degree, 2)];
+            }
+
+            // Каждая дорога - одна дуга; из параллельных дорог остаётся лучшая
+            for (int edge = 0; edge < graph.edgeCount(); edge++) {
+                int twin = graph.twin(edge);
+                int u = graph.source(edge);
+                int w = graph.target(edge);
+                if (edge < twin && u != w) {
+                    addArc(u, w, graph.weight(edge, criteria), edge, -1, -1, -1);
+                }
+            }
+        }
+
+        void contractAll() {
+            int[] remaining = IntStream.range(0, n).toArray();
+            IntStream.of(remaining).parallel().forEach(v -> priorities[v] = priority(v));
+            int nextRank = 0;
+
+            while (remaining.length > 0) {
+                // Независимое множество: города с приоритетом меньше, чем у всех несжатых соседей
+                int[] round = IntStream.of(remaining).parallel().filter(this::isLocalMinimum).toArray();
+                for (int v : round) {
+                    inRound[v] = true;
+                }
+
+                // Поиск ярлыков для всех городов раунда параллельно
+                int[][] shortcuts = new int[round.length][];
+                IntStream.range(0, round.length).parallel()
+                    .forEach(i -> shortcuts[i] = witness.get().shortcuts(this, round[i]));
+
+                // Применение результатов раунда последовательно
+                for (int i = 0; i < round.length; i++) {
+                    contract(round[i], shortcuts[i], nextRank++);
+                }
+
+                int[] affected = IntStream.of(round)
+                    .flatMap(v -> Arrays.stream(upward[v]).map(arc -> arcEnds1[arc] == v ? arcEnds2[arc] : arcEnds1[arc]))
+                    .distinct().toArray();
+                IntStream.of(affected).parallel().forEach(v -> priorities[v] = priority(v));
+                remaining = IntStream.of(remaining).filter(v -> !contracted[v]).toArray();
+            }
+        }
+
+        private boolean isLocalMinimum(int v) {
+            for (int i = 0; i < degrees[v]; i++) {
+                int u = neighbors[v][i];
+                if (priorities[u] < priorities[v] || (priorities[u] == priorities[v] && u < v)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Приоритет сжатия: разность рёбер плюс число уже сжатых соседей
+         */
+        private int priority(int v) {
+            int shortcuts = witness.get().shortcuts(this, v).length / 3;
+            return shortcuts - degrees[v] + deletedNeighbors[v];
+        }
+
+        private void contract(int v, int[] shortcuts, int rank) {
+            ranks[v] = rank;
+            contracted[v] = true;
+            inRound[v] = false;
+            upward[v] = Arrays.copyOf(neighborArcs[v], degrees[v]);
+
+            for (int i = 0; i < degrees[v]; i++) {
+                int u = neighbors[v][i];
+                removeNeighbor(u, v);
+                deletedNeighbors[u]++;
+            }
+
+            // Ярлыки: тройки (u, w, вес), дочерние дуги находятся среди дуг v
+            for (int i = 0; i < shortcuts.length; i += 3) {
+                int u = shortcuts[i];
+                int w = shortcuts[i + 1];
+                addArc(u, w, shortcuts[i + 2], -1, v, arcTo(v, u), arcTo(v, w));
+            }
+        }
+
+        private int arcTo(int v, int u) {
+            for (int i = 0; i < degrees[v]; i++) {
+                if (neighbors[v][i] == u) {
+                    return neighborArcs[v][i];
+                }
+            }
+            throw new IllegalStateException("Дуга не найдена: " + v + " - " + u);
+        }
+
+        /**
+         * Добавление дуги; если дуга между этими городами уже есть и не хуже, новая не нужна.
+         * Заменённая дуга остаётся в массивах для распаковки ранее созданных ярлыков
+         */
+        private void addArc(int u, int w, int weight, int edge, int middle, int child1, int child2) {
+            int existing = findNeighbor(u, w);
+            if (existing >= 0 && arcWeights[neighborArcs[u][existing]] <= weight) {
+                return;
+            }
+
+            if (arcCount == arcEnds1.length) {
+                int capacity = arcCount * 2;
+                arcEnds1 = Arrays.copyOf(arcEnds1, capacity);
+                arcEnds2 = Arrays.copyOf(arcEnds2, capacity);
+                arcWeights = Arrays.copyOf(arcWeights, capacity);
+                arcChildren1 = Arrays.copyOf(arcChildren1, capacity);
+                arcChildren2 = Arrays.copyOf(arcChildren2, capacity);
+                arcEdges = Arrays.copyOf(arcEdges, capacity);
+                arcMiddles = Arrays.copyOf(arcMiddles, capacity);
+            }
+            int arc = arcCount++;
+            arcEnds1[arc] = u;
+            arcEnds2[arc] = w;
+            arcWeights[arc] = weight;
+            arcEdges[arc] = edge;
+            arcMiddles[arc] = middle;
+            arcChildren1[arc] = child1;
+            arcChildren2[arc] = child2;
+
+            if (existing >= 0) {
+                neighborArcs[u][existing] = arc;
+                neighborArcs[w][findNeighbor(w, u)] = arc;
+            } else {
+                appendNeighbor(u, w, arc);
+                appendNeighbor(w, u, arc);
+            }
+        }
+
+        private int findNeighbor(int v, int u) {
+            for (int i = 0; i < degrees[v]; i++) {
+                if (neighbors[v][i] == u) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void appendNeighbor(int v, int u, int arc) {
+            if (degrees[v] == neighbors[v].length) {
+                neighbors[v] = Arrays.copyOf(neighbors[v], degrees[v] * 2);
+                neighborArcs[v] = Arrays.copyOf(neighborArcs[v], degrees[v] * 2);
+            }
+            neighbors[v][degrees[v]] = u;
+            neighborArcs[v][degrees[v]] = arc;
+            degrees[v]++;
+        }
+
+        private void removeNeighbor(int v, int u) {
+            int i = findNeighbor(v, u);
+            int last = --degrees[v];
+            neighbors[v][i] = neighbors[v][last];
+            neighborArcs[v][i] = neighborArcs[v][last];
+        }
+    }
+
+    /**
+     * Ограниченный поиск свидетелей; у каждого потока свой экземпляр
+     */
+    private static final class WitnessSearch {
+        private final int[] distances;
+        private final int[] touched;
+        private int touchedCount;
+        private final DaryHeap queue;
+
+        WitnessSearch(int n) {
+            this.distances = new int[n];
+            this.touched = new int[n];
+            this.queue = new DaryHeap(n, 4);
+            Arrays.fill(distances, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Ярлыки, необходимые при сжатии v, в виде троек (u, w, вес).
+         * Города текущего раунда исключаются из поиска, чтобы два города раунда
+         * не посчитали друг друга свидетелями
+         */
+        int[] shortcuts(Builder builder, int v) {
+            int degree = builder.degrees[v];
+            int[] neighbors = builder.neighbors[v];
+            int[] arcs = builder.neighborArcs[v];
+            int[] result = new int[16];
+            int count = 0;
+
+            for (int i = 0; i < degree; i++) {
+                int u = neighbors[i];
+                int toU = builder.arcWeights[arcs[i]];
+
+                if (i == degree - 1) {
+                    break;
+                }
+
+                // Граница поиска - самый длинный путь через v от u
+                int limit = 0;
+                for (int j = i + 1; j < degree; j++) {
+                    limit = Math.max(limit, toU + builder.arcWeights[arcs[j]]);
+                }
+                search(builder, u, v, limit);
+
+                for (int j = i + 1; j < degree; j++) {
+                    int w = neighbors[j];
+                    int via = toU + builder.arcWeights[arcs[j]];
+                    if (distances[w] > via) {
+                        if (count + 3 > result.length) {
+                            result = Arrays.copyOf(result, result.length * 2);
+                        }
+                        result[count++] = u;
+                        result[count++] = w;
+                        result[count++] = via;
+                    }
+                }
+                reset();
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        private void search(Builder builder, int source, int excluded, int limit) {
+            visit(source, 0);
+            queue.push(source, 0);
+            int settled = 0;
+
+            while (!queue.isEmpty() && settled++ < WITNESS_SETTLE_LIMIT) {
+                int node = queue.pop();
+                int distance = distances[node];
+                if (distance > limit) {
+                    break;
+                }
+                for (int i = 0; i < builder.degrees[node]; i++) {
+                    int neighbor = builder.neighbors[node][i];
+                    if (neighbor == excluded || builder.inRound[neighbor]) {
+                        continue;
+                    }
+                    int newDistance = distance + builder.arcWeights[builder.neighborArcs[node][i]];
+                    if (newDistance < distances[neighbor]) {
+                        visit(neighbor, newDistance);
+                        queue.push(neighbor, newDistance);
+                    }
+                }
+            }
+            queue.clear();
+        }
+
+        private void visit(int node, int distance) {
+            if (distances[node] == Integer.MAX_VALUE) {
+                touched[touchedCount++] = node;
+            }
+            distances[node] = distance;
+        }
+
+        private void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                distances[touched[i]] = Integer.MAX_VALUE;
+            }
+            touchedCount = 0;
+        }
+    }
+}
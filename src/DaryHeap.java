@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+/**
+ * Индексированная d-арная куча с операцией уменьшения ключа.
+ * Элемент кучи упакован в long: старшие 32 бита - ключ, младшие - индекс города,
+ * поэтому сравнение элементов - одно сравнение long без обращения к другим массивам
+ */
+public class DaryHeap implements NodeQueue {
+    private final int arity;
+    private final long[] heap;
+    private final int[] positions;
+    private int size;
+
+    public DaryHeap(int capacity, int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Арность кучи должна быть не меньше 2: " + arity);
+        }
+        this.arity = arity;
+        this.heap = new long[capacity];
+        this.positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    @Override
+    public void push(int node, int key) {
+        long entry = pack(node, key);
+        int position = positions[node];
+        if (position < 0) {
+            position = size++;
+        } else if (heap[position] <= entry) {
+            return;
+        }
+        siftUp(position, entry);
+    }
+
+    @Override
+    public int pop() {
+        int node = (int) heap[0];
+        positions[node] = -1;
+        long last = heap[--size];
+        if (size > 0) {
+            siftDown(0, last);
+        }
+        return node;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        // Сбрасываем только оставшиеся элементы, а не весь массив позиций
+        for (int i = 0; i < size; i++) {
+            positions[(int) heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position, long entry) {
+        while (position > 0) {
+            int parent = (position - 1) / arity;
+            long parentEntry = heap[parent];
+            if (parentEntry <= entry) {
+                break;
+            }
+            place(position, parentEntry);
+            position = parent;
+        }
+        place(position, entry);
+    }
+
+    private void siftDown(int position, long entry) {
+        while (true) {
+            int first = position * arity + 1;
+            if (first >= size) {
+                break;
+            }
+
+            // Поиск минимального потомка
+            int last = Math.min(first + arity, size);
+            int child = first;
+            long childEntry = heap[first];
+            for (int i = first + 1; i < last; i++) {
+                if (heap[i] < childEntry) {
+                    child = i;
+                    childEntry = heap[i];
+                }
+            }
+
+            if (entry <= childEntry) {
+                break;
+            }
+            place(position, childEntry);
+            position = child;
+        }
+        place(position, entry);
+    }
+
+    private void place(int position, long entry) {
+        heap[position] = entry;
+        positions[(int) entry] = position;
+    }
+
+    private static long pack(int node, int key) {
+        return ((long) key << 32) | node;
+    }
+}
@@ -0,0 +1,535 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Параллельный поиск кратчайших путей методом delta-stepping (Мейер, Сандерс).
+ * Города раскладываются по корзинам ширины delta; города текущей корзины
+ * обрабатываются параллельно задачами ForkJoin: сначала многократно релаксируются
+ * лёгкие рёбра (вес не больше delta), пока корзина не опустеет, затем один раз -
+ * тяжёлые рёбра всех обработанных в корзине городов.
+ *
+ * Расстояние и ребро-предшественник города упакованы в один long и обновляются
+ * через CAS, поэтому они всегда согласованы. Корзины циклические: все ожидающие
+ * расстояния лежат в пределах maxWeight от текущей корзины.
+ * delta подбирается по графу для каждого критерия один раз при создании.
+ *
+ * Массивы состояний и отметок размера графа, корзины и списки фронта берутся из пула
+ * экземпляра (Workspace) и не выделяются на каждый запрос: после поиска сбрасываются
+ * только состояния достигнутых городов и размеры списков, а отметки сравниваются
+ * с растущими счётчиками
+ */
+public class DeltaSteppingSearch {
+    // Число городов фронта, обрабатываемых одной задачей без деления
+    private static final int LEAF_SIZE = 256;
+    // delta - средний вес ребра, умноженный на этот множитель
+    private static final int DELTA_FACTOR = 2;
+    private static final long UNREACHED = pack(Integer.MAX_VALUE, -1);
+
+    private final CompactGraph graph;
+    private final ForkJoinPool pool;
+    private final int[] deltas = new int[Criteria.values().length];
+    private final ConcurrentLinkedDeque<Workspace> workspaces = new ConcurrentLinkedDeque<>();
+
+    public DeltaSteppingSearch(CompactGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        for (Criteria criteria : Criteria.values()) {
+            deltas[criteria.ordinal()] = tuneDelta(graph, criteria);
+        }
+    }
+
+    /**
+     * Граф, для которого создан поиск
+     */
+    CompactGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Ширина корзины для критерия
+     */
+    public int delta(Criteria criteria) {
+        return deltas[criteria.ordinal()];
+    }
+
+    /**
+     * Поиск кратчайшего пути от source до target.
+     * Возвращает последовательность рёбер или null, если путь не существует
+     */
+    public int[] shortestPath(int source, int target, Criteria criteria, SearchStats stats) {
+        return shortestPaths(source, new int[] {target}, criteria, stats)[0];
+    }
+
+    /**
+     * Пути от source до нескольких целей за один поиск; поиск останавливается,
+     * когда расстояния до всех целей окончательны. Для недостижимой цели - null
+     */
+    public int[][] shortestPaths(int source, int[] targets, Criteria criteria, SearchStats stats) {
+        Workspace workspace = acquire();
+        try {
+            search(workspace, source, targets, criteria, stats);
+            int[][] paths = new int[targets.length][];
+            for (int i = 0; i < targets.length; i++) {
+                paths[i] = path(workspace.states, source, targets[i]);
+            }
+            return paths;
+        } finally {
+            release(workspace);
+        }
+    }
+
+    /**
+     * Полный поиск из source по всему графу. Заполняет расстояния
+     * (Integer.MAX_VALUE для недостижимых) и рёбра-предшественники
+     */
+    public void shortestPathTree(int source, Criteria criteria, int[] distances, int[] predecessors) {
+        Workspace workspace = acquire();
+        try {
+            search(workspace, source, new int[0], criteria, null);
+            for (int node = 0; node < distances.length; node++) {
+                long state = workspace.states.get(node);
+                distances[node] = distanceOf(state);
+                predecessors[node] = predecessorOf(state);
+            }
+        } finally {
+            release(workspace);
+        }
+    }
+
+    private Workspace acquire() {
+        Workspace workspace = workspaces.pollFirst();
+        return workspace != null ? workspace : new Workspace(graph.cityCount());
+    }
+
+    /**
+     * Сброс состояний достигнутых городов и возврат пространства в пул
+     */
+    private void release(Workspace workspace) {
+        IntList reached = workspace.reached;
+        for (int i = 0; i < reached.size; i++) {
+            workspace.states.set(reached.values[i], UNREACHED);
+        }
+        reached.size = 0;
+        workspaces.offerFirst(workspace);
+    }
+
+    /**
+     * Основной цикл по корзинам. Раскладка по корзинам выполняется в вызывающем потоке,
+     * релаксация фронта - в пуле ForkJoin
+     */
+    private void search(Workspace workspace, int source, int[] targets, Criteria criteria, SearchStats stats) {
+        int delta = deltas[criteria.ordinal()];
+        AtomicLongArray states = workspace.states;
+        int[] frontierStamps = workspace.frontierStamps;
+        int[] settledStamps = workspace.settledStamps;
+        workspace.nextQuery();
+        states.set(source, pack(0, -1));
+        workspace.markReached(source);
+
+        Buckets buckets = workspace.buckets(graph.maxWeight(criteria) / delta + 2);
+        buckets.add(0, source);
+        IntList processed = workspace.processed;
+        IntList frontier = workspace.frontier;
+
+        long relaxed = 0;
+        long pushes = 1;
+        long pops = 0;
+        int peak = 0;
+        int settled = 0;
+
+        for (int bucket = buckets.next(0); bucket >= 0; bucket = buckets.next(bucket + 1)) {
+            if (targetsFinal(states, targets, bucket, delta)) {
+                break;
+            }
+
+            processed.size = 0;
+            int round = workspace.nextRound();
+            while (!buckets.isEmpty(bucket)) {
+                int pass = workspace.nextPass();
+                IntList taken = buckets.take(bucket, workspace.taken);
+                workspace.taken = taken;
+                frontier.size = 0;
+                for (int i = 0; i < taken.size; i++) {
+                    int node = taken.values[i];
+                    pops++;
+                    // Устаревшие записи: город уже в другой корзине или дважды в этой
+                    if (distanceOf(states.get(node)) / delta != bucket || frontierStamps[node] == pass) {
+                        continue;
+                    }
+                    frontierStamps[node] = pass;
+                    frontier.add(node);
+                    if (settledStamps[node] != round) {
+                        settledStamps[node] = round;
+                        processed.add(node);
+                        settled++;
+                    }
+                }
+                peak = Math.max(peak, frontier.size);
+
+                Relaxation light = relax(states, frontier, criteria, delta, true);
+                relaxed += light.relaxed;
+                pushes += distribute(workspace, light.updated, buckets, delta);
+            }
+
+            Relaxation heavy = relax(states, processed, criteria, delta, false);
+            relaxed += heavy.relaxed;
+            pushes += distribute(workspace, heavy.updated, buckets, delta);
+        }
+
+        if (stats != null) {
+            stats.add(settled, relaxed, pushes, pops, peak);
+        }
+    }
+
+    /**
+     * Все цели окончательны, если их расстояния меньше начала текущей корзины
+     */
+    private static boolean targetsFinal(AtomicLongArray states, int[] targets, int bucket, int delta) {
+        if (targets.length == 0) {
+            return false;
+        }
+        for (int target : targets) {
+            int distance = distanceOf(states.get(target));
+            if (distance == Integer.MAX_VALUE || distance / delta >= bucket) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Релаксация лёгких (light) или тяжёлых рёбер городов фронта.
+     * Маленький фронт обрабатывается в текущем потоке
+     */
+    private Relaxation relax(AtomicLongArray states, IntList frontier, Criteria criteria, int delta, boolean light) {
+        RelaxTask task = new RelaxTask(states, frontier.values, 0, frontier.size, criteria, delta, light);
+        if (frontier.size <= LEAF_SIZE) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return task.result();
+    }
+
+    /**
+     * Раскладка улучшенных городов по корзинам их текущих расстояний.
+     * Впервые достигнутые города запоминаются для сброса. Возвращает число добавлений
+     */
+    private static long distribute(Workspace workspace, List<IntList> updated, Buckets buckets, int delta) {
+        long pushes = 0;
+        for (IntList nodes : updated) {
+            for (int i = 0; i < nodes.size; i++) {
+                int node = nodes.values[i];
+                workspace.markReached(node);
+                buckets.add(distanceOf(workspace.states.get(node)) / delta, node);
+            }
+            pushes += nodes.size;
+        }
+        return pushes;
+    }
+
+    /**
+     * Путь source -> target по упакованным предшественникам
+     */
+    private int[] path(AtomicLongArray states, int source, int target) {
+        if (source != target && predecessorOf(states.get(target)) < 0) {
+            return null;
+        }
+        int hops = 0;
+        for (int node = target; node != source; node = graph.source(predecessorOf(states.get(node)))) {
+            hops++;
+        }
+        int[] edges = new int[hops];
+        for (int node = target; node != source; node = graph.source(predecessorOf(states.get(node)))) {
+            edges[--hops] = predecessorOf(states.get(node));
+        }
+        return edges;
+    }
+
+    /**
+     * Автоматический выбор delta: средний вес ребра по критерию, умноженный на DELTA_FACTOR.
+     * Меньшая delta приближает поиск к алгоритму Дейкстры (мало параллельной работы),
+     * большая - к Беллману-Форду (много повторных релаксаций)
+     */
+    static int tuneDelta(CompactGraph graph, Criteria criteria) {
+        int edges = graph.edgeCount();
+        if (edges == 0) {
+            return 1;
+        }
+        long total = 0;
+        for (int edge = 0; edge < edges; edge++) {
+            total += graph.weight(edge, criteria);
+        }
+        long delta = total * DELTA_FACTOR / edges;
+        return (int) Math.max(1, Math.min(delta, Math.max(1, graph.maxWeight(criteria))));
+    }
+
+    private static long pack(int distance, int predecessor) {
+        return ((long) distance << 32) | (predecessor & 0xFFFFFFFFL);
+    }
+
+    private static int distanceOf(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int predecessorOf(long state) {
+        return (int) state;
+    }
+
+    /**
+     * Итог релаксации: улучшенные города (списки листовых задач) и число просмотренных рёбер
+     */
+    private record Relaxation(List<IntList> updated, long relaxed) {
+    }
+
+    /**
+     * Параллельная релаксация диапазона фронта: делится пополам до LEAF_SIZE городов.
+     * Лист собирает города, расстояние которых он уменьшил
+     */
+    private final class RelaxTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicLongArray states;
+        private final int[] frontier;
+        private final int from;
+        private final int to;
+        private final Criteria criteria;
+        private final int delta;
+        private final boolean light;
+
+        private RelaxTask left;
+        private RelaxTask right;
+        private IntList updated;
+        private long relaxed;
+
+        RelaxTask(AtomicLongArray states, int[] frontier, int from, int to,
+                  Criteria criteria, int delta, boolean light) {
+            this.states = states;
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.criteria = criteria;
+            this.delta = delta;
+            this.light = light;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                left = new RelaxTask(states, frontier, from, middle, criteria, delta, light);
+                right = new RelaxTask(states, frontier, middle, to, criteria, delta, light);
+                invokeAll(left, right);
+                return;
+            }
+
+            updated = new IntList();
+            for (int i = from; i < to; i++) {
+                int node = frontier[i];
+                int distance = distanceOf(states.get(node));
+                for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                    int weight = graph.weight(edge, criteria);
+                    if ((weight <= delta) != light) {
+                        continue;
+                    }
+                    relaxed++;
+                    int neighbor = graph.target(edge);
+                    int newDistance = distance + weight;
+                    long candidate = pack(newDistance, edge);
+
+                    // CAS, пока новое расстояние лучше текущего
+                    long current = states.get(neighbor);
+                    while (newDistance < distanceOf(current)) {
+                        if (states.compareAndSet(neighbor, current, candidate)) {
+                            updated.add(neighbor);
+                            break;
+                        }
+                        current = states.get(neighbor);
+                    }
+                }
+            }
+        }
+
+        Relaxation result() {
+            List<IntList> lists = new ArrayList<>();
+            long total = collect(lists);
+            return new Relaxation(lists, total);
+        }
+
+        private long collect(List<IntList> lists) {
+            if (left != null) {
+                return left.collect(lists) + right.collect(lists);
+            }
+            lists.add(updated);
+            return relaxed;
+        }
+    }
+
+    /**
+     * Состояния и отметки городов одного поиска, корзины и списки городов корзины.
+     * Состояния всех городов, кроме перечисленных в reached, равны UNREACHED;
+     * отметка действительна, если равна текущему значению своего счётчика
+     * (запроса, корзины или прохода)
+     */
+    private static final class Workspace {
+        final AtomicLongArray states;
+        // Отметки: город уже во фронте текущего прохода / среди обработанных в корзине / достигнут
+        final int[] frontierStamps;
+        final int[] settledStamps;
+        final int[] reachedStamps;
+        final IntList reached = new IntList();
+        // Обработанные в текущей корзине города, фронт прохода и содержимое взятой корзины
+        final IntList processed = new IntList();
+        final IntList frontier = new IntList();
+        IntList taken = new IntList();
+        private Buckets buckets;
+        private int pass;
+        private int round;
+        private int query;
+
+        Workspace(int n) {
+            states = new AtomicLongArray(n);
+            for (int node = 0; node < n; node++) {
+                states.set(node, UNREACHED);
+            }
+            frontierStamps = new int[n];
+            settledStamps = new int[n];
+            reachedStamps = new int[n];
+        }
+
+        /**
+         * Пустые корзины: прежние, если их число совпадает, иначе новые
+         */
+        Buckets buckets(int length) {
+            if (buckets == null || buckets.length() != length) {
+                buckets = new Buckets(length);
+            } else {
+                buckets.clear();
+            }
+            return buckets;
+        }
+
+        void nextQuery() {
+            query = next(query, reachedStamps);
+        }
+
+        int nextRound() {
+            round = next(round, settledStamps);
+            return round;
+        }
+
+        int nextPass() {
+            pass = next(pass, frontierStamps);
+            return pass;
+        }
+
+        /**
+         * Запоминание города для сброса после поиска (один раз за запрос)
+         */
+        void markReached(int node) {
+            if (reachedStamps[node] != query) {
+                reachedStamps[node] = query;
+                reached.add(node);
+            }
+        }
+
+        /**
+         * Следующее значение счётчика; при переполнении отметки очищаются
+         */
+        private static int next(int counter, int[] stamps) {
+            if (counter == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                counter = 0;
+            }
+            return counter + 1;
+        }
+    }
+
+    /**
+     * Циклический массив корзин: корзина с номером b хранится в ячейке b % length
+     */
+    private static final class Buckets {
+        private final IntList[] slots;
+        private int count;
+
+        Buckets(int length) {
+            slots = new IntList[length];
+            for (int i = 0; i < length; i++) {
+                slots[i] = new IntList();
+            }
+        }
+
+        void add(int bucket, int node) {
+            slots[bucket % slots.length].add(node);
+            count++;
+        }
+
+        int length() {
+            return slots.length;
+        }
+
+        /**
+         * Очистка корзин, оставшихся непустыми после остановки поиска
+         */
+        void clear() {
+            if (count == 0) {
+                return;
+            }
+            for (IntList slot : slots) {
+                slot.size = 0;
+            }
+            count = 0;
+        }
+
+        boolean isEmpty(int bucket) {
+            return slots[bucket % slots.length].size == 0;
+        }
+
+        /**
+         * Содержимое корзины без копирования: список корзины отдаётся целиком,
+         * а его место занимает очищенный список spare
+         */
+        IntList take(int bucket, IntList spare) {
+            int slot = bucket % slots.length;
+            IntList values = slots[slot];
+            count -= values.size;
+            spare.size = 0;
+            slots[slot] = spare;
+            return values;
+        }
+
+        /**
+         * Номер первой непустой корзины, начиная с from, или -1
+         */
+        int next(int from) {
+            if (count == 0) {
+                return -1;
+            }
+            for (int bucket = from; ; bucket++) {
+                if (slots[bucket % slots.length].size > 0) {
+                    return bucket;
+                }
+            }
+        }
+    }
+
+    /**
+     * Растущий массив int
+     */
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
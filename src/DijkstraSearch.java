@@ -0,0 +1,182 @@
+import java.util.Arrays;
+
+/**
+ * Алгоритм Дейкстры над компактным представлением графа.
+ * Работает только с целочисленными индексами городов и рёбер.
+ * Запросы берут массивы и очередь из SearchWorkspace, поэтому не выделяют
+ * и не заполняют массивы размером с граф
+ */
+public class DijkstraSearch {
+    private DijkstraSearch() {
+    }
+
+    /**
+     * Поиск кратчайшего пути от source до target по заданному критерию.
+     * Возвращает последовательность рёбер или null, если путь не существует
+     */
+    public static int[] shortestPath(CompactGraph graph, int source, int target,
+                                     Criteria criteria, QueueType queueType) {
+        return shortestPath(graph, source, target, criteria, queueType, null);
+    }
+
+    /**
+     * То же с подсчётом работы поиска в stats (null - без подсчёта)
+     */
+    public static int[] shortestPath(CompactGraph graph, int source, int target,
+                                     Criteria criteria, QueueType queueType, SearchStats stats) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph);
+        try {
+            NodeQueue queue = workspace.queue(graph, criteria, queueType);
+            workspace.update(source, 0, -1);
+            queue.push(source, 0);
+            // Счётчики в локальных переменных; в stats переносятся один раз в конце
+            long relaxed = 0;
+            int pushes = 1;
+            int pops = 0;
+            int peak = 0;
+
+            // Основной цикл: каждый город извлекается из очереди не более одного раза
+            while (!queue.isEmpty()) {
+                peak = Math.max(peak, queue.size());
+                int node = queue.pop();
+                pops++;
+
+                // Если достигли целевого города
+                if (node == target) {
+                    break;
+                }
+
+                // Обход исходящих рёбер
+                int distance = workspace.distance(node);
+                int end = graph.edgeEnd(node);
+                relaxed += end - graph.edgeStart(node);
+                for (int edge = graph.edgeStart(node); edge < end; edge++) {
+                    int neighbor = graph.target(edge);
+                    int newDistance = distance + graph.weight(edge, criteria);
+
+                    if (newDistance < workspace.distance(neighbor)) {
+                        workspace.update(neighbor, newDistance, edge);
+                        queue.push(neighbor, newDistance);
+                        pushes++;
+                    }
+                }
+            }
+
+            if (stats != null) {
+                stats.add(pops, relaxed, pushes, pops, peak);
+            }
+            return workspace.path(graph, source, target);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Поиск из одного источника до нескольких целей за один проход.
+     * Поиск останавливается, когда извлечены все достижимые цели,
+     * пути ко всем целям восстанавливаются из общего дерева предшественников.
+     * Для недостижимой цели возвращается null
+     */
+    public static int[][] shortestPaths(CompactGraph graph, int source, int[] targets,
+                                        Criteria criteria, QueueType queueType) {
+        return shortestPaths(graph, source, targets, criteria, queueType, null);
+    }
+
+    /**
+     * То же с подсчётом работы поиска в stats (null - без подсчёта)
+     */
+    public static int[][] shortestPaths(CompactGraph graph, int source, int[] targets,
+                                        Criteria criteria, QueueType queueType, SearchStats stats) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph);
+        try {
+            NodeQueue queue = workspace.queue(graph, criteria, queueType);
+            int remaining = 0;
+            for (int target : targets) {
+                if (!workspace.isTarget(target)) {
+                    workspace.markTarget(target);
+                    remaining++;
+                }
+            }
+
+            workspace.update(source, 0, -1);
+            queue.push(source, 0);
+            long relaxed = 0;
+            int pushes = 1;
+            int pops = 0;
+            int peak = 0;
+
+            while (!queue.isEmpty()) {
+                peak = Math.max(peak, queue.size());
+                int node = queue.pop();
+                pops++;
+
+                // Останавливаемся, когда извлечены все цели группы
+                if (workspace.isTarget(node) && --remaining == 0) {
+                    break;
+                }
+
+                int distance = workspace.distance(node);
+                int end = graph.edgeEnd(node);
+                relaxed += end - graph.edgeStart(node);
+                for (int edge = graph.edgeStart(node); edge < end; edge++) {
+                    int neighbor = graph.target(edge);
+                    int newDistance = distance + graph.weight(edge, criteria);
+
+                    if (newDistance < workspace.distance(neighbor)) {
+                        workspace.update(neighbor, newDistance, edge);
+                        queue.push(neighbor, newDistance);
+                        pushes++;
+                    }
+                }
+            }
+
+            if (stats != null) {
+                stats.add(pops, relaxed, pushes, pops, peak);
+            }
+            int[][] paths = new int[targets.length][];
+            for (int i = 0; i < targets.length; i++) {
+                paths[i] = workspace.path(graph, source, targets[i]);
+            }
+            return paths;
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Полный поиск из source по всему графу (дерево кратчайших путей).
+     * Заполняет расстояния, рёбра-предшественники и, если order не null,
+     * порядок извлечения городов. Возвращает число достигнутых городов
+     */
+    public static int shortestPathTree(CompactGraph graph, int source, Criteria criteria,
+                                       int[] distances, int[] predecessors, int[] order) {
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        Arrays.fill(predecessors, -1);
+        NodeQueue queue = QueueType.DARY_HEAP.create(graph, criteria);
+
+        distances[source] = 0;
+        queue.push(source, 0);
+        int settled = 0;
+
+        while (!queue.isEmpty()) {
+            int node = queue.pop();
+            if (order != null) {
+                order[settled] = node;
+            }
+            settled++;
+
+            int distance = distances[node];
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int neighbor = graph.target(edge);
+                int newDistance = distance + graph.weight(edge, criteria);
+
+                if (newDistance < distances[neighbor]) {
+                    distances[neighbor] = newDistance;
+                    predecessors[neighbor] = edge;
+                    queue.push(neighbor, newDistance);
+                }
+            }
+        }
+        return settled;
+    }
+}
@@ -0,0 +1,455 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Быстрый парсер входного файла через отображение в память (FileChannel.map).
+ * Строки секций разбираются прямо из байтов: числа декодируются на месте,
+ * название города декодируется из UTF-8 один раз при его объявлении,
+ * а строки [ROADS] не создают ни одного объекта.
+ * Файл отображается окнами, поэтому его размер не ограничен 2 ГБ.
+ *
+ * В параллельном режиме секция [ROADS] делится на фрагменты по границам строк,
+ * фрагменты разбираются на всех ядрах в примитивные буферы дорог, а граф строится
+ * из них пакетно (Graph.addRoads, GraphBuilder). Фрагмент останавливается на заголовке
+ * следующей секции, и разбор продолжается с него последовательно.
+ * parseCompressed так же разбирает дороги параллельно, но строит из фрагментов сразу
+ * сжатый граф (GraphBuilder.buildCompressed), не создавая CSR-представления.
+ */
+public class FastParser {
+    // Размер окна отображения; строка не может быть длиннее окна
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+    // Минимальный размер фрагмента секции [ROADS] и запас отображения для строки,
+    // начатой у конца фрагмента
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int LINE_MARGIN = 1 << 20;
+    // Идентификаторы городов меньше этого значения индексируются массивом
+    private static final int DENSE_ID_LIMIT = 1 << 26;
+
+    private static final byte[] CITIES_HEADER = "[CITIES]".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROADS_HEADER = "[ROADS]".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REQUESTS_HEADER = "[REQUESTS]".getBytes(StandardCharsets.US_ASCII);
+
+    private final String filename;
+    private final List<Request> requests = new ArrayList<>();
+    private final Graph graph;
+    private final boolean parallel;
+    private final boolean deduplicate;
+    // Дороги сжимаются сразу после разбора (parseCompressed)
+    private boolean compressed;
+
+    // Соответствие идентификатора города из файла плотному индексу в графе
+    private int[] denseIds;
+    private final Map<Integer, Integer> sparseIds;
+
+    // Параллельный режим: разобранные фрагменты дорог основного парсера;
+    // у парсера фрагмента - его дороги и сообщения об ошибках
+    private final List<GraphBuilder.Roads> roadChunks = new ArrayList<>();
+    private GraphBuilder.Roads roads;
+    private List<String> errors;
+
+    // Текущая строка: окно и границы
+    private MappedByteBuffer buffer;
+    private int position;
+    private int lineEnd;
+
+    public FastParser(String filename) {
+        this(filename, false, false);
+    }
+
+    /**
+     * parallel - параллельный разбор секции [ROADS] и пакетное построение графа,
+     * deduplicate - оставить из параллельных дорог только лучшие по каждому критерию
+     * (только в параллельном режиме и в parseCompressed)
+     */
+    public FastParser(String filename, boolean parallel, boolean deduplicate) {
+        this.filename = filename;
+        this.graph = new Graph();
+        this.parallel = parallel;
+        this.deduplicate = deduplicate;
+        this.denseIds = new int[1024];
+        this.sparseIds = new HashMap<>();
+        Arrays.fill(denseIds, -1);
+    }
+
+    /**
+     * Парсер одного фрагмента секции [ROADS]: таблицы городов общие с основным парсером
+     * и во время параллельного разбора только читаются
+     */
+    private FastParser(FastParser parent, MappedByteBuffer buffer) {
+        this.filename = parent.filename;
+        this.graph = parent.graph;
+        this.parallel = false;
+        this.deduplicate = false;
+        this.denseIds = parent.denseIds;
+        this.sparseIds = parent.sparseIds;
+        this.buffer = buffer;
+        this.roads = new GraphBuilder.Roads(0);
+        this.errors = new ArrayList<>();
+    }
+
+    /**
+     * Разбор файла в граф, сразу хранящийся в сжатом виде (см. Graph.compress).
+     * Секция [ROADS] разбирается параллельно и в любом режиме парсера
+     */
+    public Graph parseCompressed() throws IOException {
+        compressed = true;
+        return parse();
+    }
+
+    /**
+     * Основной метод парсинга файла
+     */
+    public Graph parse() throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            ParseMode mode = ParseMode.NONE;
+
+            while (offset < size) {
+                int length = (int) Math.min(WINDOW_SIZE, size - offset);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                boolean lastWindow = offset + length == size;
+
+                int lineStart = offset == 0 ? skipByteOrderMark() : 0;
+                long resume = -1;
+                while (lineStart < length) {
+                    int newline = indexOf((byte) '\n', lineStart, length);
+                    if (newline < 0 && !lastWindow) {
+                        if (lineStart == 0) {
+                            throw new IOException("Слишком длинная строка в файле " + filename);
+                        }
+                        // Незавершённая строка переносится в следующее окно
+                        break;
+                    }
+                    int end = newline < 0 ? length : newline;
+                    ParseMode next = parseLine(lineStart, end, mode);
+                    lineStart = end + 1;
+                    if ((parallel || compressed) && next == ParseMode.ROADS) {
+                        // Строки после заголовка [ROADS] разбираются параллельно до следующей секции
+                        resume = parseRoadsInParallel(channel, offset + Math.min(lineStart, length), size);
+                        break;
+                    }
+                    mode = next;
+                }
+                if (resume >= 0) {
+                    offset = resume;
+                    mode = ParseMode.NONE;
+                } else {
+                    offset += Math.min(lineStart, length);
+                }
+            }
+        }
+        buffer = null;
+        if (compressed) {
+            graph.addRoadsCompressed(roadChunks, deduplicate);
+            roadChunks.clear();
+        } else if (parallel) {
+            graph.addRoads(roadChunks, deduplicate);
+            roadChunks.clear();
+        }
+        return graph;
+    }
+
+    /**
+     * Параллельный разбор строк дорог с позиции start. Фрагмент разбирает строки,
+     * которые начинаются в его границах; фрагменты после первого встреченного заголовка
+     * секции отбрасываются. Возвращает позицию этого заголовка или конец файла
+     */
+    private long parseRoadsInParallel(FileChannel channel, long start, long size) throws IOException {
+        long length = size - start;
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        int count = (int) Math.max(Math.min(length / MIN_CHUNK_SIZE, threads), (length + WINDOW_SIZE - 1) / WINDOW_SIZE);
+        count = Math.max(count, 1);
+        long[] bounds = new long[count + 1];
+        for (int i = 0; i <= count; i++) {
+            bounds[i] = start + length * i / count;
+        }
+
+        Chunk[] chunks = new Chunk[count];
+        try {
+            IntStream.range(0, count).parallel().forEach(i -> {
+                try {
+                    chunks[i] = parseChunk(channel, bounds[i], bounds[i + 1], i == 0, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        for (Chunk chunk : chunks) {
+            chunk.errors.forEach(System.err::println);
+            roadChunks.add(chunk.roads);
+            if (chunk.stop >= 0) {
+                return chunk.stop;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Разбор строк, начинающихся в [start, end). first - фрагмент начинается с начала строки
+     */
+    private Chunk parseChunk(FileChannel channel, long start, long end, boolean first, long size) throws IOException {
+        // Отображение начинается на байт раньше, чтобы увидеть, начинается ли строка в start
+        long mapStart = first ? start : start - 1;
+        int length = (int) (Math.min(size, end + LINE_MARGIN) - mapStart);
+        boolean reachesEnd = mapStart + length == size;
+        FastParser parser = new FastParser(this, channel.map(FileChannel.MapMode.READ_ONLY, mapStart, length));
+
+        int lineStart = 0;
+        if (!first) {
+            int newline = parser.indexOf((byte) '\n', 0, length);
+            lineStart = newline < 0 ? length : newline + 1;
+        }
+        long stop = -1;
+        int limit = (int) (end - mapStart);
+        while (lineStart < limit) {
+            int newline = parser.indexOf((byte) '\n', lineStart, length);
+            if (newline < 0 && !reachesEnd) {
+                throw new IOException("Слишком длинная строка в файле " + filename);
+            }
+            int lineEnd = newline < 0 ? length : newline;
+            if (parser.parseLine(lineStart, lineEnd, ParseMode.ROADS) != ParseMode.ROADS) {
+                stop = mapStart + lineStart;
+                break;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return new Chunk(parser.roads, parser.errors, stop);
+    }
+
+    public List<Request> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    /**
+     * Разбор одной строки в границах [start, end) текущего окна
+     */
+    private ParseMode parseLine(int start, int end, ParseMode mode) {
+        // Обрезка пробелов и \r по краям
+        while (start < end && isSpace(buffer.get(start))) {
+            start++;
+        }
+        while (end > start && isSpace(buffer.get(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return mode;
+        }
+
+        // Определение секции
+        if (buffer.get(start) == '[') {
+            if (matches(start, end, CITIES_HEADER)) {
+                return ParseMode.CITIES;
+            } else if (matches(start, end, ROADS_HEADER)) {
+                return ParseMode.ROADS;
+            } else if (matches(start, end, REQUESTS_HEADER)) {
+                return ParseMode.REQUESTS;
+            }
+        }
+
+        position = start;
+        lineEnd = end;
+        switch (mode) {
+            case CITIES -> parseCity();
+            case ROADS -> parseRoad();
+            case REQUESTS -> {
+                // Запросы не являются горячим путём и разбираются общим кодом Parser
+                Request request = Parser.parseRequest(decode(start, end));
+                if (request != null) {
+                    requests.add(request);
+                }
+            }
+            default -> {}
+        }
+        return mode;
+    }
+
+    /**
+     * Строка города: "ID: Название"
+     */
+    private void parseCity() {
+        int lineStart = position;
+        int id = parseNumber();
+        skipSpaces();
+        if (id < 0 || !expect(':')) {
+            error("Некорректный формат города: " + decode(lineStart, lineEnd));
+            return;
+        }
+        skipSpaces();
+
+        // Единственное декодирование названия города
+        String name = decode(position, lineEnd);
+        int index = graph.addCity(new City(id, name));
+        putDenseId(id, index);
+    }
+
+    /**
+     * Строка дороги: "ID1 - ID2: длина, время, стоимость"
+     */
+    private void parseRoad() {
+        int lineStart = position;
+        int cityId1 = parseNumber();
+        boolean valid = cityId1 >= 0 && separator('-');
+        int cityId2 = valid ? parseNumber() : -1;
+        valid = cityId2 >= 0 && separator(':');
+        int length = valid ? parseNumber() : -1;
+        valid = length >= 0 && separator(',');
+        int time = valid ? parseNumber() : -1;
+        valid = time >= 0 && separator(',');
+        int cost = valid ? parseNumber() : -1;
+        skipSpaces();
+
+        if (cost < 0 || position != lineEnd) {
+            error("Некорректный формат дороги: " + decode(lineStart, lineEnd));
+            return;
+        }
+
+        int from = denseId(cityId1);
+        int to = denseId(cityId2);
+        if (from < 0 || to < 0) {
+            error("Город с указанным ID не найден: " + decode(lineStart, lineEnd));
+            return;
+        }
+        if (roads != null) {
+            roads.add(from, to, length, time, cost);
+        } else {
+            graph.addRoad(from, to, length, time, cost);
+        }
+    }
+
+    /**
+     * Сообщение о некорректной строке; парсер фрагмента откладывает его,
+     * чтобы сообщения выводились в порядке строк файла
+     */
+    private void error(String message) {
+        if (errors != null) {
+            errors.add(message);
+        } else {
+            System.err.println(message);
+        }
+    }
+
+    /**
+     * Десятичное неотрицательное число на текущей позиции или -1
+     */
+    private int parseNumber() {
+        skipSpaces();
+        long value = 0;
+        int digits = 0;
+        while (position < lineEnd) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+            position++;
+            digits++;
+        }
+        return digits == 0 ? -1 : (int) value;
+    }
+
+    private boolean separator(char expected) {
+        skipSpaces();
+        return expect(expected);
+    }
+
+    private boolean expect(char expected) {
+        if (position < lineEnd && buffer.get(position) == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipSpaces() {
+        while (position < lineEnd && isSpace(buffer.get(position))) {
+            position++;
+        }
+    }
+
+    private static boolean isSpace(byte value) {
+        return value == ' ' || value == '\t' || value == '\r';
+    }
+
+    private boolean matches(int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipByteOrderMark() {
+        if (buffer.limit() >= 3 && buffer.get(0) == (byte) 0xEF
+                && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+            return 3;
+        }
+        return 0;
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void putDenseId(int id, int index) {
+        if (id >= DENSE_ID_LIMIT) {
+            sparseIds.put(id, index);
+            return;
+        }
+        if (id >= denseIds.length) {
+            int oldLength = denseIds.length;
+            denseIds = Arrays.copyOf(denseIds, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(denseIds, oldLength, denseIds.length, -1);
+        }
+        denseIds[id] = index;
+    }
+
+    private int denseId(int id) {
+        if (id >= DENSE_ID_LIMIT) {
+            return sparseIds.getOrDefault(id, -1);
+        }
+        return id < denseIds.length ? denseIds[id] : -1;
+    }
+
+    /**
+     * Результат разбора фрагмента: дороги, отложенные сообщения об ошибках
+     * и позиция заголовка секции, на котором разбор остановился (-1 - не встретился)
+     */
+    private record Chunk(GraphBuilder.Roads roads, List<String> errors, long stop) {
+    }
+
+    /**
+     * Перечисление режимов парсинга
+     */
+    private enum ParseMode {
+        NONE, CITIES, ROADS, REQUESTS
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Совмещённый поиск по всем критериям: три алгоритма Дейкстры (длина, время, стоимость)
+ * с отдельными расстояниями, предшественниками и очередями выполняются в одном цикле.
+ * На каждом шаге каждый поиск извлекает по городу; город, извлечённый несколькими
+ * поисками, обходится один раз, и каждое ребро (цель и веса из раздельных массивов CSR)
+ * релаксируется сразу для всех этих критериев. Поиски по коррелированным критериям
+ * обрабатывают близкие области почти одновременно, поэтому списки смежности,
+ * загруженные одним поиском, ещё в кэше, когда их читают остальные.
+ * Расстояния и предшественники трёх критериев одного города лежат рядом
+ * (элемент node * 3 + критерий общего пространства поиска), в одной строке кэша
+ */
+public class FusedSearch {
+    private static final Criteria[] CRITERIA = Criteria.values();
+
+    private FusedSearch() {
+    }
+
+    /**
+     * Пути от source до target по каждому критерию в порядке констант Criteria;
+     * null на месте пути, если target недостижим
+     */
+    public static int[][] shortestPaths(CompactGraph graph, int source, int target, QueueType queueType) {
+        int[][][] paths = shortestPaths(graph, source, new int[] {target}, queueType, null);
+        int[][] result = new int[CRITERIA.length][];
+        for (int c = 0; c < CRITERIA.length; c++) {
+            result[c] = paths[c][0];
+        }
+        return result;
+    }
+
+    /**
+     * Пути от source до каждой цели по каждому критерию: paths[критерий][цель].
+     * Поиск по критерию останавливается, когда извлечены все его цели.
+     * stats - счётчики по критериям (null - без подсчёта)
+     */
+    public static int[][][] shortestPaths(CompactGraph graph, int source, int[] targets,
+                                          QueueType queueType, SearchStats[] stats) {
+        int k = CRITERIA.length;
+        SearchWorkspace state = SearchWorkspace.acquire(graph.cityCount() * k);
+        // Пространства по критериям используются только ради их очередей
+        SearchWorkspace[] queueOwners = new SearchWorkspace[k];
+        try {
+            NodeQueue[] queues = new NodeQueue[k];
+            int[] remaining = new int[k];
+            for (int c = 0; c < k; c++) {
+                queueOwners[c] = SearchWorkspace.acquire(graph);
+                queues[c] = queueOwners[c].queue(graph, CRITERIA[c], queueType);
+                for (int target : targets) {
+                    if (!state.isTarget(target * k + c)) {
+                        state.markTarget(target * k + c);
+                        remaining[c]++;
+                    }
+                }
+                state.update(source * k + c, 0, -1);
+                queues[c].push(source, 0);
+            }
+
+            // Счётчики в локальных массивах; в stats переносятся один раз в конце
+            long[] relaxed = new long[k];
+            int[] pushes = new int[k];
+            int[] pops = new int[k];
+            int[] peaks = new int[k];
+            int[] popped = new int[k];
+            int[] group = new int[k];
+            int[] distances = new int[k];
+            boolean[] active = new boolean[k];
+            int activeCount = k;
+            for (int c = 0; c < k; c++) {
+                pushes[c] = 1;
+                active[c] = true;
+            }
+
+            while (activeCount > 0) {
+                // Каждый активный поиск извлекает по городу
+                for (int c = 0; c < k; c++) {
+                    popped[c] = -1;
+                    if (!active[c]) {
+                        continue;
+                    }
+                    NodeQueue queue = queues[c];
+                    if (queue.isEmpty()) {
+                        active[c] = false;
+                        activeCount--;
+                        continue;
+                    }
+                    peaks[c] = Math.max(peaks[c], queue.size());
+                    int node = queue.pop();
+                    pops[c]++;
+                    if (state.isTarget(node * k + c) && --remaining[c] == 0) {
+                        active[c] = false;
+                        activeCount--;
+                        continue;
+                    }
+                    popped[c] = node;
+                }
+
+                // Обход: город, извлечённый несколькими поисками, обходится один раз
+                for (int c = 0; c < k; c++) {
+                    int node = popped[c];
+                    if (node < 0) {
+                        continue;
+                    }
+                    int size = 0;
+                    for (int other = c; other < k; other++) {
+                        if (popped[other] == node) {
+                            distances[size] = state.distance(node * k + other);
+                            group[size++] = other;
+                            popped[other] = -1;
+                        }
+                    }
+
+                    int start = graph.edgeStart(node);
+                    int end = graph.edgeEnd(node);
+                    for (int i = 0; i < size; i++) {
+                        relaxed[group[i]] += end - start;
+                    }
+                    if (size == 1) {
+                        // Город извлечён одним поиском: обычная релаксация без цикла по критериям
+                        int criteria = group[0];
+                        Criteria weightCriteria = CRITERIA[criteria];
+                        NodeQueue queue = queues[criteria];
+                        for (int edge = start; edge < end; edge++) {
+                            int slot = graph.target(edge) * k + criteria;
+                            int newDistance = distances[0] + graph.weight(edge, weightCriteria);
+                            if (newDistance < state.distance(slot)) {
+                                state.update(slot, newDistance, edge);
+                                queue.push(graph.target(edge), newDistance);
+                                pushes[criteria]++;
+                            }
+                        }
+                        continue;
+                    }
+                    for (int edge = start; edge < end; edge++) {
+                        int neighbor = graph.target(edge);
+                        for (int i = 0; i < size; i++) {
+                            int criteria = group[i];
+                            int slot = neighbor * k + criteria;
+                            int newDistance = distances[i] + graph.weight(edge, CRITERIA[criteria]);
+                            if (newDistance < state.distance(slot)) {
+                                state.update(slot, newDistance, edge);
+                                queues[criteria].push(neighbor, newDistance);
+                                pushes[criteria]++;
+                            }
+                        }
+                    }
+                }
+            }
+
+            int[][][] paths = new int[k][targets.length][];
+            for (int c = 0; c < k; c++) {
+                if (stats != null && stats[c] != null) {
+                    stats[c].add(pops[c], relaxed[c], pushes[c], pops[c], peaks[c]);
+                }
+                for (int i = 0; i < targets.length; i++) {
+                    paths[c][i] = path(graph, state, source, targets[i], c);
+                }
+            }
+            return paths;
+        } finally {
+            state.release();
+            for (SearchWorkspace workspace : queueOwners) {
+                if (workspace != null) {
+                    workspace.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Путь source -> target по предшественникам критерия c; null, если target не достигнут
+     */
+    private static int[] path(CompactGraph graph, SearchWorkspace state, int source, int target, int c) {
+        int k = CRITERIA.length;
+        if (source != target && state.predecessor(target * k + c) < 0) {
+            return null;
+        }
+        int hops = 0;
+        for (int node = target; node != source; node = graph.source(state.predecessor(node * k + c))) {
+            hops++;
+        }
+        int[] edges = new int[hops];
+        for (int node = target; node != source; node = graph.source(state.predecessor(node * k + c))) {
+            edges[--hops] = state.predecessor(node * k + c);
+        }
+        return edges;
+    }
+}
@@ -1,180 +1,1006 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Класс, представляющий граф городов и дорог
  * Реализует алгоритм Дейкстры для поиска кратчайших путей
+ *
+ * Города и дороги накапливаются в изменяемом виде, а для поиска
+ * граф замораживается в компактное CSR-представление (CompactGraph),
+ * которое пересобирается только после изменения графа.
+ *
+ * Поиск не использует общего изменяемого состояния: каждый вызов работает
+ * со своим снимком CompactGraph, поэтому граф можно читать из многих потоков.
+ * Изменения графа синхронизированы и публикуются через volatile-ссылки.
+ * addCity и addRoad предназначены для построения графа: следующий поиск пересобирает
+ * снимок. Изменения во время работы поисков (пробки, перекрытия) передаются пакетом
+ * GraphUpdate в apply, который публикует готовый снимок, не останавливая поиски.
+ *
+ * Граф можно перевести в сжатый вид (compress, FastParser.parseCompressed): поиски Дейкстры
+ * и компромиссные маршруты идут по CompressedGraph, а CSR-представления и списков дорог нет.
  */
 public class Graph {
-    private final Map<String, City> cities = new HashMap<>();
-    private final Map<String, List<Road>> adjacencyList = new HashMap<>();
-    
+    private final Map<String, Integer> cityIndex = new HashMap<>();
+    private final List<City> cities = new ArrayList<>();
+
+    // Дороги хранятся в примитивных массивах по индексам городов
+    private int[] roadFrom = new int[16];
+    private int[] roadTo = new int[16];
+    private int[] roadLength = new int[16];
+    private int[] roadTime = new int[16];
+    private int[] roadCost = new int[16];
+    private int roadCount;
+
+    private volatile CompactGraph compact;
+    private volatile QueueType queueType = QueueType.DARY_HEAP;
+    private volatile Landmarks landmarks;
+    private volatile ContractionHierarchy[] hierarchies;
+    private volatile DeltaSteppingSearch deltaStepping;
+    private volatile ForkJoinPool deltaSteppingPool = ForkJoinPool.commonPool();
+    // Не сбрасывается при изменении графа: разбиение годится и для новых весов тех же дорог
+    private volatile PartitionOverlay overlay;
+    // Оверлей предыдущего снимка для поисков, начатых до публикации нового (см. apply)
+    private volatile PartitionOverlay previousOverlay;
+    private volatile RouteCache routeCache;
+    private volatile SearchMetrics searchMetrics;
+    private volatile long version;
+    // Граф, загруженный из снимка, получает изменяемые списки только при первом изменении
+    private boolean materialized = true;
+    // Новые веса дорог после apply, ещё не перенесённые в списки: ключ - пара городов (roadKey),
+    // значение - веса по критериям (-1 - не меняется). Переносятся перед изменением списков
+    private final Map<Long, int[]> pendingWeights = new HashMap<>();
+    // Снимки хранятся в прямых буферах вне кучи (см. moveOffHeap)
+    private boolean offHeap;
+    // Сжатый граф вместо компактного представления (см. compress); такой граф неизменяем
+    private volatile CompressedGraph compressed;
+
+    public Graph() {
+    }
+
+    /**
+     * Граф поверх готового компактного представления и результатов
+     * предварительной обработки (см. GraphSnapshot). Любой из них может быть null
+     */
+    Graph(CompactGraph compact, Landmarks landmarks, ContractionHierarchy[] hierarchies) {
+        this.compact = compact;
+        this.landmarks = landmarks;
+        this.hierarchies = hierarchies;
+        this.materialized = false;
+    }
+
     /**
-     * Добавляет город в граф
+     * Добавляет город в граф.
+     * Возвращает плотный индекс города; город с тем же названием заменяется
      */
-    public void addCity(City city) {
-        cities.put(city.getName(), city);
-        adjacencyList.putIfAbsent(city.getName(), new ArrayList<>());
+    public synchronized int addCity(City city) {
+        materialize();
+        Integer index = cityIndex.get(city.getName());
+        if (index != null) {
+            cities.set(index, city);
+        } else {
+            index = cities.size();
+            cityIndex.put(city.getName(), index);
+            cities.add(city);
+        }
+        invalidate();
+        return index;
     }
-    
+
     /**
      * Добавляет дорогу в граф (двустороннюю)
      */
-    public void addRoad(Road road) {
-        // Добавляем дорогу в обоих направлениях
-        adjacencyList.get(road.getFromCity()).add(road);
-        adjacencyList.get(road.getToCity()).add(road.getReverse());
+    public synchronized void addRoad(Road road) {
+        materialize();
+        Integer from = cityIndex.get(road.getFromCity());
+        Integer to = cityIndex.get(road.getToCity());
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Город не найден: " + road.getFromCity() + " или " + road.getToCity());
+        }
+        addRoad(from, to, road.getLength(), road.getTime(), road.getCost());
+    }
+
+    /**
+     * Добавляет двустороннюю дорогу между городами с плотными индексами from и to
+     * (индексы возвращает addCity). Не создаёт объектов Road
+     */
+    public synchronized void addRoad(int from, int to, int length, int time, int cost) {
+        materialize();
+        if (from < 0 || from >= cities.size() || to < 0 || to >= cities.size()) {
+            throw new IllegalArgumentException("Некорректный индекс города: " + from + " или " + to);
+        }
+        appendRoad(from, to, length, time, cost);
+        invalidate();
+    }
+
+    /**
+     * Пакетное добавление дорог, разобранных по фрагментам: компактное представление
+     * строится сразу и параллельно (GraphBuilder), без добавления дорог по одной.
+     * Списки дорог на куче не заполняются и восстанавливаются из снимка при изменении графа.
+     * deduplicate - оставить из параллельных дорог только лучшие по каждому критерию
+     */
+    synchronized void addRoads(List<GraphBuilder.Roads> chunks, boolean deduplicate) {
+        materialize();
+        List<GraphBuilder.Roads> all = new ArrayList<>(chunks.size() + 1);
+        if (roadCount > 0) {
+            all.add(new GraphBuilder.Roads(roadFrom, roadTo, roadLength, roadTime, roadCost, roadCount));
+        }
+        all.addAll(chunks);
+        CompactGraph built = GraphBuilder.build(cities, all, deduplicate);
+        invalidate();
+        compact = offHeap ? MappedCompactGraph.offHeap(built) : built;
+        dropLists();
+    }
+
+    /**
+     * Пакетное добавление дорог сразу в сжатом виде (GraphBuilder.buildCompressed):
+     * CSR-представление не строится, после вызова граф сжатый (см. compress)
+     */
+    synchronized void addRoadsCompressed(List<GraphBuilder.Roads> chunks, boolean deduplicate) {
+        materialize();
+        List<GraphBuilder.Roads> all = new ArrayList<>(chunks.size() + 1);
+        if (roadCount > 0) {
+            all.add(new GraphBuilder.Roads(roadFrom, roadTo, roadLength, roadTime, roadCost, roadCount));
+        }
+        all.addAll(chunks);
+        useCompressed(GraphBuilder.buildCompressed(cities, all, deduplicate));
+    }
+
+    private void appendRoad(int from, int to, int length, int time, int cost) {
+        if (roadCount == roadFrom.length) {
+            int capacity = roadCount * 2;
+            roadFrom = Arrays.copyOf(roadFrom, capacity);
+            roadTo = Arrays.copyOf(roadTo, capacity);
+            roadLength = Arrays.copyOf(roadLength, capacity);
+            roadTime = Arrays.copyOf(roadTime, capacity);
+            roadCost = Arrays.copyOf(roadCost, capacity);
+        }
+
+        // Оба направления появятся при построении компактного представления
+        roadFrom[roadCount] = from;
+        roadTo[roadCount] = to;
+        roadLength[roadCount] = length;
+        roadTime[roadCount] = time;
+        roadCost[roadCount] = cost;
+        roadCount++;
+    }
+
+    /**
+     * Восстановление списков городов и дорог из компактного представления
+     * (или перенос в них отложенных весов, если списки уже есть).
+     * Каждая дорога хранится в нём двумя рёбрами и берётся один раз
+     */
+    private void materialize() {
+        if (compressed != null) {
+            throw new IllegalStateException("Сжатый граф неизменяем");
+        }
+        if (materialized) {
+            syncWeights();
+            return;
+        }
+        materialized = true;
+        CompactGraph graph = compact;
+        for (int node = 0; node < graph.cityCount(); node++) {
+            City city = graph.city(node);
+            cityIndex.put(city.getName(), node);
+            cities.add(city);
+        }
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            if (edge < graph.twin(edge)) {
+                appendRoad(graph.source(edge), graph.target(edge), graph.weight(edge, Criteria.LENGTH),
+                           graph.weight(edge, Criteria.TIME), graph.weight(edge, Criteria.COST));
+            }
+        }
+    }
+
+    /**
+     * Применение пакета изменений. Новый снимок (CompactGraph) строится рядом с текущим:
+     * поиски в это время работают с текущим снимком без блокировок и ожидания, а затем
+     * новый снимок публикуется одной записью volatile-ссылки. Пакет только из новых весов
+     * разделяет с текущим снимком структуру и веса неизменённых критериев,
+     * а списки дорог получают новые веса при следующем изменении графа;
+     * новые города, дороги и перекрытия пересобирают CSR-представление.
+     *
+     * Оверлей ячеек настраивается для нового снимка до публикации (при изменении
+     * структуры - строится заново). Ориентиры и иерархии сжатия относятся к своему снимку
+     * и после изменения строятся заново вызовом prepare*. При ошибке (неизвестный город
+     * или дорога) граф не меняется. Возвращает новую версию графа
+     */
+    public synchronized long apply(GraphUpdate update) {
+        if (update.isEmpty()) {
+            return version;
+        }
+        CompactGraph current = freeze();
+        boolean structural = update.changesTopology();
+        CompactGraph next = structural ? rebuild(update) : reweight(current, update);
+        if (offHeap && !(next instanceof MappedCompactGraph)) {
+            next = MappedCompactGraph.offHeap(next);
+        }
+
+        PartitionOverlay currentOverlay = overlay;
+        PartitionOverlay nextOverlay = null;
+        if (currentOverlay != null) {
+            nextOverlay = structural
+                ? PartitionOverlay.build(next)
+                : currentOverlay.customize(next, update.changedCriteria());
+        }
+
+        // Поиск, начатый на текущем снимке, найдёт его оверлей в previousOverlay
+        previousOverlay = currentOverlay;
+        overlay = nextOverlay;
+        // Сначала снимок, затем версия: поиск, прочитавший новую версию, видит и новый снимок
+        compact = next;
+        version++;
+        if (!structural && materialized) {
+            deferWeights(update);
+        }
+        return version;
+    }
+
+    /**
+     * Новые веса по рёбрам текущего снимка; новый снимок копирует только массивы весов
+     * изменённых критериев (CompactGraph.withWeights)
+     */
+    private static CompactGraph reweight(CompactGraph graph, GraphUpdate update) {
+        CompactGraph.WeightChanges changes = new CompactGraph.WeightChanges();
+        for (Map.Entry<GraphUpdate.RoadKey, int[]> change : update.weights().entrySet()) {
+            String first = change.getKey().first();
+            String second = change.getKey().second();
+            int a = graph.indexOf(first);
+            int b = graph.indexOf(second);
+            if (a < 0 || b < 0) {
+                throw new IllegalArgumentException("Город не найден: " + first + " или " + second);
+            }
+
+            boolean found = false;
+            for (int edge = graph.edgeStart(a), end = graph.edgeEnd(a); edge < end; edge++) {
+                if (graph.target(edge) != b) {
+                    continue;
+                }
+                found = true;
+                for (Criteria criteria : Criteria.values()) {
+                    int weight = change.getValue()[criteria.ordinal()];
+                    if (weight >= 0) {
+                        changes.set(edge, criteria, weight);
+                        changes.set(graph.twin(edge), criteria, weight);
+                    }
+                }
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Дорога не найдена: " + first + " - " + second);
+            }
+        }
+        return graph.withWeights(changes);
+    }
+
+    /**
+     * Запоминание новых весов пакета для списков дорог (см. syncWeights)
+     */
+    private void deferWeights(GraphUpdate update) {
+        for (Map.Entry<GraphUpdate.RoadKey, int[]> change : update.weights().entrySet()) {
+            int[] values = pendingWeights.computeIfAbsent(roadKey(cityIndex, change.getKey()),
+                key -> new int[] {-1, -1, -1});
+            for (int c = 0; c < values.length; c++) {
+                if (change.getValue()[c] >= 0) {
+                    values[c] = change.getValue()[c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Перенос отложенных весов в списки дорог одним проходом. Вызывается перед изменением
+     * списков, после которого снимок всё равно строится заново по всем дорогам
+     */
+    private void syncWeights() {
+        if (pendingWeights.isEmpty()) {
+            return;
+        }
+        for (int r = 0; r < roadCount; r++) {
+            int[] values = pendingWeights.get(roadKey(roadFrom[r], roadTo[r]));
+            if (values != null) {
+                roadLength[r] = values[Criteria.LENGTH.ordinal()] >= 0 ? values[Criteria.LENGTH.ordinal()] : roadLength[r];
+                roadTime[r] = values[Criteria.TIME.ordinal()] >= 0 ? values[Criteria.TIME.ordinal()] : roadTime[r];
+                roadCost[r] = values[Criteria.COST.ordinal()] >= 0 ? values[Criteria.COST.ordinal()] : roadCost[r];
+            }
+        }
+        pendingWeights.clear();
+    }
+
+    /**
+     * Изменение списков городов и дорог и построение нового снимка.
+     * Всё проверяется на копиях до изменения списков
+     */
+    private CompactGraph rebuild(GraphUpdate update) {
+        materialize();
+        List<City> nextCities = new ArrayList<>(cities);
+        Map<String, Integer> nextIndex = new HashMap<>(cityIndex);
+        for (City city : update.cities()) {
+            Integer index = nextIndex.get(city.getName());
+            if (index != null) {
+                nextCities.set(index, city);
+            } else {
+                nextIndex.put(city.getName(), nextCities.size());
+                nextCities.add(city);
+            }
+        }
+
+        int count = roadCount + update.roads().size();
+        int[] from = Arrays.copyOf(roadFrom, Math.max(count, 16));
+        int[] to = Arrays.copyOf(roadTo, from.length);
+        int[] length = Arrays.copyOf(roadLength, from.length);
+        int[] time = Arrays.copyOf(roadTime, from.length);
+        int[] cost = Arrays.copyOf(roadCost, from.length);
+        int added = roadCount;
+        for (Road road : update.roads()) {
+            from[added] = requireCity(nextIndex, road.getFromCity());
+            to[added] = requireCity(nextIndex, road.getToCity());
+            length[added] = road.getLength();
+            time[added] = road.getTime();
+            cost[added] = road.getCost();
+            added++;
+        }
+
+        // Новые веса и перекрытия по парам индексов городов
+        Map<Long, int[]> weights = new HashMap<>();
+        for (Map.Entry<GraphUpdate.RoadKey, int[]> change : update.weights().entrySet()) {
+            weights.put(roadKey(nextIndex, change.getKey()), change.getValue());
+        }
+        Set<Long> closed = new HashSet<>();
+        for (GraphUpdate.RoadKey road : update.closures()) {
+            closed.add(roadKey(nextIndex, road));
+        }
+        Set<Long> matched = new HashSet<>();
+        int kept = 0;
+        for (int r = 0; r < count; r++) {
+            long key = roadKey(from[r], to[r]);
+            int[] values = weights.isEmpty() ? null : weights.get(key);
+            if (values != null) {
+                matched.add(key);
+                length[r] = values[Criteria.LENGTH.ordinal()] >= 0 ? values[Criteria.LENGTH.ordinal()] : length[r];
+                time[r] = values[Criteria.TIME.ordinal()] >= 0 ? values[Criteria.TIME.ordinal()] : time[r];
+                cost[r] = values[Criteria.COST.ordinal()] >= 0 ? values[Criteria.COST.ordinal()] : cost[r];
+            }
+            if (!closed.isEmpty() && closed.contains(key)) {
+                matched.add(key);
+                continue;
+            }
+            from[kept] = from[r];
+            to[kept] = to[r];
+            length[kept] = length[r];
+            time[kept] = time[r];
+            cost[kept] = cost[r];
+            kept++;
+        }
+        Set<Long> requested = new HashSet<>(weights.keySet());
+        requested.addAll(closed);
+        for (long key : requested) {
+            if (!matched.contains(key)) {
+                throw new IllegalArgumentException("Дорога не найдена: " + nextCities.get((int) (key >>> 32)).getName()
+                    + " - " + nextCities.get((int) key).getName());
+            }
+        }
+
+        cities.clear();
+        cities.addAll(nextCities);
+        cityIndex.clear();
+        cityIndex.putAll(nextIndex);
+        roadFrom = from;
+        roadTo = to;
+        roadLength = length;
+        roadTime = time;
+        roadCost = cost;
+        roadCount = kept;
+        return CompactGraph.build(cities, roadCount, roadFrom, roadTo, roadLength, roadTime, roadCost);
+    }
+
+    private static int requireCity(Map<String, Integer> index, String name) {
+        Integer node = index.get(name);
+        if (node == null) {
+            throw new IllegalArgumentException("Город не найден: " + name);
+        }
+        return node;
+    }
+
+    private static long roadKey(Map<String, Integer> index, GraphUpdate.RoadKey road) {
+        return roadKey(requireCity(index, road.first()), requireCity(index, road.second()));
+    }
+
+    /**
+     * Ключ неупорядоченной пары городов
+     */
+    private static long roadKey(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+    /**
+     * Освобождение списков городов и дорог; граф снова работает как загруженный из снимка
+     */
+    private void dropLists() {
+        pendingWeights.clear();
+        cities.clear();
+        cityIndex.clear();
+        roadFrom = new int[16];
+        roadTo = new int[16];
+        roadLength = new int[16];
+        roadTime = new int[16];
+        roadCost = new int[16];
+        roadCount = 0;
+        materialized = false;
+    }
+
+    /**
+     * Сброс компактного представления и результатов предварительной обработки.
+     * Новая версия графа делает недействительными маршруты в кэше
+     */
+    private void invalidate() {
+        compact = null;
+        landmarks = null;
+        hierarchies = null;
+        deltaStepping = null;
+        // Версия увеличивается последней, как в apply: поиск, прочитавший новую версию,
+        // не увидит старого снимка и не положит его маршрут в кэш под новой версией
+        version++;
+    }
+
+    /**
+     * Компактное представление графа для поиска.
+     * Строится при первом обращении после изменения графа
+     */
+    public CompactGraph freeze() {
+        CompactGraph current = compact;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (compressed != null) {
+                throw new IllegalStateException("Граф хранится в сжатом виде: доступны только поиски Дейкстры"
+                    + " и компромиссные маршруты");
+            }
+            if (compact == null) {
+                CompactGraph built = CompactGraph.build(cities, roadCount, roadFrom, roadTo,
+                    roadLength, roadTime, roadCost);
+                compact = offHeap ? MappedCompactGraph.offHeap(built) : built;
+            }
+            return compact;
+        }
+    }
+
+    /**
+     * Перенос компактного представления в прямые буферы вне кучи (MappedCompactGraph).
+     * На куче остаются только объекты графа, а не массивы смежности и весов:
+     * размер кучи и паузы сборки мусора не зависят от числа дорог.
+     * Списки городов и дорог освобождаются и восстанавливаются из снимка при изменении,
+     * новые снимки после apply и addRoad тоже строятся вне кучи.
+     * Вызывается до prepare*: рассчитанные ориентиры, иерархии и оверлей сбрасываются
+     */
+    public synchronized void moveOffHeap() {
+        offHeap = true;
+        CompactGraph current = freeze();
+        if (current instanceof MappedCompactGraph) {
+            return;
+        }
+        CompactGraph moved = MappedCompactGraph.offHeap(current);
+        invalidate();
+        overlay = null;
+        previousOverlay = null;
+        compact = moved;
+        dropLists();
+    }
+
+    /**
+     * Перевод графа в сжатый вид (CompressedGraph): 4-6 байт на ребро вместо 24, списки дорог
+     * освобождаются. Сжатый граф неизменяем и отвечает на поиски Дейкстры (SearchMode.DIJKSTRA)
+     * до одного и нескольких городов, по всем критериям сразу и на поиск компромиссного маршрута;
+     * остальные режимы, Парето-фронт, изменения и снимки требуют CSR-представления
+     * и завершаются IllegalStateException
+     */
+    public synchronized void compress() {
+        if (compressed == null) {
+            useCompressed(CompressedGraph.compress(freeze()));
+        }
+    }
+
+    /**
+     * Хранится ли граф в сжатом виде
+     */
+    public boolean isCompressed() {
+        return compressed != null;
+    }
+
+    /**
+     * Число городов графа (в компактном или сжатом виде)
+     */
+    public int cityCount() {
+        CompressedGraph packed = compressed;
+        return packed != null ? packed.cityCount() : freeze().cityCount();
+    }
+
+    /**
+     * Число направленных рёбер графа (каждая дорога - два ребра)
+     */
+    public int edgeCount() {
+        CompressedGraph packed = compressed;
+        return packed != null ? packed.edgeCount() : freeze().edgeCount();
+    }
+
+    private void useCompressed(CompressedGraph built) {
+        // Сжатый граф публикуется до новой версии: поиск, прочитавший её, уже не обратится к CSR
+        compressed = built;
+        invalidate();
+        overlay = null;
+        previousOverlay = null;
+        dropLists();
+    }
+
+    /**
+     * Версия графа, увеличивается при каждом добавлении города или дороги
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Подключение кэша маршрутов (null - отключить)
+     */
+    public void setRouteCache(RouteCache routeCache) {
+        this.routeCache = routeCache;
+    }
+
+    /**
+     * Подключение инструментации поисков (null - отключить).
+     * Без неё поиски не считают работу и не измеряют время
+     */
+    public void setSearchMetrics(SearchMetrics searchMetrics) {
+        this.searchMetrics = searchMetrics;
+    }
+
+    /**
+     * Выбор очереди с приоритетом для последующих поисков
+     */
+    public void setQueueType(QueueType queueType) {
+        this.queueType = queueType;
+    }
+
+    /**
+     * Предварительный расчёт ориентиров для режима ALT
+     */
+    public void prepareLandmarks(int count, LandmarkSelection selection) {
+        landmarks = Landmarks.compute(freeze(), count, selection);
+    }
+
+    /**
+     * Сохранение рассчитанных ориентиров в файл
+     */
+    public void saveLandmarks(Path path) throws IOException {
+        if (landmarks == null) {
+            throw new IllegalStateException("Ориентиры не рассчитаны");
+        }
+        landmarks.save(path);
+    }
+
+    /**
+     * Загрузка ориентиров, ранее сохранённых для этого же графа
+     */
+    public void loadLandmarks(Path path) throws IOException {
+        landmarks = Landmarks.load(path, freeze());
     }
-    
+
+    /**
+     * Построение иерархий сжатия для всех критериев.
+     * Каждая иерархия строится параллельно на всех ядрах
+     */
+    public void prepareContractionHierarchies() {
+        CompactGraph graph = freeze();
+        ContractionHierarchy[] built = new ContractionHierarchy[Criteria.values().length];
+        for (Criteria criteria : Criteria.values()) {
+            built[criteria.ordinal()] = ContractionHierarchy.build(graph, criteria);
+        }
+        hierarchies = built;
+    }
+
+    /**
+     * Разбиение графа на ячейки и настройка оверлея для всех критериев (режим PARTITION_OVERLAY)
+     */
+    public synchronized void preparePartitionOverlay() {
+        overlay = PartitionOverlay.build(freeze());
+    }
+
+    /**
+     * Настройка оверлея по текущим весам одного критерия без нового разбиения.
+     * Структура дорог должна совпадать с той, для которой вызван preparePartitionOverlay
+     */
+    public synchronized void customizePartitionOverlay(Criteria criteria) {
+        PartitionOverlay current = overlay;
+        if (current == null) {
+            throw new IllegalStateException("Оверлей не построен: необходимо вызвать preparePartitionOverlay");
+        }
+        overlay = current.customize(freeze(), criteria);
+    }
+
+    /**
+     * Пул ForkJoin для режима DELTA_STEPPING (по умолчанию общий пул)
+     */
+    public void setDeltaSteppingPool(ForkJoinPool pool) {
+        deltaSteppingPool = pool;
+        deltaStepping = null;
+    }
+
+    /**
+     * Ориентиры, рассчитанные для текущего компактного представления, или null
+     */
+    Landmarks getLandmarks() {
+        Landmarks current = landmarks;
+        return current != null && current.graph() == compact ? current : null;
+    }
+
+    /**
+     * Иерархии сжатия, построенные для текущего компактного представления, или null
+     */
+    ContractionHierarchy[] getHierarchies() {
+        ContractionHierarchy[] current = hierarchies;
+        return current != null && current[0].graph() == compact ? current : null;
+    }
+
     /**
      * Поиск оптимального маршрута по заданному критерию
      * используя алгоритм Дейкстры
      */
     public Route findShortestRoute(String from, String to, Criteria criteria) {
-        if (!cities.containsKey(from) || !cities.containsKey(to)) {
+        return findShortestRoute(from, to, criteria, SearchMode.DIJKSTRA);
+    }
+
+    /**
+     * Поиск оптимального маршрута по заданному критерию в выбранном режиме поиска
+     */
+    public Route findShortestRoute(String from, String to, Criteria criteria, SearchMode mode) {
+        // Версия читается до снимка графа, чтобы маршрут не попал в кэш с более новой версией
+        long currentVersion = version;
+        RouteCache cache = routeCache;
+        if (cache != null) {
+            Route cached = cache.get(from, to, criteria, currentVersion);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        CompressedGraph packed = compressed;
+        if (packed != null) {
+            Route route = compressedRoutes(packed, from, List.of(to), criteria, mode).get(0);
+            if (cache != null) {
+                cache.put(from, to, criteria, route, currentVersion);
+            }
+            return route;
+        }
+
+        CompactGraph graph = freeze();
+        int source = graph.indexOf(from);
+        int target = graph.indexOf(to);
+        if (source < 0 || target < 0) {
             throw new IllegalArgumentException("Город не найден: " + from + " или " + to);
         }
-        
-        // Инициализация структур данных для алгоритма Дейкстры
-        Map<String, Integer> distances = new HashMap<>();
-        Map<String, String> predecessors = new HashMap<>();
-        PriorityQueue<CityNode> queue = new PriorityQueue<>();
-        
-        // Устанавливаем начальные расстояния
-        for (String cityName : cities.keySet()) {
-            distances.put(cityName, Integer.MAX_VALUE);
-        }
-        distances.put(from, 0);
-        
-        queue.offer(new CityNode(from, 0));
-        
-        // Основной цикл алгоритма Дейкстры
-        while (!queue.isEmpty()) {
-            CityNode current = queue.poll();
-            
-            // Если нашли более короткий путь до этой вершины - пропускаем
-            if (current.distance > distances.get(current.cityName)) {
-                continue;
+
+        SearchMetrics metrics = searchMetrics;
+        SearchStats stats = metrics != null ? metrics.begin() : null;
+        int[] path = switch (mode) {
+            case DIJKSTRA -> DijkstraSearch.shortestPath(graph, source, target, criteria, queueType, stats);
+            case BIDIRECTIONAL ->
+                BidirectionalSearch.shortestPath(graph, source, target, criteria, queueType, stats);
+            case ALT ->
+                AltSearch.shortestPath(graph, requireLandmarks(graph), source, target, criteria, queueType, stats);
+            case CONTRACTION_HIERARCHY -> requireHierarchy(graph, criteria).shortestPath(source, target, stats);
+            case DELTA_STEPPING -> deltaStepping(graph).shortestPath(source, target, criteria, stats);
+            case PARTITION_OVERLAY -> requireOverlay(graph, criteria).shortestPath(source, target, criteria, stats);
+        };
+        if (stats != null) {
+            metrics.finish(stats, criteria, mode, 1);
+        }
+
+        // Если путь не найден, маршрут пустой; названия городов разрешаются только здесь
+        Route route = path == null ? new Route(new ArrayList<>()) : graph.createRoute(path);
+        if (cache != null) {
+            cache.put(from, to, criteria, route, currentVersion);
+        }
+        return route;
+    }
+
+    /**
+     * Поиск маршрутов из одного города в несколько городов по заданному критерию.
+     * Выполняется один поиск, маршруты извлекаются из общего дерева кратчайших путей.
+     * Результаты возвращаются в порядке городов назначения
+     */
+    public List<Route> findShortestRoutes(String from, List<String> toCities, Criteria criteria) {
+        return findShortestRoutes(from, toCities, criteria, SearchMode.DIJKSTRA);
+    }
+
+    /**
+     * То же в выбранном режиме: DIJKSTRA или DELTA_STEPPING (параллельный поиск
+     * для дальних запросов и запросов ко многим городам)
+     */
+    public List<Route> findShortestRoutes(String from, List<String> toCities, Criteria criteria, SearchMode mode) {
+        if (mode != SearchMode.DIJKSTRA && mode != SearchMode.DELTA_STEPPING) {
+            throw new IllegalArgumentException("Поиск до нескольких городов не поддерживает режим " + mode);
+        }
+        long currentVersion = version;
+        RouteCache cache = routeCache;
+        Route[] routes = new Route[toCities.size()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = cache != null ? cache.get(from, toCities.get(i), criteria, currentVersion) : null;
+            if (routes[i] == null) {
+                missing.add(i);
             }
-            
-            // Если достигли целевого города
-            if (current.cityName.equals(to)) {
-                break;
-            }
-            
-            // Обход соседей
-            for (Road road : adjacencyList.get(current.cityName)) {
-                String neighbor = road.getOtherCity(current.cityName);
-                if (neighbor == null) continue;
-                
-                int newDistance = current.distance + getRoadValue(road, criteria);
-                
-                if (newDistance < distances.get(neighbor)) {
-                    distances.put(neighbor, newDistance);
-                    predecessors.put(neighbor, current.cityName);
-                    queue.offer(new CityNode(neighbor, newDistance));
+        }
+        if (missing.isEmpty()) {
+            return Arrays.asList(routes);
+        }
+
+        // Поиск только до городов, которых нет в кэше
+        CompressedGraph packed = compressed;
+        if (packed != null) {
+            List<String> missingCities = new ArrayList<>(missing.size());
+            for (int i : missing) {
+                missingCities.add(toCities.get(i));
+            }
+            List<Route> found = compressedRoutes(packed, from, missingCities, criteria, mode);
+            for (int i = 0; i < found.size(); i++) {
+                routes[missing.get(i)] = found.get(i);
+                if (cache != null) {
+                    cache.put(from, missingCities.get(i), criteria, found.get(i), currentVersion);
                 }
             }
+            return Arrays.asList(routes);
         }
-        
-        // Восстановление пути
-        List<String> path = reconstructPath(predecessors, from, to);
-        
-        // Если путь не найден
-        if (path.isEmpty() || !path.get(path.size() - 1).equals(to)) {
-            return new Route(new ArrayList<>());
+
+        CompactGraph graph = freeze();
+        int source = graph.indexOf(from);
+        int[] targets = new int[missing.size()];
+        for (int i = 0; i < targets.length; i++) {
+            String toCity = toCities.get(missing.get(i));
+            targets[i] = graph.indexOf(toCity);
+            if (source < 0 || targets[i] < 0) {
+                throw new IllegalArgumentException("Город не найден: " + from + " или " + toCity);
+            }
         }
-        
-        // Создание маршрута с вычислением всех параметров
-        return createRoute(path);
+
+        SearchMetrics metrics = searchMetrics;
+        SearchStats stats = metrics != null ? metrics.begin() : null;
+        int[][] paths = mode == SearchMode.DELTA_STEPPING
+            ? deltaStepping(graph).shortestPaths(source, targets, criteria, stats)
+            : DijkstraSearch.shortestPaths(graph, source, targets, criteria, queueType, stats);
+        if (stats != null) {
+            metrics.finish(stats, criteria, mode, targets.length);
+        }
+        for (int i = 0; i < paths.length; i++) {
+            Route route = paths[i] == null ? new Route(new ArrayList<>()) : graph.createRoute(paths[i]);
+            routes[missing.get(i)] = route;
+            if (cache != null) {
+                cache.put(from, toCities.get(missing.get(i)), criteria, route, currentVersion);
+            }
+        }
+        return Arrays.asList(routes);
     }
-    
+
     /**
-     * Получение значения дороги по критерию
+     * Маршруты по всем критериям за один совмещённый поиск (FusedSearch).
+     * Возвращаются в порядке констант Criteria
      */
-    private int getRoadValue(Road road, Criteria criteria) {
-        return switch (criteria) {
-            case LENGTH -> road.getLength();
-            case TIME -> road.getTime();
-            case COST -> road.getCost();
-        };
+    public List<Route> findRoutesByAllCriteria(String from, String to) {
+        List<List<Route>> routes = findRoutesByAllCriteria(from, List.of(to));
+        List<Route> result = new ArrayList<>(routes.size());
+        for (List<Route> byTarget : routes) {
+            result.add(byTarget.get(0));
+        }
+        return result;
     }
-    
+
     /**
-     * Восстановление пути по предшественникам
+     * Маршруты из одного города в несколько по всем критериям за один совмещённый поиск.
+     * Результат - списки по критериям (в порядке констант Criteria), внутри - в порядке городов назначения.
+     * Ищутся только города, для которых в кэше нет маршрута хотя бы по одному критерию
      */
-    private List<String> reconstructPath(Map<String, String> predecessors, String from, String to) {
-        LinkedList<String> path = new LinkedList<>();
-        String current = to;
-        
-        // Восстанавливаем путь от конца к началу
-        while (current != null) {
-            path.addFirst(current);
-            String prev = predecessors.get(current);
-            
-            // Проверка на наличие цикла
-            if (prev != null && path.contains(prev)) {
-                break;
+    public List<List<Route>> findRoutesByAllCriteria(String from, List<String> toCities) {
+        Criteria[] criteria = Criteria.values();
+        long currentVersion = version;
+        RouteCache cache = routeCache;
+        Route[][] routes = new Route[criteria.length][toCities.size()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < toCities.size(); i++) {
+            boolean found = true;
+            for (Criteria c : criteria) {
+                Route cached = cache != null ? cache.get(from, toCities.get(i), c, currentVersion) : null;
+                routes[c.ordinal()][i] = cached;
+                found &= cached != null;
+            }
+            if (!found) {
+                missing.add(i);
+            }
+        }
+
+        CompressedGraph packed = compressed;
+        if (!missing.isEmpty() && packed != null) {
+            // Совмещённого поиска по сжатому графу нет: три поиска до всех недостающих городов
+            List<String> missingCities = new ArrayList<>(missing.size());
+            for (int i : missing) {
+                missingCities.add(toCities.get(i));
+            }
+            for (Criteria c : criteria) {
+                List<Route> found = compressedRoutes(packed, from, missingCities, c, SearchMode.DIJKSTRA);
+                for (int i = 0; i < found.size(); i++) {
+                    routes[c.ordinal()][missing.get(i)] = found.get(i);
+                    if (cache != null) {
+                        cache.put(from, missingCities.get(i), c, found.get(i), currentVersion);
+                    }
+                }
+            }
+        } else if (!missing.isEmpty()) {
+            CompactGraph graph = freeze();
+            int source = graph.indexOf(from);
+            int[] targets = new int[missing.size()];
+            for (int i = 0; i < targets.length; i++) {
+                String toCity = toCities.get(missing.get(i));
+                targets[i] = graph.indexOf(toCity);
+                if (source < 0 || targets[i] < 0) {
+                    throw new IllegalArgumentException("Город не найден: " + from + " или " + toCity);
+                }
+            }
+
+            SearchMetrics metrics = searchMetrics;
+            SearchStats[] stats = null;
+            if (metrics != null) {
+                stats = new SearchStats[criteria.length];
+                for (Criteria c : criteria) {
+                    stats[c.ordinal()] = metrics.begin();
+                }
+            }
+            int[][][] paths = FusedSearch.shortestPaths(graph, source, targets, queueType, stats);
+            if (stats != null) {
+                for (Criteria c : criteria) {
+                    metrics.finish(stats[c.ordinal()], c, SearchMode.DIJKSTRA, targets.length);
+                }
+            }
+
+            for (Criteria c : criteria) {
+                for (int i = 0; i < targets.length; i++) {
+                    int[] path = paths[c.ordinal()][i];
+                    Route route = path == null ? new Route(new ArrayList<>()) : graph.createRoute(path);
+                    routes[c.ordinal()][missing.get(i)] = route;
+                    if (cache != null) {
+                        cache.put(from, toCities.get(missing.get(i)), c, route, currentVersion);
+                    }
+                }
             }
-            
-            current = prev;
         }
-        
-        // Проверяем, что путь начинается с исходного города
-        if (!path.isEmpty() && !path.getFirst().equals(from)) {
-            return new ArrayList<>();
+
+        List<List<Route>> result = new ArrayList<>(criteria.length);
+        for (Route[] byTarget : routes) {
+            result.add(Arrays.asList(byTarget));
         }
-        
-        return path;
+        return result;
     }
-    
+
     /**
-     * Создание объекта Route из пути
+     * Парето-фронт маршрутов по длине, времени и стоимости (ParetoSearch).
+     * Пустой фронт, если маршрута нет; isTruncated - поиск остановлен на пределе меток
      */
-    private Route createRoute(List<String> cityNames) {
-        List<RoadSegment> segments = new ArrayList<>();
-        
-        for (int i = 0; i < cityNames.size() - 1; i++) {
-            String from = cityNames.get(i);
-            String to = cityNames.get(i + 1);
-            
-            Road road = findRoadBetween(from, to);
-            if (road != null) {
-                segments.add(new RoadSegment(from, to, 
-                    road.getLength(), road.getTime(), road.getCost()));
-            }
+    public ParetoFront findParetoRoutes(String from, String to) {
+        CompactGraph graph = freeze();
+        int source = graph.indexOf(from);
+        int target = graph.indexOf(to);
+        if (source < 0 || target < 0) {
+            throw new IllegalArgumentException("Город не найден: " + from + " или " + to);
+        }
+        ParetoSearch.Result front = ParetoSearch.paretoFront(graph, source, target, queueType);
+        List<Route> routes = new ArrayList<>();
+        for (int[] path : front.paths()) {
+            routes.add(graph.createRoute(path));
         }
-        
-        return new Route(segments);
+        return new ParetoFront(routes, front.truncated());
     }
-    
+
     /**
-     * Поиск дороги между двумя городами
+     * Компромиссный маршрут: лучший по приоритетам (лексикографически) среди всех маршрутов.
+     * Это один поиск Дейкстры с ключом-вектором (LexicographicSearch), его результат -
+     * лексикографический минимум Парето-фронта. Маршрут кэшируется под списком приоритетов,
+     * поиск учитывается в метриках под меткой COMPROMISE
      */
-    private Road findRoadBetween(String city1, String city2) {
-        for (Road road : adjacencyList.get(city1)) {
-            if ((road.getFromCity().equals(city1) && road.getToCity().equals(city2)) ||
-                (road.getFromCity().equals(city2) && road.getToCity().equals(city1))) {
-                return road;
+    public Route findCompromiseRoute(String from, String to, List<Criteria> priorities) {
+        long currentVersion = version;
+        RouteCache cache = routeCache;
+        if (cache != null) {
+            Route cached = cache.get(from, to, priorities, currentVersion);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        SearchMetrics metrics = searchMetrics;
+        CompressedGraph packed = compressed;
+        Route route;
+        if (packed != null) {
+            SearchStats stats = metrics != null && !priorities.isEmpty() ? metrics.begin() : null;
+            route = packed.findCompromiseRoute(from, to, priorities, stats);
+            if (stats != null) {
+                metrics.finishCompromise(stats);
+            }
+        } else {
+            CompactGraph graph = freeze();
+            int source = graph.indexOf(from);
+            int target = graph.indexOf(to);
+            if (source < 0 || target < 0) {
+                throw new IllegalArgumentException("Город не найден: " + from + " или " + to);
+            }
+
+            SearchStats stats = metrics != null && !priorities.isEmpty() ? metrics.begin() : null;
+            int[] path = LexicographicSearch.shortestPath(graph, source, target, priorities, stats);
+            if (stats != null) {
+                metrics.finishCompromise(stats);
             }
+            route = path == null ? new Route(new ArrayList<>()) : graph.createRoute(path);
         }
-        return null;
+        if (cache != null) {
+            cache.put(from, to, priorities, route, currentVersion);
+        }
+        return route;
     }
-    
+
     /**
-     * Вспомогательный класс для алгоритма Дейкстры
+     * Поиск Дейкстры по сжатому графу до нескольких городов с учётом в метриках
      */
-    private static class CityNode implements Comparable<CityNode> {
-        String cityName;
-        int distance;
-        
-        CityNode(String cityName, int distance) {
-            this.cityName = cityName;
-            this.distance = distance;
+    private List<Route> compressedRoutes(CompressedGraph packed, String from, List<String> toCities,
+                                         Criteria criteria, SearchMode mode) {
+        if (mode != SearchMode.DIJKSTRA) {
+            throw new IllegalStateException("Сжатый граф поддерживает только режим DIJKSTRA, запрошен " + mode);
+        }
+        SearchMetrics metrics = searchMetrics;
+        SearchStats stats = metrics != null ? metrics.begin() : null;
+        List<Route> routes = packed.findShortestRoutes(from, toCities, criteria, queueType, stats);
+        if (stats != null) {
+            metrics.finish(stats, criteria, mode, toCities.size());
+        }
+        return routes;
+    }
+
+    private Landmarks requireLandmarks(CompactGraph graph) {
+        Landmarks current = landmarks;
+        if (current == null || current.graph() != graph) {
+            throw new IllegalStateException("Для режима ALT необходимо вызвать prepareLandmarks или loadLandmarks");
+        }
+        return current;
+    }
+
+    /**
+     * Поиск delta-stepping для текущего компактного представления;
+     * создаётся при первом запросе (подбор delta - один проход по рёбрам)
+     */
+    private DeltaSteppingSearch deltaStepping(CompactGraph graph) {
+        DeltaSteppingSearch current = deltaStepping;
+        if (current == null || current.graph() != graph) {
+            current = new DeltaSteppingSearch(graph, deltaSteppingPool);
+            deltaStepping = current;
+        }
+        return current;
+    }
+
+    private ContractionHierarchy requireHierarchy(CompactGraph graph, Criteria criteria) {
+        ContractionHierarchy[] current = hierarchies;
+        if (current == null || current[criteria.ordinal()].graph() != graph) {
+            throw new IllegalStateException("Для режима CONTRACTION_HIERARCHY необходимо вызвать prepareContractionHierarchies");
+        }
+        return current[criteria.ordinal()];
+    }
+
+    private PartitionOverlay requireOverlay(CompactGraph graph, Criteria criteria) {
+        PartitionOverlay current = overlay;
+        if (current != null && current.isCustomized(graph, criteria)) {
+            return current;
         }
-        
-        @Override
-        public int compareTo(CityNode other) {
-            return Integer.compare(this.distance, other.distance);
+        PartitionOverlay previous = previousOverlay;
+        if (previous == null || !previous.isCustomized(graph, criteria)) {
+            throw new IllegalStateException("Для режима PARTITION_OVERLAY необходимо вызвать preparePartitionOverlay"
+                + " или customizePartitionOverlay после изменения графа");
         }
+        return previous;
     }
 }
\ No newline at end of file
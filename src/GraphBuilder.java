@@ -0,0 +1,368 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Параллельное пакетное построение CSR-представления графа из дорог,
+ * разобранных по фрагментам (см. FastParser с параллельным разбором).
+ *
+ * Степени городов считаются атомарным увеличением счётчиков, смещения - параллельной
+ * префиксной суммой, рёбра раскладываются по городам через атомарные курсоры.
+ * Ключи рёбер внутри города затем сортируются, поэтому порядок рёбер, а значит
+ * и найденные маршруты, совпадают с последовательным построением CompactGraph.build.
+ * Необязательная дедупликация оставляет из параллельных дорог только лучшие по критериям.
+ * Те же дороги можно сразу сжать в CompressedGraph (buildCompressed), не строя CSR-представления.
+ */
+public class GraphBuilder {
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    // Минимальный размер блока и число блоков на поток при разбиении работы
+    private static final int MIN_BLOCK = 1 << 14;
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private GraphBuilder() {
+    }
+
+    /**
+     * Построение из дорог всех фрагментов в порядке списка
+     */
+    static CompactGraph build(List<City> cityList, List<Roads> chunks, boolean deduplicate) {
+        City[] cities = cityList.toArray(new City[0]);
+        int n = cities.length;
+        Roads roads = deduplicate ? deduplicate(n, concat(chunks)) : concat(chunks);
+        int m = Math.multiplyExact(roads.count, 2);
+        int[] from = roads.from;
+        int[] to = roads.to;
+        int[] offsets = new int[n + 1];
+        int[] keys = edgeKeys(n, roads, offsets);
+
+        int[] positions = new int[m];
+        forEachBlock(m, (block, start, end) -> {
+            for (int edge = start; edge < end; edge++) {
+                positions[keys[edge]] = edge;
+            }
+        });
+
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        int[] twins = new int[m];
+        int[] lengths = new int[m];
+        int[] times = new int[m];
+        int[] costs = new int[m];
+        forEachBlock(m, (block, start, end) -> {
+            for (int edge = start; edge < end; edge++) {
+                int key = keys[edge];
+                int r = key >>> 1;
+                boolean forward = (key & 1) == 0;
+                sources[edge] = forward ? from[r] : to[r];
+                targets[edge] = forward ? to[r] : from[r];
+                twins[edge] = positions[key ^ 1];
+                lengths[edge] = roads.length[r];
+                times[edge] = roads.time[r];
+                costs[edge] = roads.cost[r];
+            }
+        });
+
+        // Порядок совпадает с порядком констант Criteria
+        int[][] weights = {lengths, times, costs};
+        return new ArrayCompactGraph(cities, offsets, sources, targets, twins, weights);
+    }
+
+    /**
+     * Сжатый граф из дорог всех фрагментов в порядке списка. Вместо CSR-представления
+     * на время сжатия строятся только смещения городов и ключи рёбер, поэтому результат
+     * совпадает с CompressedGraph.compress(build(...)) при меньшем пике памяти
+     */
+    static CompressedGraph buildCompressed(List<City> cityList, List<Roads> chunks, boolean deduplicate) {
+        City[] cities = cityList.toArray(new City[0]);
+        int n = cities.length;
+        Roads roads = deduplicate ? deduplicate(n, concat(chunks)) : concat(chunks);
+        int[] offsets = new int[n + 1];
+        int[] keys = edgeKeys(n, roads, offsets);
+        return CompressedGraph.compress(new RoadAdjacency(cities, roads, offsets, keys));
+    }
+
+    /**
+     * Раскладка рёбер по городам: заполняет offsets (префиксные суммы степеней) и возвращает
+     * ключи рёбер по городам. Ключ ребра дороги r: 2r - из from в to, 2r + 1 - обратное.
+     * После сортировки ключи города идут в порядке дорог, как при последовательной раскладке
+     */
+    private static int[] edgeKeys(int n, Roads roads, int[] offsets) {
+        int roadCount = roads.count;
+        int[] from = roads.from;
+        int[] to = roads.to;
+
+        // Подсчёт степеней вершин и префиксные суммы
+        forEachBlock(roadCount, (block, start, end) -> {
+            for (int r = start; r < end; r++) {
+                INTS.getAndAdd(offsets, from[r] + 1, 1);
+                INTS.getAndAdd(offsets, to[r] + 1, 1);
+            }
+        });
+        Arrays.parallelPrefix(offsets, Integer::sum);
+
+        int[] keys = new int[Math.multiplyExact(roadCount, 2)];
+        int[] cursor = Arrays.copyOf(offsets, n);
+        forEachBlock(roadCount, (block, start, end) -> {
+            for (int r = start; r < end; r++) {
+                keys[(int) INTS.getAndAdd(cursor, from[r], 1)] = 2 * r;
+                keys[(int) INTS.getAndAdd(cursor, to[r], 1)] = 2 * r + 1;
+            }
+        });
+        IntStream.range(0, n).parallel().forEach(node -> {
+            if (offsets[node + 1] - offsets[node] > 1) {
+                Arrays.sort(keys, offsets[node], offsets[node + 1]);
+            }
+        });
+        return keys;
+    }
+
+    /**
+     * Объединение фрагментов в один буфер; фрагменты копируются параллельно
+     */
+    private static Roads concat(List<Roads> chunks) {
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+        int[] starts = new int[chunks.size() + 1];
+        for (int i = 0; i < chunks.size(); i++) {
+            starts[i + 1] = Math.addExact(starts[i], chunks.get(i).count);
+        }
+        Roads all = new Roads(starts[chunks.size()]);
+        all.count = starts[chunks.size()];
+        IntStream.range(0, chunks.size()).parallel().forEach(i -> {
+            Roads chunk = chunks.get(i);
+            System.arraycopy(chunk.from, 0, all.from, starts[i], chunk.count);
+            System.arraycopy(chunk.to, 0, all.to, starts[i], chunk.count);
+            System.arraycopy(chunk.length, 0, all.length, starts[i], chunk.count);
+            System.arraycopy(chunk.time, 0, all.time, starts[i], chunk.count);
+            System.arraycopy(chunk.cost, 0, all.cost, starts[i], chunk.count);
+        });
+        return all;
+    }
+
+    /**
+     * Удаление параллельных дорог: из дорог между одной парой городов остаются
+     * лучшие по каждому критерию (при равенстве - первая во входных данных), то есть не больше трёх.
+     * Кратчайшие маршруты по каждому критерию не меняются, а компромиссный маршрут
+     * может не увидеть дорогу, которая не лучшая ни по одному критерию.
+     * Дороги группируются по меньшему концу сортировкой подсчётом, внутри группы - по большему
+     */
+    private static Roads deduplicate(int n, Roads roads) {
+        int count = roads.count;
+        int[] starts = new int[n + 1];
+        forEachBlock(count, (block, start, end) -> {
+            for (int r = start; r < end; r++) {
+                INTS.getAndAdd(starts, Math.min(roads.from[r], roads.to[r]) + 1, 1);
+            }
+        });
+        Arrays.parallelPrefix(starts, Integer::sum);
+        int[] grouped = new int[count];
+        int[] cursor = Arrays.copyOf(starts, n);
+        forEachBlock(count, (block, start, end) -> {
+            for (int r = start; r < end; r++) {
+                grouped[(int) INTS.getAndAdd(cursor, Math.min(roads.from[r], roads.to[r]), 1)] = r;
+            }
+        });
+
+        // Каждая дорога входит ровно в одну группу, поэтому группы отмечают keep независимо
+        boolean[] keep = new boolean[count];
+        IntStream.range(0, n).parallel().forEach(node -> markBest(roads, grouped, starts[node], starts[node + 1], keep));
+
+        // Оставшиеся дороги копируются с сохранением порядка: блок знает, сколько дорог оставлено до него
+        int blocks = blockCount(count);
+        int[] keptBefore = new int[blocks + 1];
+        forEachBlock(count, blocks, (block, start, end) -> {
+            int kept = 0;
+            for (int r = start; r < end; r++) {
+                if (keep[r]) {
+                    kept++;
+                }
+            }
+            keptBefore[block + 1] = kept;
+        });
+        for (int block = 0; block < blocks; block++) {
+            keptBefore[block + 1] += keptBefore[block];
+        }
+        Roads result = new Roads(keptBefore[blocks]);
+        result.count = keptBefore[blocks];
+        forEachBlock(count, blocks, (block, start, end) -> {
+            int at = keptBefore[block];
+            for (int r = start; r < end; r++) {
+                if (keep[r]) {
+                    result.set(at++, roads, r);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Отметка лучших дорог группы grouped[start, end) с общим меньшим концом
+     */
+    private static void markBest(Roads roads, int[] grouped, int start, int end, boolean[] keep) {
+        if (end - start == 1) {
+            keep[grouped[start]] = true;
+            return;
+        }
+        // Больший конец в старших битах, номер дороги - в младших
+        long[] order = new long[end - start];
+        for (int i = 0; i < order.length; i++) {
+            int r = grouped[start + i];
+            order[i] = (long) Math.max(roads.from[r], roads.to[r]) << 32 | r;
+        }
+        Arrays.sort(order);
+        int runStart = 0;
+        while (runStart < order.length) {
+            int runEnd = runStart + 1;
+            while (runEnd < order.length && order[runEnd] >>> 32 == order[runStart] >>> 32) {
+                runEnd++;
+            }
+            for (Criteria criteria : Criteria.values()) {
+                int best = (int) order[runStart];
+                for (int i = runStart + 1; i < runEnd; i++) {
+                    int r = (int) order[i];
+                    if (roads.weight(r, criteria) < roads.weight(best, criteria)) {
+                        best = r;
+                    }
+                }
+                keep[best] = true;
+            }
+            runStart = runEnd;
+        }
+    }
+
+    private static int blockCount(int count) {
+        int threads = ForkJoinPool.getCommonPoolParallelism() * BLOCKS_PER_THREAD;
+        return Math.max(1, Math.min(count / MIN_BLOCK, threads));
+    }
+
+    private static void forEachBlock(int count, BlockAction action) {
+        forEachBlock(count, blockCount(count), action);
+    }
+
+    /**
+     * Параллельная обработка диапазона [0, count), разбитого на blocks равных блоков
+     */
+    private static void forEachBlock(int count, int blocks, BlockAction action) {
+        IntStream.range(0, blocks).parallel().forEach(block -> action.run(block,
+            (int) ((long) count * block / blocks), (int) ((long) count * (block + 1) / blocks)));
+    }
+
+    private interface BlockAction {
+        void run(int block, int start, int end);
+    }
+
+    /**
+     * Списки смежности для сжатия поверх буфера дорог и ключей рёбер (см. edgeKeys)
+     */
+    private record RoadAdjacency(City[] cities, Roads roads, int[] offsets, int[] keys)
+            implements CompressedGraph.Adjacency {
+        @Override
+        public int cityCount() {
+            return cities.length;
+        }
+
+        @Override
+        public int edgeCount() {
+            return keys.length;
+        }
+
+        @Override
+        public int edgeStart(int node) {
+            return offsets[node];
+        }
+
+        @Override
+        public int edgeEnd(int node) {
+            return offsets[node + 1];
+        }
+
+        @Override
+        public int target(int edge) {
+            int key = keys[edge];
+            return (key & 1) == 0 ? roads.to[key >>> 1] : roads.from[key >>> 1];
+        }
+
+        @Override
+        public int weight(int edge, Criteria criteria) {
+            return roads.weight(keys[edge] >>> 1, criteria);
+        }
+
+        @Override
+        public City city(int node) {
+            return cities[node];
+        }
+    }
+
+    /**
+     * Дороги в примитивных массивах: плотные индексы концов и три веса
+     */
+    static final class Roads {
+        private int[] from;
+        private int[] to;
+        private int[] length;
+        private int[] time;
+        private int[] cost;
+        private int count;
+
+        Roads(int capacity) {
+            int size = Math.max(capacity, 16);
+            from = new int[size];
+            to = new int[size];
+            length = new int[size];
+            time = new int[size];
+            cost = new int[size];
+        }
+
+        /**
+         * Буфер поверх готовых массивов (массивы не копируются)
+         */
+        Roads(int[] from, int[] to, int[] length, int[] time, int[] cost, int count) {
+            this.from = from;
+            this.to = to;
+            this.length = length;
+            this.time = time;
+            this.cost = cost;
+            this.count = count;
+        }
+
+        void add(int fromNode, int toNode, int roadLength, int roadTime, int roadCost) {
+            if (count == from.length) {
+                int capacity = count * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                length = Arrays.copyOf(length, capacity);
+                time = Arrays.copyOf(time, capacity);
+                cost = Arrays.copyOf(cost, capacity);
+            }
+            from[count] = fromNode;
+            to[count] = toNode;
+            length[count] = roadLength;
+            time[count] = roadTime;
+            cost[count] = roadCost;
+            count++;
+        }
+
+        int count() {
+            return count;
+        }
+
+        private void set(int index, Roads source, int r) {
+            from[index] = source.from[r];
+            to[index] = source.to[r];
+            length[index] = source.length[r];
+            time[index] = source.time[r];
+            cost[index] = source.cost[r];
+        }
+
+        private int weight(int r, Criteria criteria) {
+            return switch (criteria) {
+                case LENGTH -> length[r];
+                case TIME -> time[r];
+                case COST -> cost[r];
+            };
+        }
+    }
+}
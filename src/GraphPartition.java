@@ -0,0 +1,276 @@
+import java.util.Arrays;
+
+/**
+ * Многоуровневое разбиение графа на ячейки (для PartitionOverlay). Не зависит от
+ * изменяемых весов (времени и стоимости): используется только структура графа и длины дорог.
+ * Строится рекурсивной бисекцией: подмножество городов упорядочивается по расстоянию
+ * от псевдопериферийного города и делится пополам по этому порядку,
+ * поэтому ячейки связны и компактны. Ячейка уровня l - первая вершина дерева
+ * бисекции, размер которой не больше cellSizes[l]; ячейки вложены друг в друга.
+ *
+ * Граничный город уровня l - город, у которого есть ребро в другую ячейку уровня l.
+ * Граничные города каждой ячейки хранятся подряд (CSR по ячейкам)
+ */
+public class GraphPartition {
+    // Размеры ячеек по умолчанию, от нижнего уровня к верхнему
+    static final int[] DEFAULT_CELL_SIZES = {1 << 7, 1 << 11, 1 << 15};
+
+    private final CompactGraph graph;
+    private final int[][] cellOf;
+    private final int[] cellCounts;
+    private final int[][] boundaryStarts;
+    private final int[][] boundaryNodes;
+    private final int[][] boundaryIndex;
+
+    private GraphPartition(CompactGraph graph, int[][] cellOf, int[] cellCounts) {
+        this.graph = graph;
+        this.cellOf = cellOf;
+        this.cellCounts = cellCounts;
+        int levels = cellOf.length;
+        this.boundaryStarts = new int[levels][];
+        this.boundaryNodes = new int[levels][];
+        this.boundaryIndex = new int[levels][];
+        for (int level = 0; level < levels; level++) {
+            collectBoundary(level);
+        }
+    }
+
+    /**
+     * Разбиение с размерами ячеек по умолчанию; уровни, на которых весь граф
+     * помещается в одну ячейку, не создаются
+     */
+    public static GraphPartition build(CompactGraph graph) {
+        return build(graph, DEFAULT_CELL_SIZES);
+    }
+
+    /**
+     * Разбиение с заданными размерами ячеек (по возрастанию, от нижнего уровня)
+     */
+    public static GraphPartition build(CompactGraph graph, int[] cellSizes) {
+        int n = graph.cityCount();
+        int levels = 0;
+        while (levels < cellSizes.length && cellSizes[levels] < n) {
+            if (levels > 0 && cellSizes[levels] <= cellSizes[levels - 1]) {
+                throw new IllegalArgumentException("Размеры ячеек должны возрастать: " + Arrays.toString(cellSizes));
+            }
+            levels++;
+        }
+
+        int[][] cellOf = new int[levels][n];
+        int[] cellCounts = new int[levels];
+        if (levels > 0) {
+            int[] nodes = new int[n];
+            for (int node = 0; node < n; node++) {
+                nodes[node] = node;
+            }
+            new Bisection(graph, Arrays.copyOf(cellSizes, levels), cellOf, cellCounts).split(nodes, 0, n, Integer.MAX_VALUE);
+        }
+        return new GraphPartition(graph, cellOf, cellCounts);
+    }
+
+    /**
+     * Граф, для которого построено разбиение (веса не используются)
+     */
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    public int levelCount() {
+        return cellOf.length;
+    }
+
+    public int cellCount(int level) {
+        return cellCounts[level];
+    }
+
+    public int cell(int level, int node) {
+        return cellOf[level][node];
+    }
+
+    /**
+     * Граничные города ячейки: boundaryNode(level, i) для i из [boundaryStart(level, cell), boundaryEnd(level, cell))
+     */
+    public int boundaryStart(int level, int cell) {
+        return boundaryStarts[level][cell];
+    }
+
+    public int boundaryEnd(int level, int cell) {
+        return boundaryStarts[level][cell + 1];
+    }
+
+    public int boundaryNode(int level, int position) {
+        return boundaryNodes[level][position];
+    }
+
+    /**
+     * Номер города среди граничных городов его ячейки или -1, если город не граничный
+     */
+    public int boundaryIndex(int level, int node) {
+        return boundaryIndex[level][node];
+    }
+
+    /**
+     * Совпадает ли структура графа (города и рёбра) с той, для которой построено разбиение.
+     * Разбиение можно переиспользовать для графа с теми же рёбрами и другими весами
+     */
+    public boolean matchesTopology(CompactGraph other) {
+        if (other == graph) {
+            return true;
+        }
+        if (other.cityCount() != graph.cityCount() || other.edgeCount() != graph.edgeCount()) {
+            return false;
+        }
+        for (int node = 0; node < graph.cityCount(); node++) {
+            if (other.edgeEnd(node) != graph.edgeEnd(node)) {
+                return false;
+            }
+        }
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            if (other.target(edge) != graph.target(edge)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void collectBoundary(int level) {
+        int n = graph.cityCount();
+        int[] cells = cellOf[level];
+        int[] starts = new int[cellCounts[level] + 1];
+        int[] index = new int[n];
+        Arrays.fill(index, -1);
+
+        // Подсчёт граничных городов по ячейкам и их номеров внутри ячейки
+        for (int node = 0; node < n; node++) {
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                if (cells[graph.target(edge)] != cells[node]) {
+                    index[node] = starts[cells[node] + 1]++;
+                    break;
+                }
+            }
+        }
+        for (int cell = 0; cell < cellCounts[level]; cell++) {
+            starts[cell + 1] += starts[cell];
+        }
+        int[] nodes = new int[starts[cellCounts[level]]];
+        for (int node = 0; node < n; node++) {
+            if (index[node] >= 0) {
+                nodes[starts[cells[node]] + index[node]] = node;
+            }
+        }
+
+        boundaryStarts[level] = starts;
+        boundaryNodes[level] = nodes;
+        boundaryIndex[level] = index;
+    }
+
+    /**
+     * Рекурсивная бисекция обходом внутри подмножества городов
+     */
+    private static final class Bisection {
+        private final CompactGraph graph;
+        private final int[] cellSizes;
+        private final int[][] cellOf;
+        private final int[] cellCounts;
+        // Отметки принадлежности текущему подмножеству и достижения обходом
+        private final int[] member;
+        private final int[] visited;
+        private final int[] order;
+        private final int[] distances;
+        private final NodeQueue queue;
+        private int memberStamp;
+        private int visitStamp;
+
+        Bisection(CompactGraph graph, int[] cellSizes, int[][] cellOf, int[] cellCounts) {
+            this.graph = graph;
+            this.cellSizes = cellSizes;
+            this.cellOf = cellOf;
+            this.cellCounts = cellCounts;
+            this.member = new int[graph.cityCount()];
+            this.visited = new int[graph.cityCount()];
+            this.order = new int[graph.cityCount()];
+            this.distances = new int[graph.cityCount()];
+            this.queue = QueueType.DARY_HEAP.create(graph, Criteria.LENGTH);
+        }
+
+        /**
+         * Деление nodes[from, to): ячейки назначаются на уровнях, где подмножество
+         * впервые стало не больше размера ячейки
+         */
+        void split(int[] nodes, int from, int to, int parentSize) {
+            int size = to - from;
+            for (int level = 0; level < cellSizes.length; level++) {
+                if (size <= cellSizes[level] && parentSize > cellSizes[level]) {
+                    int cell = cellCounts[level]++;
+                    for (int i = from; i < to; i++) {
+                        cellOf[level][nodes[i]] = cell;
+                    }
+                }
+            }
+            if (size <= cellSizes[0]) {
+                return;
+            }
+
+            order(nodes, from, to);
+            System.arraycopy(order, 0, nodes, from, size);
+            int middle = from + size / 2;
+            split(nodes, from, middle, size);
+            split(nodes, middle, to, size);
+        }
+
+        /**
+         * Порядок обхода подмножества из псевдопериферийного города
+         * (последнего города обхода из произвольного); несвязные части идут подряд
+         */
+        private void order(int[] nodes, int from, int to) {
+            memberStamp++;
+            for (int i = from; i < to; i++) {
+                member[nodes[i]] = memberStamp;
+            }
+            int last = sweep(nodes, from, to, nodes[from]);
+            sweep(nodes, from, to, last);
+        }
+
+        /**
+         * Обход подмножества в порядке расстояния по длине дорог (алгоритм Дейкстры)
+         * с заполнением order; возвращает последний город обхода.
+         * Длина, а не число рёбер: иначе магистрали сводят далёкие города в одну половину
+         */
+        private int sweep(int[] nodes, int from, int to, int start) {
+            visitStamp++;
+            int settled = 0;
+            int next = from;
+            while (settled < to - from) {
+                // Новая компонента: start или первый ещё не достигнутый город подмножества
+                int root = start;
+                if (visited[root] == visitStamp) {
+                    while (visited[nodes[next]] == visitStamp) {
+                        next++;
+                    }
+                    root = nodes[next];
+                }
+                visited[root] = visitStamp;
+                distances[root] = 0;
+                queue.push(root, 0);
+
+                while (!queue.isEmpty()) {
+                    int node = queue.pop();
+                    order[settled++] = node;
+                    for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                        int neighbor = graph.target(edge);
+                        if (member[neighbor] != memberStamp) {
+                            continue;
+                        }
+                        int distance = distances[node] + graph.weight(edge, Criteria.LENGTH);
+                        if (visited[neighbor] != visitStamp || distance < distances[neighbor]) {
+                            visited[neighbor] = visitStamp;
+                            distances[neighbor] = distance;
+                            queue.push(neighbor, distance);
+                        }
+                    }
+                }
+            }
+            return order[settled - 1];
+        }
+    }
+}
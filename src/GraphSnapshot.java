@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Двоичный снимок построенного графа для быстрого запуска.
+ * В файле лежат таблица городов, CSR-массивы смежности и весов,
+ * а также ориентиры и иерархии сжатия, если они были рассчитаны.
+ *
+ * Загрузка отображает файл в память и работает с ним на месте (MappedCompactGraph):
+ * объекты городов и дорог не создаются. Таблицы ориентиров и иерархий копируются
+ * в массивы целиком, потому что алгоритмы поиска обращаются к ним как к int[].
+ *
+ * Формат (все числа int32 little-endian, каждая секция выровнена на 4 байта):
+ * заголовок из HEADER_INTS чисел, идентификаторы городов [n], смещения названий [n+1],
+ * названия в UTF-8, хеш-таблица названий, offsets [n+1], sources, targets, twins,
+ * длины, время, стоимость [m], затем необязательные секции ориентиров и иерархий.
+ */
+public class GraphSnapshot {
+    private static final int MAGIC = 0x47525331; // "GRS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 16;
+    private static final int FLAG_LANDMARKS = 1;
+    private static final int FLAG_HIERARCHIES = 2;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Запись снимка графа вместе с рассчитанными ориентирами и иерархиями
+     */
+    public static void write(Graph graph, Path path) throws IOException {
+        CompactGraph compact = graph.freeze();
+        Landmarks landmarks = graph.getLandmarks();
+        ContractionHierarchy[] hierarchies = graph.getHierarchies();
+        int n = compact.cityCount();
+        int m = compact.edgeCount();
+
+        byte[][] names = new byte[n][];
+        int[] nameOffsets = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            names[node] = compact.name(node).getBytes(StandardCharsets.UTF_8);
+            nameOffsets[node + 1] = nameOffsets[node] + names[node].length;
+        }
+        int[] hashTable = buildHashTable(names);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            int[] header = new int[HEADER_INTS];
+            header[0] = MAGIC;
+            header[1] = VERSION;
+            header[2] = n;
+            header[3] = m;
+            header[4] = nameOffsets[n];
+            header[5] = hashTable.length;
+            header[6] = (landmarks != null ? FLAG_LANDMARKS : 0) | (hierarchies != null ? FLAG_HIERARCHIES : 0);
+            for (Criteria criteria : Criteria.values()) {
+                header[7 + criteria.ordinal()] = compact.maxWeight(criteria);
+            }
+            header[10] = landmarks != null ? landmarks.count() : 0;
+            out.writeInts(header);
+
+            for (int node = 0; node < n; node++) {
+                out.writeInt(compact.city(node).getId());
+            }
+            out.writeInts(nameOffsets);
+            for (byte[] name : names) {
+                out.writeBytes(name);
+            }
+            out.align();
+            out.writeInts(hashTable);
+
+            for (int node = 0; node <= n; node++) {
+                out.writeInt(node < n ? compact.edgeStart(node) : m);
+            }
+            for (int edge = 0; edge < m; edge++) {
+                out.writeInt(compact.source(edge));
+            }
+            for (int edge = 0; edge < m; edge++) {
+                out.writeInt(compact.target(edge));
+            }
+            for (int edge = 0; edge < m; edge++) {
+                out.writeInt(compact.twin(edge));
+            }
+            for (Criteria criteria : Criteria.values()) {
+                for (int edge = 0; edge < m; edge++) {
+                    out.writeInt(compact.weight(edge, criteria));
+                }
+            }
+
+            if (landmarks != null) {
+                for (Criteria criteria : Criteria.values()) {
+                    out.writeInts(landmarks.landmarks(criteria));
+                    out.writeInts(landmarks.table(criteria));
+                }
+            }
+            if (hierarchies != null) {
+                for (ContractionHierarchy hierarchy : hierarchies) {
+                    int[][] arrays = hierarchy.arrays();
+                    // Число дуг и размер графа "вверх" определяют длины остальных массивов
+                    out.writeInt(arrays[1].length);
+                    out.writeInt(arrays[8].length);
+                    for (int[] array : arrays) {
+                        out.writeInts(array);
+                    }
+                }
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Загрузка снимка: файл отображается в память, граф работает поверх него.
+     * Новые веса (GraphUpdate) хранятся в прямых буферах рядом с файлом,
+     * первое изменение структуры переносит данные графа на кучу (если не вызван moveOffHeap)
+     */
+    public static Graph load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            IntBuffer header = in.ints(HEADER_INTS);
+            if (header.get(0) != MAGIC || header.get(1) != VERSION) {
+                throw new IOException("Неизвестный формат снимка графа: " + path);
+            }
+            int n = header.get(2);
+            int m = header.get(3);
+            int nameBytes = header.get(4);
+            int hashTableSize = header.get(5);
+            int flags = header.get(6);
+            int[] maxWeights = new int[Criteria.values().length];
+            for (int c = 0; c < maxWeights.length; c++) {
+                maxWeights[c] = header.get(7 + c);
+            }
+            int landmarkCount = header.get(10);
+
+            IntBuffer cityIds = in.ints(n);
+            IntBuffer nameOffsets = in.ints(n + 1);
+            ByteBuffer names = in.bytes(nameBytes);
+            in.align();
+            IntBuffer hashTable = in.ints(hashTableSize);
+            IntBuffer offsets = in.ints(n + 1);
+            IntBuffer sources = in.ints(m);
+            IntBuffer targets = in.ints(m);
+            IntBuffer twins = in.ints(m);
+            IntBuffer[] weights = new IntBuffer[Criteria.values().length];
+            for (int c = 0; c < weights.length; c++) {
+                weights[c] = in.ints(m);
+            }
+            CompactGraph compact = new MappedCompactGraph(n, cityIds, nameOffsets, names, hashTable,
+                    offsets, sources, targets, twins, weights, maxWeights);
+
+            Landmarks landmarks = null;
+            if ((flags & FLAG_LANDMARKS) != 0) {
+                int[][] chosen = new int[Criteria.values().length][];
+                int[][] tables = new int[Criteria.values().length][];
+                for (int c = 0; c < chosen.length; c++) {
+                    chosen[c] = in.array(landmarkCount);
+                    tables[c] = in.array(n * landmarkCount);
+                }
+                landmarks = new Landmarks(compact, landmarkCount, chosen, tables);
+            }
+
+            ContractionHierarchy[] hierarchies = null;
+            if ((flags & FLAG_HIERARCHIES) != 0) {
+                hierarchies = new ContractionHierarchy[Criteria.values().length];
+                for (Criteria criteria : Criteria.values()) {
+                    IntBuffer sizes = in.ints(2);
+                    int arcs = sizes.get(0);
+                    int upward = sizes.get(1);
+                    int[][] arrays = new int[11][];
+                    arrays[0] = in.array(n);
+                    for (int i = 1; i <= 6; i++) {
+                        arrays[i] = in.array(arcs);
+                    }
+                    arrays[7] = in.array(n + 1);
+                    for (int i = 8; i <= 10; i++) {
+                        arrays[i] = in.array(upward);
+                    }
+                    hierarchies[criteria.ordinal()] = new ContractionHierarchy(compact, criteria, arrays);
+                }
+            }
+            return new Graph(compact, landmarks, hierarchies);
+        }
+    }
+
+    /**
+     * Хеш FNV-1a от байтов названия; общий для записи и поиска в MappedCompactGraph
+     */
+    static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte value : bytes) {
+            hash = (hash ^ (value & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Хеш-таблица с открытой адресацией: в ячейке индекс города плюс один, 0 - пусто.
+     * Размер - степень двойки не меньше удвоенного числа городов
+     */
+    static int[] buildHashTable(byte[][] names) {
+        int size = Integer.highestOneBit(Math.max(2, names.length * 2 - 1)) << 1;
+        int[] table = new int[size];
+        int mask = size - 1;
+        for (int node = 0; node < names.length; node++) {
+            int slot = hash(names[node]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = node + 1;
+        }
+        return table;
+    }
+
+    /**
+     * Последовательная запись через прямой буфер
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(value);
+            written += Integer.BYTES;
+        }
+
+        void writeInts(int[] values) throws IOException {
+            for (int value : values) {
+                writeInt(value);
+            }
+        }
+
+        void writeBytes(byte[] values) throws IOException {
+            for (byte value : values) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                buffer.put(value);
+                written++;
+            }
+        }
+
+        void align() throws IOException {
+            while (written % Integer.BYTES != 0) {
+                writeBytes(new byte[1]);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Последовательное чтение секций: каждая секция отображается в память отдельно,
+     * поэтому размер файла не ограничен 2 ГБ (ограничена только длина одной секции)
+     */
+    private static final class Input {
+        private final FileChannel channel;
+        private long position;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer bytes(int count) throws IOException {
+            if (position + count > channel.size()) {
+                throw new IOException("Снимок графа повреждён или обрезан");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, count)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            position += count;
+            return buffer;
+        }
+
+        IntBuffer ints(int count) throws IOException {
+            return bytes(Math.multiplyExact(count, Integer.BYTES)).asIntBuffer();
+        }
+
+        int[] array(int count) throws IOException {
+            int[] values = new int[count];
+            ints(count).get(values);
+            return values;
+        }
+
+        void align() {
+            position = (position + Integer.BYTES - 1) & -Integer.BYTES;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.*;
+
+/**
+ * Пакет изменений графа, который Graph.apply применяет одним шагом:
+ * поиски видят либо граф до пакета, либо граф после него целиком.
+ *
+ * Изменения применяются в порядке: новые города, новые дороги, новые веса, перекрытия.
+ * Дороги двусторонние и задаются парой названий городов в любом порядке;
+ * изменение весов и перекрытие относятся ко всем дорогам между этими городами.
+ * Пакет только из изменений весов (пробки, тарифы) не меняет структуру графа,
+ * и новый снимок разделяет с предыдущим всё, кроме весов изменённых критериев
+ */
+public class GraphUpdate {
+    private final List<City> cities = new ArrayList<>();
+    private final List<Road> roads = new ArrayList<>();
+    // Новые веса дороги по критериям, -1 - вес не меняется
+    private final Map<RoadKey, int[]> weights = new LinkedHashMap<>();
+    private final Set<RoadKey> closures = new LinkedHashSet<>();
+
+    /**
+     * Новый город или замена города с тем же названием
+     */
+    public void addCity(City city) {
+        cities.add(city);
+    }
+
+    /**
+     * Новая двусторонняя дорога между существующими или добавленными в этом пакете городами
+     */
+    public void addRoad(Road road) {
+        checkWeight(road.getLength());
+        checkWeight(road.getTime());
+        checkWeight(road.getCost());
+        roads.add(road);
+    }
+
+    /**
+     * Новый вес дороги по одному критерию (например, время в пути с учётом пробок)
+     */
+    public void setWeight(String from, String to, Criteria criteria, int weight) {
+        checkWeight(weight);
+        int[] values = weights.computeIfAbsent(new RoadKey(from, to), key -> new int[] {-1, -1, -1});
+        values[criteria.ordinal()] = weight;
+    }
+
+    /**
+     * Новые веса дороги по всем критериям
+     */
+    public void setWeights(String from, String to, int length, int time, int cost) {
+        setWeight(from, to, Criteria.LENGTH, length);
+        setWeight(from, to, Criteria.TIME, time);
+        setWeight(from, to, Criteria.COST, cost);
+    }
+
+    /**
+     * Перекрытие: все дороги между городами удаляются из графа
+     */
+    public void closeRoad(String from, String to) {
+        closures.add(new RoadKey(from, to));
+    }
+
+    public boolean isEmpty() {
+        return cities.isEmpty() && roads.isEmpty() && weights.isEmpty() && closures.isEmpty();
+    }
+
+    /**
+     * Меняет ли пакет структуру графа (города и дороги), а не только веса
+     */
+    boolean changesTopology() {
+        return !cities.isEmpty() || !roads.isEmpty() || !closures.isEmpty();
+    }
+
+    /**
+     * Критерии, веса которых меняются пакетом (без учёта новых дорог)
+     */
+    Set<Criteria> changedCriteria() {
+        Set<Criteria> changed = EnumSet.noneOf(Criteria.class);
+        for (int[] values : weights.values()) {
+            for (Criteria criteria : Criteria.values()) {
+                if (values[criteria.ordinal()] >= 0) {
+                    changed.add(criteria);
+                }
+            }
+        }
+        return changed;
+    }
+
+    List<City> cities() {
+        return cities;
+    }
+
+    List<Road> roads() {
+        return roads;
+    }
+
+    Map<RoadKey, int[]> weights() {
+        return weights;
+    }
+
+    Set<RoadKey> closures() {
+        return closures;
+    }
+
+    private static void checkWeight(int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Вес дороги не может быть отрицательным: " + weight);
+        }
+    }
+
+    /**
+     * Дорога как неупорядоченная пара названий городов
+     */
+    record RoadKey(String first, String second) {
+        RoadKey {
+            if (first.compareTo(second) > 0) {
+                String swap = first;
+                first = second;
+                second = swap;
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Способ выбора ориентиров для ALT-поиска
+ */
+public enum LandmarkSelection {
+    FARTHEST,  // Каждый следующий ориентир - самый удалённый от уже выбранных
+    AVOID      // Ориентир в листе поддерева, где текущие оценки хуже всего
+}
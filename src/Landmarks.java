@@ -0,0 +1,290 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Таблицы расстояний до ориентиров для ALT-поиска (A*, ориентиры, неравенство треугольника).
+ * Для каждого критерия выбирается свой набор из k ориентиров L и хранятся расстояния d(L, v).
+ * Все дороги двусторонние с одинаковыми весами, поэтому d(L, v) = d(v, L)
+ * и одна таблица служит одновременно таблицей "до" и "от" ориентира.
+ * Нижняя оценка: d(v, t) >= max |d(L, t) - d(L, v)|
+ */
+public class Landmarks {
+    private static final int MAGIC = 0x4C4D4B31; // "LMK1"
+    private static final int VERSION = 1;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final CompactGraph graph;
+    private final int count;
+    private final int[][] landmarks;
+    // distances[критерий][город * count + i] - расстояние от i-го ориентира до города
+    private final int[][] distances;
+
+    /**
+     * Таблицы в формате полей класса; используется загрузчиком снимка графа
+     */
+    Landmarks(CompactGraph graph, int count, int[][] landmarks, int[][] distances) {
+        this.graph = graph;
+        this.count = count;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Предварительный расчёт ориентиров для всех критериев
+     */
+    public static Landmarks compute(CompactGraph graph, int count, LandmarkSelection selection) {
+        int n = graph.cityCount();
+        if (count < 1 || count > n) {
+            throw new IllegalArgumentException("Некорректное число ориентиров: " + count);
+        }
+
+        int criteriaCount = Criteria.values().length;
+        int[][] landmarks = new int[criteriaCount][];
+        int[][] distances = new int[criteriaCount][];
+        for (Criteria criteria : Criteria.values()) {
+            int[] chosen = new int[count];
+            int[] table = new int[n * count];
+            switch (selection) {
+                case FARTHEST -> selectFarthest(graph, criteria, chosen, table);
+                case AVOID -> selectAvoid(graph, criteria, chosen, table);
+            }
+            landmarks[criteria.ordinal()] = chosen;
+            distances[criteria.ordinal()] = table;
+        }
+        return new Landmarks(graph, count, landmarks, distances);
+    }
+
+    /**
+     * Граф, для которого рассчитаны таблицы
+     */
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int[] landmarks(Criteria criteria) {
+        return landmarks[criteria.ordinal()].clone();
+    }
+
+    /**
+     * Таблица расстояний критерия без копирования; используется записью снимка графа
+     */
+    int[] table(Criteria criteria) {
+        return distances[criteria.ordinal()];
+    }
+
+    /**
+     * Нижняя оценка расстояния от node до target.
+     * Возвращает Integer.MAX_VALUE, если target заведомо недостижим из node
+     */
+    public int lowerBound(Criteria criteria, int node, int target) {
+        int[] table = distances[criteria.ordinal()];
+        int nodeBase = node * count;
+        int targetBase = target * count;
+        int bound = 0;
+        for (int i = 0; i < count; i++) {
+            int toNode = table[nodeBase + i];
+            int toTarget = table[targetBase + i];
+            if (toNode == UNREACHABLE || toTarget == UNREACHABLE) {
+                // Город и цель в разных компонентах связности
+                if (toNode != toTarget) {
+                    return UNREACHABLE;
+                }
+                continue;
+            }
+            bound = Math.max(bound, Math.abs(toTarget - toNode));
+        }
+        return bound;
+    }
+
+    /**
+     * Сохранение таблиц в двоичный файл, чтобы не повторять расчёт при каждом запуске
+     */
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(graph.cityCount());
+            out.writeInt(graph.edgeCount());
+            out.writeInt(count);
+            for (int c = 0; c < landmarks.length; c++) {
+                for (int landmark : landmarks[c]) {
+                    out.writeInt(landmark);
+                }
+                for (int distance : distances[c]) {
+                    out.writeInt(distance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Загрузка таблиц, сохранённых для того же графа
+     */
+    public static Landmarks load(Path path, CompactGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат файла ориентиров: " + path);
+            }
+            int cityCount = in.readInt();
+            int edgeCount = in.readInt();
+            if (cityCount != graph.cityCount() || edgeCount != graph.edgeCount()) {
+                throw new IOException("Файл ориентиров построен для другого графа: " + path);
+            }
+
+            int count = in.readInt();
+            int criteriaCount = Criteria.values().length;
+            int[][] landmarks = new int[criteriaCount][count];
+            int[][] distances = new int[criteriaCount][cityCount * count];
+            for (int c = 0; c < criteriaCount; c++) {
+                for (int i = 0; i < count; i++) {
+                    landmarks[c][i] = in.readInt();
+                }
+                for (int i = 0; i < distances[c].length; i++) {
+                    distances[c][i] = in.readInt();
+                }
+            }
+            return new Landmarks(graph, count, landmarks, distances);
+        }
+    }
+
+    /**
+     * Выбор "самый удалённый": каждый следующий ориентир максимизирует
+     * минимальное расстояние до уже выбранных. Недостигнутые города
+     * (другая компонента связности) выбираются в первую очередь
+     */
+    private static void selectFarthest(CompactGraph graph, Criteria criteria, int[] chosen, int[] table) {
+        int n = graph.cityCount();
+        int[] nearest = new int[n];
+        int[] single = new int[n];
+        int[] predecessors = new int[n];
+
+        // Первый ориентир - самый удалённый от произвольного города
+        DijkstraSearch.shortestPathTree(graph, 0, criteria, single, predecessors, null);
+        Arrays.fill(nearest, UNREACHABLE);
+        int next = argMax(single);
+
+        for (int i = 0; i < chosen.length; i++) {
+            chosen[i] = next;
+            DijkstraSearch.shortestPathTree(graph, next, criteria, single, predecessors, null);
+            store(table, chosen.length, i, single);
+            for (int v = 0; v < n; v++) {
+                nearest[v] = Math.min(nearest[v], single[v]);
+            }
+            nearest[next] = -1;
+            next = argMax(nearest);
+        }
+    }
+
+    /**
+     * Выбор "avoid": строится дерево кратчайших путей из случайного корня,
+     * вес города - разность между точным расстоянием и текущей нижней оценкой.
+     * Спуск по поддереву с наибольшим суммарным весом (без ориентиров внутри)
+     * до листа даёт следующий ориентир
+     */
+    private static void selectAvoid(CompactGraph graph, Criteria criteria, int[] chosen, int[] table) {
+        int n = graph.cityCount();
+        int[] single = new int[n];
+        int[] predecessors = new int[n];
+        int[] order = new int[n];
+        long[] sizes = new long[n];
+        int[] bestChild = new int[n];
+        boolean[] blocked = new boolean[n];
+        boolean[] isLandmark = new boolean[n];
+        Random random = new Random(criteria.ordinal());
+
+        // Первый ориентир - самый удалённый от случайного города
+        DijkstraSearch.shortestPathTree(graph, random.nextInt(n), criteria, single, predecessors, null);
+        chosen[0] = argMax(single);
+
+        for (int i = 0; ; ) {
+            isLandmark[chosen[i]] = true;
+            DijkstraSearch.shortestPathTree(graph, chosen[i], criteria, single, predecessors, null);
+            store(table, chosen.length, i, single);
+            if (++i == chosen.length) {
+                break;
+            }
+
+            int root = random.nextInt(n);
+            int settled = DijkstraSearch.shortestPathTree(graph, root, criteria, single, predecessors, order);
+            for (int j = 0; j < settled; j++) {
+                sizes[order[j]] = 0;
+                bestChild[order[j]] = -1;
+                blocked[order[j]] = isLandmark[order[j]];
+            }
+
+            // Обратный порядок извлечения: потомки обрабатываются раньше родителей
+            for (int j = settled - 1; j >= 0; j--) {
+                int node = order[j];
+                if (!blocked[node]) {
+                    sizes[node] += single[node] - boundFromTable(table, chosen.length, i, root, node);
+                }
+                if (node == root) {
+                    continue;
+                }
+
+                int parent = graph.source(predecessors[node]);
+                if (blocked[node]) {
+                    // Поддерево с ориентиром уже хорошо покрыто
+                    blocked[parent] = true;
+                } else {
+                    sizes[parent] += sizes[node];
+                    if (bestChild[parent] < 0 || sizes[node] > sizes[bestChild[parent]]) {
+                        bestChild[parent] = node;
+                    }
+                }
+            }
+
+            int leaf = root;
+            while (bestChild[leaf] >= 0 && sizes[bestChild[leaf]] > 0) {
+                leaf = bestChild[leaf];
+            }
+            chosen[i] = isLandmark[leaf] ? firstNonLandmark(isLandmark) : leaf;
+        }
+    }
+
+    private static int boundFromTable(int[] table, int stride, int filled, int from, int to) {
+        int bound = 0;
+        for (int i = 0; i < filled; i++) {
+            int a = table[from * stride + i];
+            int b = table[to * stride + i];
+            if (a != UNREACHABLE && b != UNREACHABLE) {
+                bound = Math.max(bound, Math.abs(a - b));
+            }
+        }
+        return bound;
+    }
+
+    private static void store(int[] table, int stride, int column, int[] single) {
+        for (int v = 0; v < single.length; v++) {
+            table[v * stride + column] = single[v];
+        }
+    }
+
+    private static int argMax(int[] values) {
+        int best = 0;
+        for (int v = 1; v < values.length; v++) {
+            if (values[v] > values[best]) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    private static int firstNonLandmark(boolean[] isLandmark) {
+        for (int v = 0; v < isLandmark.length; v++) {
+            if (!isLandmark[v]) {
+                return v;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Поиск компромиссного маршрута: алгоритм Дейкстры с ключом-вектором сумм критериев
+ * в порядке приоритетов, сравниваемым лексикографически.
+ * Лексикографический порядок векторов согласован со сложением неотрицательных весов,
+ * поэтому один поиск находит маршрут, лучший по приоритетам среди всех маршрутов
+ * (он же лучший на Парето-фронте), без построения фронта.
+ *
+ * Расстояния по k приоритетам хранятся в пространстве поиска на k * n значений:
+ * значение i-го приоритета города node - по индексу i * n + node.
+ * Очередь - двоичная куча с ленивым удалением: устаревшая запись узнаётся
+ * по несовпадению сохранённого вектора с текущими расстояниями
+ */
+public class LexicographicSearch {
+    private LexicographicSearch() {
+    }
+
+    /**
+     * Лучший по приоритетам путь от source до target в виде последовательности рёбер
+     * или null, если путь не существует
+     */
+    public static int[] shortestPath(CompactGraph graph, int source, int target,
+                                     List<Criteria> priorities, SearchStats stats) {
+        int n = graph.cityCount();
+        int k = priorities.size();
+        Criteria[] order = priorities.toArray(new Criteria[0]);
+        SearchWorkspace workspace = SearchWorkspace.acquire(Math.multiplyExact(n, Math.max(k, 1)));
+        try {
+            TupleHeap queue = new TupleHeap(k);
+            int[] key = new int[k];
+            int[] next = new int[k];
+            for (int i = 0; i < k; i++) {
+                workspace.update(i * n + source, 0, -1);
+            }
+            if (k == 0) {
+                workspace.update(source, 0, -1);
+            }
+            queue.push(source, key);
+            long relaxed = 0;
+            int pushes = 1;
+            int pops = 0;
+            int settled = 0;
+            int peak = 0;
+
+            while (!queue.isEmpty()) {
+                peak = Math.max(peak, queue.size());
+                int node = queue.pop(key);
+                pops++;
+                if (!current(workspace, n, node, key)) {
+                    continue;
+                }
+                settled++;
+                if (node == target) {
+                    break;
+                }
+
+                int end = graph.edgeEnd(node);
+                relaxed += end - graph.edgeStart(node);
+                for (int edge = graph.edgeStart(node); edge < end; edge++) {
+                    int neighbor = graph.target(edge);
+                    for (int i = 0; i < k; i++) {
+                        next[i] = key[i] + graph.weight(edge, order[i]);
+                    }
+                    if (better(workspace, n, neighbor, next)) {
+                        // Предшественник хранится в значении первого приоритета
+                        workspace.update(neighbor, k > 0 ? next[0] : 0, edge);
+                        for (int i = 1; i < k; i++) {
+                            workspace.update(i * n + neighbor, next[i], -1);
+                        }
+                        queue.push(neighbor, next);
+                        pushes++;
+                    }
+                }
+            }
+
+            if (stats != null) {
+                stats.add(settled, relaxed, pushes, pops, peak);
+            }
+            return workspace.path(graph, source, target);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Совпадает ли вектор извлечённой записи с текущими расстояниями города
+     */
+    static boolean current(SearchWorkspace workspace, int n, int node, int[] key) {
+        if (key.length == 0) {
+            return workspace.distance(node) != Integer.MAX_VALUE;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (workspace.distance(i * n + node) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Лексикографически меньше ли вектор candidate текущих расстояний города
+     * (недостигнутый город - бесконечность)
+     */
+    static boolean better(SearchWorkspace workspace, int n, int node, int[] candidate) {
+        if (candidate.length == 0) {
+            return workspace.distance(node) == Integer.MAX_VALUE;
+        }
+        for (int i = 0; i < candidate.length; i++) {
+            int distance = workspace.distance(i * n + node);
+            if (candidate[i] != distance) {
+                return candidate[i] < distance;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Двоичная куча записей (город, вектор ключа) в примитивных массивах.
+     * Векторы записей лежат подряд: вектор записи e занимает keys[e * k, e * k + k).
+     * Используется и поиском компромисса по сжатому графу (CompressedGraph)
+     */
+    static final class TupleHeap {
+        private final int k;
+        private int[] nodes = new int[256];
+        private int[] keys;
+        private int size;
+
+        TupleHeap(int k) {
+            this.k = k;
+            this.keys = new int[nodes.length * k];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void push(int node, int[] key) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2 * k);
+            }
+            int position = size++;
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (compare(key, 0, keys, parent * k) >= 0) {
+                    break;
+                }
+                move(parent, position);
+                position = parent;
+            }
+            nodes[position] = node;
+            System.arraycopy(key, 0, keys, position * k, k);
+        }
+
+        /**
+         * Извлечение записи с наименьшим вектором; вектор копируется в key
+         */
+        int pop(int[] key) {
+            int top = nodes[0];
+            System.arraycopy(keys, 0, key, 0, k);
+            int last = --size;
+            int position = 0;
+            while (true) {
+                int child = position * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && compare(keys, (child + 1) * k, keys, child * k) < 0) {
+                    child++;
+                }
+                if (compare(keys, child * k, keys, last * k) >= 0) {
+                    break;
+                }
+                move(child, position);
+                position = child;
+            }
+            if (size > 0) {
+                move(last, position);
+            }
+            return top;
+        }
+
+        private void move(int from, int to) {
+            nodes[to] = nodes[from];
+            System.arraycopy(keys, from * k, keys, to * k, k);
+        }
+
+        private int compare(int[] a, int aFrom, int[] b, int bFrom) {
+            for (int i = 0; i < k; i++) {
+                if (a[aFrom + i] != b[bFrom + i]) {
+                    return Integer.compare(a[aFrom + i], b[bFrom + i]);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -1,5 +1,9 @@
 import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Главный класс приложения для оптимизации маршрутов.
@@ -10,55 +14,167 @@ public class Main {
         try {
             System.out.println("Запуск системы оптимизации маршрутов...");
             
-            // Парсинг входных данных
-            Parser parser = new Parser("input.txt");
-            Graph graph = parser.parse();
-            List<Request> requests = parser.getRequests();
+            // Параметры запуска: --threads=N, --cache-mb=N, --mmap, --snapshot=файл,
+            // --stream=файл|- (потоковая обработка запросов из файла или стандартного ввода),
+            // --metrics=файл (выгрузка метрик поиска в формате Prometheus по окончании работы),
+            // --fused (один совмещённый поиск по трём критериям вместо трёх отдельных),
+            // --delta-stepping (каждый поиск параллельно на всех ядрах, для дальних запросов),
+            // --overlay (поиск по многоуровневому оверлею ячеек),
+            // --serve=порт (HTTP-сервис запросов вместо обработки input.txt, см. RouteServer),
+            // --bind=адрес (адрес сервиса, по умолчанию только локальный 127.0.0.1),
+            // --off-heap (массивы смежности и весов в прямых буферах вне кучи),
+            // --parallel-build (параллельный разбор дорог и построение графа, вместе с --mmap),
+            // --dedup-roads (из параллельных дорог остаются лучшие по каждому критерию),
+            // --compressed (запросы по сжатому графу CompressedGraph, только поиск Дейкстры)
+            int threads = Runtime.getRuntime().availableProcessors();
+            boolean mappedParser = false;
+            long cacheMegabytes = 0;
+            Path snapshot = null;
+            String streamSource = null;
+            Path metricsFile = null;
+            boolean fusedSearch = false;
+            SearchMode mode = SearchMode.DIJKSTRA;
+            int servePort = -1;
+            InetAddress bindAddress = InetAddress.getLoopbackAddress();
+            boolean offHeap = false;
+            boolean parallelBuild = false;
+            boolean deduplicateRoads = false;
+            boolean compressed = false;
+            for (String arg : args) {
+                if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } else if (arg.startsWith("--cache-mb=")) {
+                    cacheMegabytes = Long.parseLong(arg.substring("--cache-mb=".length()));
+                } else if (arg.equals("--mmap")) {
+                    mappedParser = true;
+                } else if (arg.startsWith("--snapshot=")) {
+                    snapshot = Path.of(arg.substring("--snapshot=".length()));
+                } else if (arg.startsWith("--stream=")) {
+                    streamSource = arg.substring("--stream=".length());
+                } else if (arg.startsWith("--metrics=")) {
+                    metricsFile = Path.of(arg.substring("--metrics=".length()));
+                } else if (arg.equals("--fused")) {
+                    fusedSearch = true;
+                } else if (arg.equals("--delta-stepping")) {
+                    mode = SearchMode.DELTA_STEPPING;
+                } else if (arg.equals("--overlay")) {
+                    mode = SearchMode.PARTITION_OVERLAY;
+                } else if (arg.startsWith("--serve=")) {
+                    servePort = Integer.parseInt(arg.substring("--serve=".length()));
+                } else if (arg.startsWith("--bind=")) {
+                    bindAddress = InetAddress.getByName(arg.substring("--bind=".length()));
+                } else if (arg.equals("--off-heap")) {
+                    offHeap = true;
+                } else if (arg.equals("--parallel-build")) {
+                    mappedParser = true;
+                    parallelBuild = true;
+                } else if (arg.equals("--dedup-roads")) {
+                    mappedParser = true;
+                    parallelBuild = true;
+                    deduplicateRoads = true;
+                } else if (arg.equals("--compressed")) {
+                    mappedParser = true;
+                    compressed = true;
+                } else {
+                    System.err.println("Неизвестный параметр: " + arg);
+                }
+            }
+            
+            // Парсинг входных данных: построчно или через отображение файла в память.
+            // Если снимок графа уже есть, из входного файла читаются только запросы,
+            // а в потоковом режиме запросы читаются позже из потока
+            Graph graph;
+            List<Request> requests;
+            if (snapshot != null && Files.exists(snapshot)) {
+                graph = GraphSnapshot.load(snapshot);
+                requests = streamSource != null ? List.of() : new Parser("input.txt").parseRequests();
+            } else if (mappedParser) {
+                // Сжатый граф без снимка строится прямо из разобранных дорог,
+                // минуя промежуточный компактный граф
+                FastParser parser = new FastParser("input.txt", parallelBuild, deduplicateRoads);
+                graph = compressed && snapshot == null ? parser.parseCompressed() : parser.parse();
+                requests = parser.getRequests();
+            } else {
+                Parser parser = new Parser("input.txt");
+                graph = parser.parse();
+                requests = parser.getRequests();
+            }
+            if (snapshot != null && !Files.exists(snapshot)) {
+                GraphSnapshot.write(graph, snapshot);
+                System.out.println("Снимок графа сохранён в " + snapshot);
+            }
+            
+            // Сжатый граф поддерживает только поиск Дейкстры; снимок (отображённый в память)
+            // сжимается без копирования в кучу
+            if (compressed) {
+                if (offHeap || mode != SearchMode.DIJKSTRA) {
+                    System.err.println("Сжатый граф: --off-heap, --delta-stepping и --overlay не используются");
+                    offHeap = false;
+                    mode = SearchMode.DIJKSTRA;
+                }
+                graph.compress();
+            }
+            if (offHeap) {
+                graph.moveOffHeap();
+            }
             
-            System.out.println("Загружено запросов: " + requests.size());
+            if (streamSource == null) {
+                System.out.println("Загружено запросов: " + requests.size());
+            }
             
-            // Обработка запросов
-            ResultWriter writer = new ResultWriter("output.txt");
+            RouteCache cache = null;
+            if (cacheMegabytes > 0) {
+                cache = new RouteCache(cacheMegabytes * 1024 * 1024);
+                graph.setRouteCache(cache);
+            }
+            if (mode == SearchMode.PARTITION_OVERLAY) {
+                graph.preparePartitionOverlay();
+            }
+            SearchMetrics metrics = null;
+            if (metricsFile != null) {
+                metrics = new SearchMetrics();
+                graph.setSearchMetrics(metrics);
+            }
             
-            for (Request request : requests) {
-                System.out.println("Обработка запроса: " + request);
-                
-                // Поиск оптимальных маршрутов по каждому критерию
-                Route shortestRoute = graph.findShortestRoute(
-                    request.getFromCity(), 
-                    request.getToCity(), 
-                    Criteria.LENGTH
-                );
-                
-                Route fastestRoute = graph.findShortestRoute(
-                    request.getFromCity(), 
-                    request.getToCity(), 
-                    Criteria.TIME
-                );
-                
-                Route cheapestRoute = graph.findShortestRoute(
-                    request.getFromCity(), 
-                    request.getToCity(), 
-                    Criteria.COST
-                );
-                
-                // Выбор компромиссного маршрута
-                Route compromiseRoute = selectCompromiseRoute(
-                    shortestRoute, 
-                    fastestRoute, 
-                    cheapestRoute, 
-                    request.getPriorities()
-                );
-                
-                // Запись результатов
-                writer.writeRouteResult("ДЛИНА", shortestRoute);
-                writer.writeRouteResult("ВРЕМЯ", fastestRoute);
-                writer.writeRouteResult("СТОИМОСТЬ", cheapestRoute);
-                writer.writeRouteResult("КОМПРОМИСС", compromiseRoute);
-                writer.writeEmptyLine();
+            if (servePort >= 0) {
+                serve(graph, mode, threads, fusedSearch, metrics, bindAddress, servePort);
+                return;
+            }
+            
+            // Обработка запросов: поиски выполняются параллельно,
+            // результаты записываются в порядке запросов
+            ChannelResultWriter writer = new ChannelResultWriter(Path.of("output.txt"));
+            ExecutorService executor = BatchSolver.newExecutor(threads);
+            BatchSolver solver = new BatchSolver(graph, executor, mode, threads * 64);
+            solver.setFusedSearch(fusedSearch);
+            
+            try {
+                if (streamSource != null) {
+                    // Каждый результат сбрасывается в файл сразу после записи
+                    try (RequestStream stream = RequestStream.open(streamSource)) {
+                        solver.stream(stream, result -> {
+                            writer.writeRequestResult(result);
+                            writer.flush();
+                        }, threads * 16);
+                    }
+                } else {
+                    solver.solve(requests.iterator(), result -> {
+                        System.out.println("Обработка запроса: " + result.getRequest());
+                        writer.writeRequestResult(result);
+                    });
+                }
+            } finally {
+                executor.shutdown();
             }
             
             writer.close();
+            if (cache != null) {
+                System.out.println("Кэш маршрутов: " + cache);
+            }
+            if (metrics != null) {
+                Files.writeString(metricsFile, metrics.toPrometheus());
+                System.out.println("Метрики поиска: " + metrics);
+            }
             System.out.println("Результаты успешно сохранены в output.txt");
             
         } catch (IOException e) {
@@ -70,46 +186,25 @@ public class Main {
     }
     
     /**
-     * Выбор компромиссного маршрута на основе приоритетов
+     * Запуск HTTP-сервиса запросов; работает до завершения процесса.
+     * Обработчики HTTP и поиски пакетов выполняются на разных исполнителях,
+     * чтобы обработчики, ждущие результатов пакета, не занимали потоки поиска
      */
-    private static Route selectCompromiseRoute(Route route1, Route route2, Route route3, 
-                                               List<Criteria> priorities) {
-        List<Route> routes = Arrays.asList(route1, route2, route3);
-        
-        // Удаляем пустые маршруты
-        List<Route> validRoutes = new ArrayList<>();
-        for (Route route : routes) {
-            if (route != null && !route.isEmpty()) {
-                validRoutes.add(route);
-            }
-        }
-        
-        if (validRoutes.isEmpty()) {
-            return new Route(new ArrayList<>());
-        }
+    private static void serve(Graph graph, SearchMode mode, int threads, boolean fusedSearch,
+                              SearchMetrics metrics, InetAddress address, int port) throws IOException {
+        ExecutorService searches = BatchSolver.newExecutor(threads);
+        BatchSolver solver = new BatchSolver(graph, searches, mode, threads * 64);
+        solver.setFusedSearch(fusedSearch);
+        // Обработчики в основном ждут пакеты, поэтому их потоков больше, чем потоков поиска
+        ExecutorService handlers = BatchSolver.newExecutor(threads * 4);
         
-        // Сортируем маршруты по приоритетам
-        validRoutes.sort((r1, r2) -> {
-            for (Criteria priority : priorities) {
-                int compare = compareByCriteria(r1, r2, priority);
-                if (compare != 0) {
-                    return compare;
-                }
-            }
-            return 0;
-        });
-        
-        return validRoutes.get(0);
-    }
-    
-    /**
-     * Сравнение маршрутов по заданному критерию
-     */
-    private static int compareByCriteria(Route r1, Route r2, Criteria criteria) {
-        return switch (criteria) {
-            case LENGTH -> Integer.compare(r1.getTotalLength(), r2.getTotalLength());
-            case TIME -> Integer.compare(r1.getTotalTime(), r2.getTotalTime());
-            case COST -> Integer.compare(r1.getTotalCost(), r2.getTotalCost());
-        };
+        RouteServer server = new RouteServer(graph, mode, solver, metrics);
+        server.start(address, port, handlers);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            handlers.shutdown();
+            searches.shutdown();
+        }, "route-server-shutdown"));
+        System.out.println("Сервис запросов запущен на " + address.getHostAddress() + ":" + server.getPort());
     }
 }
\ No newline at end of file
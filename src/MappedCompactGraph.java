@@ -0,0 +1,210 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CSR-представление графа поверх буферов вне кучи: отображённого в память файла
+ * снимка (GraphSnapshot) или прямых буферов (offHeap).
+ * Массивы смежности и весов читаются прямо из буферов, названия городов хранятся там же
+ * в UTF-8 вместе с хеш-таблицей для поиска по имени, поэтому граф не создаёт объектов
+ * на каждый город или дорогу, а сборщик мусора не видит его данных.
+ * Файл снимка отображается только для чтения: несколько процессов на одной машине
+ * работают с одними и теми же страницами файлового кэша.
+ */
+public class MappedCompactGraph extends CompactGraph {
+    private final int cityCount;
+    private final IntBuffer cityIds;
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer names;
+    private final IntBuffer hashTable;
+    private final IntBuffer offsets;
+    private final IntBuffer sources;
+    private final IntBuffer targets;
+    private final IntBuffer twins;
+    private final IntBuffer[] weights;
+    private final int[] maxWeights;
+
+    MappedCompactGraph(int cityCount, IntBuffer cityIds, IntBuffer nameOffsets, ByteBuffer names,
+                       IntBuffer hashTable, IntBuffer offsets, IntBuffer sources, IntBuffer targets,
+                       IntBuffer twins, IntBuffer[] weights, int[] maxWeights) {
+        this.cityCount = cityCount;
+        this.cityIds = cityIds;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+        this.hashTable = hashTable;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.twins = twins;
+        this.weights = weights;
+        this.maxWeights = maxWeights;
+    }
+
+    /**
+     * Копия графа в прямых буферах вне кучи (ByteBuffer.allocateDirect).
+     * Размер одного массива ограничен 2 ГБ, то есть примерно 500 млн направленных рёбер
+     */
+    static MappedCompactGraph offHeap(CompactGraph graph) {
+        int n = graph.cityCount();
+        int m = graph.edgeCount();
+        IntBuffer cityIds = allocate(n);
+        IntBuffer nameOffsets = allocate(n + 1);
+        byte[][] encoded = new byte[n][];
+        for (int node = 0; node < n; node++) {
+            encoded[node] = graph.name(node).getBytes(StandardCharsets.UTF_8);
+            cityIds.put(node, graph.city(node).getId());
+            nameOffsets.put(node + 1, nameOffsets.get(node) + encoded[node].length);
+        }
+        ByteBuffer names = ByteBuffer.allocateDirect(nameOffsets.get(n));
+        for (int node = 0; node < n; node++) {
+            names.put(nameOffsets.get(node), encoded[node]);
+        }
+        int[] table = GraphSnapshot.buildHashTable(encoded);
+        IntBuffer hashTable = allocate(table.length).put(0, table);
+
+        IntBuffer offsets = allocate(n + 1);
+        for (int node = 0; node < n; node++) {
+            offsets.put(node, graph.edgeStart(node));
+        }
+        offsets.put(n, m);
+        IntBuffer sources = allocate(m);
+        IntBuffer targets = allocate(m);
+        IntBuffer twins = allocate(m);
+        for (int edge = 0; edge < m; edge++) {
+            sources.put(edge, graph.source(edge));
+            targets.put(edge, graph.target(edge));
+            twins.put(edge, graph.twin(edge));
+        }
+        IntBuffer[] weights = new IntBuffer[Criteria.values().length];
+        int[] maxWeights = new int[weights.length];
+        for (Criteria criteria : Criteria.values()) {
+            int c = criteria.ordinal();
+            weights[c] = allocate(m);
+            for (int edge = 0; edge < m; edge++) {
+                weights[c].put(edge, graph.weight(edge, criteria));
+            }
+            maxWeights[c] = graph.maxWeight(criteria);
+        }
+        return new MappedCompactGraph(n, cityIds, nameOffsets, names, hashTable,
+            offsets, sources, targets, twins, weights, maxWeights);
+    }
+
+    /**
+     * Новые веса изменённых критериев копируются в прямые буферы,
+     * структура и остальные веса - общие с этим графом, поэтому граф остаётся вне кучи
+     */
+    @Override
+    CompactGraph withWeights(WeightChanges changes) {
+        IntBuffer[] nextWeights = weights.clone();
+        int[] nextMaxWeights = maxWeights.clone();
+        for (Criteria criteria : Criteria.values()) {
+            int c = criteria.ordinal();
+            if (changes.count(criteria) > 0) {
+                nextWeights[c] = allocate(weights[c].limit()).put(0, weights[c], 0, weights[c].limit());
+                nextMaxWeights[c] = changes.applyTo(nextWeights[c], criteria, maxWeights[c]);
+            }
+        }
+        return new MappedCompactGraph(cityCount, cityIds, nameOffsets, names, hashTable,
+            offsets, sources, targets, twins, nextWeights, nextMaxWeights);
+    }
+
+    @Override
+    public int cityCount() {
+        return cityCount;
+    }
+
+    @Override
+    public int edgeCount() {
+        return targets.limit();
+    }
+
+    /**
+     * Поиск по хеш-таблице с линейным пробированием; сравниваются байты UTF-8
+     */
+    @Override
+    public int indexOf(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int mask = hashTable.limit() - 1;
+        for (int slot = GraphSnapshot.hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int entry = hashTable.get(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (nameEquals(entry - 1, key)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    @Override
+    public City city(int node) {
+        return new City(cityIds.get(node), name(node));
+    }
+
+    @Override
+    public String name(int node) {
+        int start = nameOffsets.get(node);
+        byte[] bytes = new byte[nameOffsets.get(node + 1) - start];
+        names.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    Object nameTable() {
+        return names;
+    }
+
+    @Override
+    public int edgeStart(int node) {
+        return offsets.get(node);
+    }
+
+    @Override
+    public int edgeEnd(int node) {
+        return offsets.get(node + 1);
+    }
+
+    @Override
+    public int source(int edge) {
+        return sources.get(edge);
+    }
+
+    @Override
+    public int target(int edge) {
+        return targets.get(edge);
+    }
+
+    @Override
+    public int twin(int edge) {
+        return twins.get(edge);
+    }
+
+    @Override
+    public int weight(int edge, Criteria criteria) {
+        return weights[criteria.ordinal()].get(edge);
+    }
+
+    @Override
+    public int maxWeight(Criteria criteria) {
+        return maxWeights[criteria.ordinal()];
+    }
+
+    private static IntBuffer allocate(int count) {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(count, Integer.BYTES))
+            .order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private boolean nameEquals(int node, byte[] key) {
+        int start = nameOffsets.get(node);
+        if (nameOffsets.get(node + 1) - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (names.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Очередь с приоритетом над целочисленными индексами городов.
+ * Используется алгоритмами поиска вместо PriorityQueue объектов
+ */
+public interface NodeQueue {
+    /**
+     * Добавляет город с ключом или уменьшает ключ, если город уже в очереди.
+     * Ключ, не меньший текущего, игнорируется
+     */
+    void push(int node, int key);
+
+    /**
+     * Извлекает город с минимальным ключом
+     */
+    int pop();
+
+    boolean isEmpty();
+
+    int size();
+
+    /**
+     * Очищает очередь для повторного использования
+     */
+    void clear();
+}
@@ -0,0 +1,28 @@
+import java.util.List;
+
+/**
+ * Парето-фронт маршрутов между двумя городами (Graph.findParetoRoutes).
+ * Усечённый фронт - поиск остановлен на пределе числа меток, и в нём могут
+ * отсутствовать недоминируемые маршруты; однокритериальные оптимумы в нём есть всегда
+ */
+public class ParetoFront {
+    private final List<Route> routes;
+    private final boolean truncated;
+
+    public ParetoFront(List<Route> routes, boolean truncated) {
+        this.routes = routes;
+        this.truncated = truncated;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public boolean isEmpty() {
+        return routes.isEmpty();
+    }
+}
@@ -0,0 +1,394 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Многокритериальный поиск меток (алгоритм Мартинса) по трём критериям
+ * (длина, время, стоимость): находит Парето-фронт маршрутов между двумя городами.
+ *
+ * Метки извлекаются в лексикографическом порядке векторов, поэтому извлечённая
+ * метка уже не может быть доминирована. Метка отбрасывается, если её доминирует
+ * другая метка того же города или если её вектор плюс нижние оценки до цели
+ * доминирует маршрут, уже найденный до цели. Нижние оценки даёт обратный поиск
+ * по каждому критерию от цели, остановленный при извлечении source: для обработанных
+ * городов это точное расстояние, для остальных - радиус поиска. Те же три поиска
+ * дают однокритериальные оптимумы, которые сразу попадают во фронт.
+ *
+ * Метки хранятся в примитивных массивах; при превышении MAX_LABELS поиск
+ * останавливается и возвращает найденную часть фронта (оптимумы в ней всегда есть)
+ * с признаком усечения
+ */
+public class ParetoSearch {
+    // Предел числа меток одного поиска
+    static final int MAX_LABELS = 1 << 20;
+
+    private ParetoSearch() {
+    }
+
+    /**
+     * Маршруты фронта в виде последовательностей рёбер; truncated - поиск остановлен
+     * на MAX_LABELS, и часть недоминируемых маршрутов может отсутствовать
+     */
+    public record Result(int[][] paths, boolean truncated) {
+    }
+
+    /**
+     * Маршруты Парето-фронта от source до target.
+     * Пустой массив маршрутов, если target недостижим
+     */
+    public static Result paretoFront(CompactGraph graph, int source, int target, QueueType queueType) {
+        if (source == target) {
+            return new Result(new int[][] {new int[0]}, false);
+        }
+
+        Criteria[] criteria = Criteria.values();
+        SearchWorkspace[] bounds = new SearchWorkspace[criteria.length];
+        SearchWorkspace lists = null;
+        try {
+            Front front = new Front();
+            int[] radius = new int[criteria.length];
+            for (Criteria c : criteria) {
+                SearchWorkspace workspace = SearchWorkspace.acquire(graph);
+                bounds[c.ordinal()] = workspace;
+                int[] path = reverseSearch(graph, workspace, source, target, c, queueType);
+                if (path == null) {
+                    return new Result(new int[0][], false);
+                }
+                radius[c.ordinal()] = workspace.distance(source);
+                front.add(totals(graph, path), path);
+            }
+
+            lists = SearchWorkspace.acquire(graph);
+            boolean truncated = search(graph, source, target, new Bounds(bounds, radius), lists, front);
+            return new Result(front.paths(), truncated);
+        } finally {
+            for (SearchWorkspace workspace : bounds) {
+                if (workspace != null) {
+                    workspace.release();
+                }
+            }
+            if (lists != null) {
+                lists.release();
+            }
+        }
+    }
+
+    /**
+     * Суммы трёх весов маршрута в порядке констант Criteria
+     */
+    static int[] totals(CompactGraph graph, int[] path) {
+        int[] totals = new int[Criteria.values().length];
+        for (int edge : path) {
+            for (Criteria c : Criteria.values()) {
+                totals[c.ordinal()] += graph.weight(edge, c);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Поиск меток. В lists для каждого города хранится начало списка его живых меток
+     * (поле предшественника пространства поиска). Возвращает true, если поиск остановлен на MAX_LABELS
+     */
+    private static boolean search(CompactGraph graph, int source, int target, Bounds bounds,
+                               SearchWorkspace lists, Front front) {
+        Labels labels = new Labels();
+        LabelHeap heap = new LabelHeap(labels);
+        int root = labels.add(source, 0, 0, 0, -1, -1);
+        lists.update(source, 0, root);
+        heap.push(root);
+
+        while (!heap.isEmpty()) {
+            int label = heap.pop();
+            if (labels.dead[label]) {
+                continue;
+            }
+            int node = labels.node[label];
+            int length = labels.length[label];
+            int time = labels.time[label];
+            int cost = labels.cost[label];
+
+            // Фронт мог пополниться после добавления метки
+            if (front.dominates(length + bounds.lower(0, node), time + bounds.lower(1, node),
+                    cost + bounds.lower(2, node))) {
+                continue;
+            }
+            if (node == target) {
+                front.add(new int[] {length, time, cost}, labels.path(graph, label));
+                continue;
+            }
+
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int neighbor = graph.target(edge);
+                int newLength = length + graph.weight(edge, Criteria.LENGTH);
+                int newTime = time + graph.weight(edge, Criteria.TIME);
+                int newCost = cost + graph.weight(edge, Criteria.COST);
+
+                if (front.dominates(newLength + bounds.lower(0, neighbor), newTime + bounds.lower(1, neighbor),
+                        newCost + bounds.lower(2, neighbor))) {
+                    continue;
+                }
+                if (!insertAtNode(labels, lists, neighbor, newLength, newTime, newCost)) {
+                    continue;
+                }
+                if (labels.size == MAX_LABELS) {
+                    return true;
+                }
+
+                int created = labels.add(neighbor, newLength, newTime, newCost, label, edge);
+                labels.next[created] = lists.predecessor(neighbor);
+                lists.update(neighbor, 0, created);
+                heap.push(created);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Проверка доминирования в списке меток города. Возвращает false, если новую
+     * метку доминирует (или совпадает с ней) существующая; иначе убирает из списка
+     * метки, которые доминирует новая
+     */
+    private static boolean insertAtNode(Labels labels, SearchWorkspace lists, int node,
+                                        int length, int time, int cost) {
+        int previous = -1;
+        for (int label = lists.predecessor(node); label >= 0; ) {
+            int following = labels.next[label];
+            if (labels.length[label] <= length && labels.time[label] <= time && labels.cost[label] <= cost) {
+                return false;
+            }
+            if (length <= labels.length[label] && time <= labels.time[label] && cost <= labels.cost[label]) {
+                labels.dead[label] = true;
+                if (previous < 0) {
+                    lists.update(node, 0, following);
+                } else {
+                    labels.next[previous] = following;
+                }
+            } else {
+                previous = label;
+            }
+            label = following;
+        }
+        return true;
+    }
+
+    /**
+     * Обратный однокритериальный поиск от target до извлечения source.
+     * Возвращает путь source -> target или null, если source недостижим
+     */
+    private static int[] reverseSearch(CompactGraph graph, SearchWorkspace workspace, int source, int target,
+                                       Criteria criteria, QueueType queueType) {
+        NodeQueue queue = workspace.queue(graph, criteria, queueType);
+        workspace.update(target, 0, -1);
+        queue.push(target, 0);
+        while (!queue.isEmpty()) {
+            int node = queue.pop();
+            if (node == source) {
+                break;
+            }
+            int distance = workspace.distance(node);
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int neighbor = graph.target(edge);
+                int newDistance = distance + graph.weight(edge, criteria);
+                if (newDistance < workspace.distance(neighbor)) {
+                    workspace.update(neighbor, newDistance, edge);
+                    queue.push(neighbor, newDistance);
+                }
+            }
+        }
+
+        int[] reversed = workspace.path(graph, target, source);
+        if (reversed == null) {
+            return null;
+        }
+        // Рёбра target -> source берутся в обратном направлении
+        int[] path = new int[reversed.length];
+        for (int i = 0; i < reversed.length; i++) {
+            path[i] = graph.twin(reversed[reversed.length - 1 - i]);
+        }
+        return path;
+    }
+
+    /**
+     * Нижние оценки расстояния до цели по каждому критерию.
+     * Для города, не обработанного обратным поиском, точное расстояние не меньше радиуса,
+     * а временное расстояние в очереди не меньше радиуса, поэтому минимум - верная оценка
+     */
+    private record Bounds(SearchWorkspace[] workspaces, int[] radius) {
+        int lower(int criteria, int node) {
+            return Math.min(workspaces[criteria].distance(node), radius[criteria]);
+        }
+    }
+
+    /**
+     * Найденные маршруты до цели: векторы критериев и рёбра
+     */
+    private static final class Front {
+        private final List<int[]> vectors = new ArrayList<>();
+        private final List<int[]> paths = new ArrayList<>();
+
+        void add(int[] vector, int[] path) {
+            vectors.add(vector);
+            paths.add(path);
+        }
+
+        /**
+         * Есть ли маршрут не хуже заданного вектора по всем критериям
+         */
+        boolean dominates(int length, int time, int cost) {
+            for (int[] vector : vectors) {
+                if (vector[0] <= length && vector[1] <= time && vector[2] <= cost) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Недоминируемые маршруты с различными векторами.
+         * Однокритериальный оптимум может оказаться слабо доминируемым другим маршрутом
+         */
+        int[][] paths() {
+            List<int[]> result = new ArrayList<>();
+            for (int i = 0; i < vectors.size(); i++) {
+                int[] candidate = vectors.get(i);
+                boolean keep = true;
+                for (int j = 0; j < vectors.size() && keep; j++) {
+                    int[] other = vectors.get(j);
+                    boolean noWorse = other[0] <= candidate[0] && other[1] <= candidate[1] && other[2] <= candidate[2];
+                    boolean equal = Arrays.equals(other, candidate);
+                    // Из одинаковых векторов остаётся первый
+                    keep = !(noWorse && (!equal || j < i));
+                }
+                if (keep) {
+                    result.add(paths.get(i));
+                }
+            }
+            return result.toArray(new int[0][]);
+        }
+    }
+
+    /**
+     * Метки в примитивных массивах: город, три значения критериев,
+     * родительская метка, ребро и следующая метка того же города
+     */
+    private static final class Labels {
+        int[] node = new int[1024];
+        int[] length = new int[1024];
+        int[] time = new int[1024];
+        int[] cost = new int[1024];
+        int[] parent = new int[1024];
+        int[] edge = new int[1024];
+        int[] next = new int[1024];
+        boolean[] dead = new boolean[1024];
+        int size;
+
+        int add(int node, int length, int time, int cost, int parent, int edge) {
+            if (size == this.node.length) {
+                int capacity = Math.min(MAX_LABELS, size * 2);
+                this.node = Arrays.copyOf(this.node, capacity);
+                this.length = Arrays.copyOf(this.length, capacity);
+                this.time = Arrays.copyOf(this.time, capacity);
+                this.cost = Arrays.copyOf(this.cost, capacity);
+                this.parent = Arrays.copyOf(this.parent, capacity);
+                this.edge = Arrays.copyOf(this.edge, capacity);
+                this.next = Arrays.copyOf(this.next, capacity);
+                this.dead = Arrays.copyOf(this.dead, capacity);
+            }
+            int label = size++;
+            this.node[label] = node;
+            this.length[label] = length;
+            this.time[label] = time;
+            this.cost[label] = cost;
+            this.parent[label] = parent;
+            this.edge[label] = edge;
+            this.next[label] = -1;
+            return label;
+        }
+
+        /**
+         * Рёбра маршрута метки по цепочке родителей
+         */
+        int[] path(CompactGraph graph, int label) {
+            int hops = 0;
+            for (int current = label; parent[current] >= 0; current = parent[current]) {
+                hops++;
+            }
+            int[] edges = new int[hops];
+            for (int current = label; parent[current] >= 0; current = parent[current]) {
+                edges[--hops] = edge[current];
+            }
+            return edges;
+        }
+
+        /**
+         * Лексикографическое сравнение векторов (длина, время, стоимость)
+         */
+        boolean less(int a, int b) {
+            if (length[a] != length[b]) {
+                return length[a] < length[b];
+            }
+            if (time[a] != time[b]) {
+                return time[a] < time[b];
+            }
+            return cost[a] < cost[b];
+        }
+    }
+
+    /**
+     * Двоичная куча номеров меток в лексикографическом порядке их векторов
+     */
+    private static final class LabelHeap {
+        private final Labels labels;
+        private int[] heap = new int[1024];
+        private int size;
+
+        LabelHeap(Labels labels) {
+            this.labels = labels;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int label) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int position = size++;
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (!labels.less(label, heap[parent])) {
+                    break;
+                }
+                heap[position] = heap[parent];
+                position = parent;
+            }
+            heap[position] = label;
+        }
+
+        int pop() {
+            int top = heap[0];
+            int last = heap[--size];
+            int position = 0;
+            while (true) {
+                int child = position * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && labels.less(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!labels.less(heap[child], last)) {
+                    break;
+                }
+                heap[position] = heap[child];
+                position = child;
+            }
+            if (size > 0) {
+                heap[position] = last;
+            }
+            return top;
+        }
+    }
+}
@@ -44,7 +44,12 @@ public class Parser {
                 switch (mode) {
                     case CITIES -> parseCity(line);
                     case ROADS -> parseRoad(line);
-                    case REQUESTS -> parseRequest(line);
+                    case REQUESTS -> {
+                        Request request = parseRequest(line);
+                        if (request != null) {
+                            requests.add(request);
+                        }
+                    }
                     default -> {}
                 }
             }
@@ -125,15 +130,16 @@ public class Parser {
     }
     
     /**
-     * Парсинг строки с запросом
+     * Парсинг строки с запросом.
+     * Возвращает null, если строка некорректна (ошибка выводится в stderr)
      */
-    private void parseRequest(String line) {
+    static Request parseRequest(String line) {
         try {
             // Формат: "Город1 -> Город2 | (Приоритеты)"
             String[] parts = line.split("\\|");
             if (parts.length != 2) {
                 System.err.println("Некорректный формат запроса: " + line);
-                return;
+                return null;
             }
             
             String citiesPart = parts[0].trim();
@@ -143,7 +149,7 @@ public class Parser {
             String[] cities = citiesPart.split("->");
             if (cities.length != 2) {
                 System.err.println("Некорректные города в запросе: " + line);
-                return;
+                return null;
             }
             
             String fromCity = cities[0].trim();
@@ -155,24 +161,64 @@ public class Parser {
             List<Criteria> priorities = new ArrayList<>();
             
             for (String token : priorityTokens) {
-                String trimmedToken = token.trim();
-                switch (trimmedToken) {
-                    case "Д" -> priorities.add(Criteria.LENGTH);
-                    case "В" -> priorities.add(Criteria.TIME);
-                    case "С" -> priorities.add(Criteria.COST);
-                    default -> System.err.println("Неизвестный приоритет: " + trimmedToken);
+                Criteria criteria = parsePriority(token.trim());
+                if (criteria != null) {
+                    priorities.add(criteria);
+                } else {
+                    System.err.println("Неизвестный приоритет: " + token.trim());
                 }
             }
             
             if (priorities.size() == 3) {
-                requests.add(new Request(fromCity, toCity, priorities));
-            } else {
-                System.err.println("Не все приоритеты указаны в запросе: " + line);
+                return new Request(fromCity, toCity, priorities);
             }
+            System.err.println("Не все приоритеты указаны в запросе: " + line);
             
         } catch (Exception e) {
             System.err.println("Ошибка при обработке запроса: " + line + " - " + e.getMessage());
         }
+        return null;
+    }
+    
+    /**
+     * Критерий по обозначению приоритета (Д, В, С) или null для неизвестного обозначения
+     */
+    static Criteria parsePriority(String token) {
+        return switch (token) {
+            case "Д" -> Criteria.LENGTH;
+            case "В" -> Criteria.TIME;
+            case "С" -> Criteria.COST;
+            default -> null;
+        };
+    }
+    
+    /**
+     * Чтение только секции [REQUESTS]; строки городов и дорог не разбираются.
+     * Используется, когда граф загружен из снимка
+     */
+    public List<Request> parseRequests() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String line;
+            boolean inRequests = false;
+            
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                
+                if (line.equals("[CITIES]") || line.equals("[ROADS]")) {
+                    inRequests = false;
+                } else if (line.equals("[REQUESTS]")) {
+                    inRequests = true;
+                } else if (inRequests) {
+                    Request request = parseRequest(line);
+                    if (request != null) {
+                        requests.add(request);
+                    }
+                }
+            }
+        }
+        
+        return getRequests();
     }
     
     public List<Request> getRequests() {
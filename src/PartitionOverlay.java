@@ -0,0 +1,458 @@
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Многоуровневый оверлей в духе CRP (Customizable Route Planning) над GraphPartition.
+ *
+ * Разбиение не зависит от весов и строится один раз. Настройка (customize) для критерия
+ * пересчитывает только клики ячеек - расстояния внутри ячейки между всеми парами её
+ * граничных городов: снизу вверх по уровням, ячейки одного уровня параллельно.
+ * Клика ячейки нижнего уровня считается поиском по исходным рёбрам внутри ячейки,
+ * клика ячейки уровня l - поиском по оверлею уровня l - 1 (клики подъячеек и рёбра между ними).
+ * После изменения весов достаточно заново настроить изменившийся критерий.
+ *
+ * Запрос - двунаправленный алгоритм Дейкстры по оверлею: из города v поиск обходит
+ * исходные рёбра, если v в одной ячейке нижнего уровня с source или target, иначе - клику
+ * ячейки самого верхнего уровня, где v не в ячейке source и target, и рёбра, выходящие из неё.
+ * Рёбра клик в найденном пути раскрываются тем же поиском внутри ячейки, рекурсивно по уровням.
+ *
+ * Объект неизменяем: настройка возвращает новый оверлей, разделяющий с исходным
+ * разбиение и клики остальных критериев
+ */
+public class PartitionOverlay {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final Criteria[] CRITERIA = Criteria.values();
+
+    private final GraphPartition partition;
+    private final CompactGraph graph;
+    // Граф, по весам которого настроен каждый критерий
+    private final CompactGraph[] customized;
+    // Начало клики ячейки в массиве весов уровня: cliqueStarts[уровень][ячейка]
+    private final int[][] cliqueStarts;
+    // Веса клик: cliques[критерий][уровень][cliqueStart + i * k + j], k - число граничных городов ячейки
+    private final int[][][] cliques;
+
+    private PartitionOverlay(GraphPartition partition, CompactGraph graph, CompactGraph[] customized,
+                             int[][] cliqueStarts, int[][][] cliques) {
+        this.partition = partition;
+        this.graph = graph;
+        this.customized = customized;
+        this.cliqueStarts = cliqueStarts;
+        this.cliques = cliques;
+    }
+
+    /**
+     * Разбиение графа и настройка всех критериев
+     */
+    public static PartitionOverlay build(CompactGraph graph) {
+        return build(GraphPartition.build(graph), graph);
+    }
+
+    /**
+     * Настройка всех критериев над готовым разбиением для графа с той же структурой
+     */
+    public static PartitionOverlay build(GraphPartition partition, CompactGraph graph) {
+        if (!partition.matchesTopology(graph)) {
+            throw new IllegalArgumentException("Структура графа не совпадает с разбиением");
+        }
+        int levels = partition.levelCount();
+        int[][] cliqueStarts = new int[levels][];
+        for (int level = 0; level < levels; level++) {
+            int cells = partition.cellCount(level);
+            cliqueStarts[level] = new int[cells + 1];
+            for (int cell = 0; cell < cells; cell++) {
+                int k = partition.boundaryEnd(level, cell) - partition.boundaryStart(level, cell);
+                cliqueStarts[level][cell + 1] = cliqueStarts[level][cell] + k * k;
+            }
+        }
+
+        PartitionOverlay overlay = new PartitionOverlay(partition, graph, new CompactGraph[CRITERIA.length],
+            cliqueStarts, new int[CRITERIA.length][][]);
+        for (Criteria criteria : CRITERIA) {
+            overlay.cliques[criteria.ordinal()] = overlay.customizeCliques(graph, criteria);
+            overlay.customized[criteria.ordinal()] = graph;
+        }
+        return overlay;
+    }
+
+    /**
+     * Новая настройка одного критерия по весам графа weights (та же структура рёбер).
+     * Разбиение и клики остальных критериев переиспользуются
+     */
+    public PartitionOverlay customize(CompactGraph weights, Criteria criteria) {
+        if (!partition.matchesTopology(weights)) {
+            throw new IllegalArgumentException("Структура графа не совпадает с разбиением");
+        }
+        int[][][] updated = cliques.clone();
+        CompactGraph[] graphs = customized.clone();
+        PartitionOverlay overlay = new PartitionOverlay(partition, weights, graphs, cliqueStarts, updated);
+        updated[criteria.ordinal()] = overlay.customizeCliques(weights, criteria);
+        graphs[criteria.ordinal()] = weights;
+        return overlay;
+    }
+
+    /**
+     * Настройка изменившихся критериев по весам графа weights. Критерии вне changed считаются
+     * не изменившимися: если они были настроены по последнему графу оверлея, настройка переходит к weights
+     */
+    public PartitionOverlay customize(CompactGraph weights, Set<Criteria> changed) {
+        if (!partition.matchesTopology(weights)) {
+            throw new IllegalArgumentException("Структура графа не совпадает с разбиением");
+        }
+        int[][][] updated = cliques.clone();
+        CompactGraph[] graphs = customized.clone();
+        PartitionOverlay overlay = new PartitionOverlay(partition, weights, graphs, cliqueStarts, updated);
+        for (Criteria criteria : CRITERIA) {
+            int c = criteria.ordinal();
+            if (changed.contains(criteria)) {
+                updated[c] = overlay.customizeCliques(weights, criteria);
+                graphs[c] = weights;
+            } else if (customized[c] == graph) {
+                graphs[c] = weights;
+            }
+        }
+        return overlay;
+    }
+
+    /**
+     * Граф, по весам которого оверлей настроен последним; запросы идут по его рёбрам
+     */
+    CompactGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Настроен ли критерий по весам именно этого графа
+     */
+    boolean isCustomized(CompactGraph weights, Criteria criteria) {
+        return weights == graph && customized[criteria.ordinal()] == weights;
+    }
+
+    public GraphPartition partition() {
+        return partition;
+    }
+
+    /**
+     * Пересчёт клик критерия: уровни снизу вверх, ячейки уровня параллельно
+     */
+    private int[][] customizeCliques(CompactGraph weights, Criteria criteria) {
+        int levels = partition.levelCount();
+        int[][] levelCliques = new int[levels][];
+        for (int level = 0; level < levels; level++) {
+            levelCliques[level] = new int[cliqueStarts[level][partition.cellCount(level)]];
+        }
+        // Поиск внутри ячейки читает клики нижних уровней из этого же массива
+        int[][][] view = cliques.clone();
+        view[criteria.ordinal()] = levelCliques;
+
+        for (int level = 0; level < levels; level++) {
+            int current = level;
+            IntStream.range(0, partition.cellCount(level)).parallel()
+                .forEach(cell -> customizeCell(weights, criteria, view, current, cell));
+        }
+        return levelCliques;
+    }
+
+    /**
+     * Клика одной ячейки: поиск из каждого граничного города до всех остальных
+     */
+    private void customizeCell(CompactGraph weights, Criteria criteria, int[][][] view, int level, int cell) {
+        int start = partition.boundaryStart(level, cell);
+        int k = partition.boundaryEnd(level, cell) - start;
+        int[] clique = view[criteria.ordinal()][level];
+        int base = cliqueStarts[level][cell];
+
+        for (int i = 0; i < k; i++) {
+            SearchWorkspace workspace = SearchWorkspace.acquire(weights);
+            try {
+                for (int j = 0; j < k; j++) {
+                    workspace.markTarget(partition.boundaryNode(level, start + j));
+                }
+                cellSearch(weights, criteria, view, workspace, level, cell, partition.boundaryNode(level, start + i), k);
+                for (int j = 0; j < k; j++) {
+                    clique[base + i * k + j] = workspace.distance(partition.boundaryNode(level, start + j));
+                }
+            } finally {
+                workspace.release();
+            }
+        }
+    }
+
+    /**
+     * Поиск кратчайшего пути от source до target по оверлею.
+     * Возвращает последовательность исходных рёбер или null, если путь не существует
+     */
+    public int[] shortestPath(int source, int target, Criteria criteria, SearchStats stats) {
+        if (source == target) {
+            return new int[0];
+        }
+        Query query = new Query(source, target, criteria);
+        try {
+            return query.run(stats);
+        } finally {
+            query.release();
+        }
+    }
+
+    /**
+     * Двунаправленный алгоритм Дейкстры по оверлею запроса (как BidirectionalSearch).
+     * Уровень выхода из города симметричен по source и target, а клики и рёбра
+     * двусторонние, поэтому обратный поиск обходит те же дуги оверлея
+     */
+    private final class Query {
+        private final int source;
+        private final int target;
+        private final Criteria criteria;
+        private final int[][] levelCliques;
+        private final SearchWorkspace[] workspaces;
+        private final NodeQueue[] queues;
+        private int best = UNREACHABLE;
+        private int meeting = -1;
+        private long relaxed;
+        private int pushes;
+
+        Query(int source, int target, Criteria criteria) {
+            this.source = source;
+            this.target = target;
+            this.criteria = criteria;
+            this.levelCliques = cliques[criteria.ordinal()];
+            this.workspaces = new SearchWorkspace[] {SearchWorkspace.acquire(graph), SearchWorkspace.acquire(graph)};
+            this.queues = new NodeQueue[] {
+                workspaces[0].queue(graph, criteria, QueueType.DARY_HEAP),
+                workspaces[1].queue(graph, criteria, QueueType.DARY_HEAP)
+            };
+        }
+
+        int[] run(SearchStats stats) {
+            workspaces[0].update(source, 0, -1);
+            workspaces[1].update(target, 0, -1);
+            queues[0].push(source, 0);
+            queues[1].push(target, 0);
+            pushes = 2;
+            int[] lastKeys = new int[2];
+            int pops = 0;
+            int settled = 0;
+            int peak = 0;
+
+            while (!queues[0].isEmpty() && !queues[1].isEmpty()) {
+                int side = queues[0].size() <= queues[1].size() ? 0 : 1;
+                peak = Math.max(peak, queues[0].size() + queues[1].size());
+                int node = queues[side].pop();
+                int distance = workspaces[side].distance(node);
+                pops++;
+                if (best != UNREACHABLE && (long) distance + lastKeys[1 - side] >= best) {
+                    break;
+                }
+                lastKeys[side] = distance;
+                settled++;
+                expand(side, node, distance);
+            }
+
+            if (stats != null) {
+                stats.add(settled, relaxed, pushes, pops, peak);
+            }
+            if (meeting < 0) {
+                return null;
+            }
+
+            // Обратный поиск раскрывается как путь target -> meeting и разворачивается по встречным рёбрам
+            IntUnaryOperator levelOf = node -> queryLevel(node, source, target);
+            int[] forward = unpack(workspaces[0], criteria, source, meeting, levelOf);
+            int[] backward = unpack(workspaces[1], criteria, target, meeting, levelOf);
+            int[] edges = Arrays.copyOf(forward, forward.length + backward.length);
+            for (int i = 0; i < backward.length; i++) {
+                edges[forward.length + i] = graph.twin(backward[backward.length - 1 - i]);
+            }
+            return edges;
+        }
+
+        /**
+         * Обход дуг оверлея из города: исходные рёбра в ячейках нижнего уровня source и target,
+         * иначе клика ячейки уровня выхода и рёбра, выходящие из неё
+         */
+        private void expand(int side, int node, int distance) {
+            int level = queryLevel(node, source, target);
+            if (level < 0) {
+                for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                    relax(side, graph.target(edge), distance + graph.weight(edge, criteria), edge);
+                }
+                return;
+            }
+
+            int cell = partition.cell(level, node);
+            int start = partition.boundaryStart(level, cell);
+            int k = partition.boundaryEnd(level, cell) - start;
+            int row = cliqueStarts[level][cell] + partition.boundaryIndex(level, node) * k;
+            for (int j = 0; j < k; j++) {
+                int weight = levelCliques[level][row + j];
+                int neighbor = partition.boundaryNode(level, start + j);
+                if (weight != UNREACHABLE && neighbor != node) {
+                    relax(side, neighbor, distance + weight, encodeClique(node));
+                }
+            }
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int neighbor = graph.target(edge);
+                if (partition.cell(level, neighbor) != cell) {
+                    relax(side, neighbor, distance + graph.weight(edge, criteria), edge);
+                }
+            }
+        }
+
+        private void relax(int side, int neighbor, int newDistance, int predecessor) {
+            relaxed++;
+            if (PartitionOverlay.relax(workspaces[side], queues[side], neighbor, newDistance, predecessor) == 0) {
+                return;
+            }
+            pushes++;
+            // Проверка точки встречи с другой стороной
+            int otherDistance = workspaces[1 - side].distance(neighbor);
+            if (otherDistance != UNREACHABLE && newDistance + otherDistance < best) {
+                best = newDistance + otherDistance;
+                meeting = neighbor;
+            }
+        }
+
+        void release() {
+            workspaces[0].release();
+            workspaces[1].release();
+        }
+    }
+
+    /**
+     * Уровень оверлея, по которому поиск выходит из города: самый верхний уровень,
+     * где город не в одной ячейке ни с source, ни с target; -1 - исходные рёбра
+     */
+    private int queryLevel(int node, int source, int target) {
+        for (int level = partition.levelCount() - 1; level >= 0; level--) {
+            int cell = partition.cell(level, node);
+            if (cell != partition.cell(level, source) && cell != partition.cell(level, target)) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Поиск внутри ячейки cell уровня level по оверлею уровня level - 1
+     * (на нижнем уровне - по исходным рёбрам) до извлечения targets отмеченных целей
+     */
+    private void cellSearch(CompactGraph weights, Criteria criteria, int[][][] view, SearchWorkspace workspace,
+                            int level, int cell, int source, int targets) {
+        NodeQueue queue = workspace.queue(weights, criteria, QueueType.DARY_HEAP);
+        int[][] levelCliques = view[criteria.ordinal()];
+        int remaining = targets;
+        workspace.update(source, 0, -1);
+        queue.push(source, 0);
+
+        while (!queue.isEmpty()) {
+            int node = queue.pop();
+            if (workspace.isTarget(node) && --remaining == 0) {
+                break;
+            }
+            int distance = workspace.distance(node);
+            int sublevel = level - 1;
+
+            if (sublevel >= 0) {
+                int subcell = partition.cell(sublevel, node);
+                int start = partition.boundaryStart(sublevel, subcell);
+                int k = partition.boundaryEnd(sublevel, subcell) - start;
+                int row = cliqueStarts[sublevel][subcell] + partition.boundaryIndex(sublevel, node) * k;
+                for (int j = 0; j < k; j++) {
+                    int weight = levelCliques[sublevel][row + j];
+                    int neighbor = partition.boundaryNode(sublevel, start + j);
+                    if (weight != UNREACHABLE && neighbor != node) {
+                        relax(workspace, queue, neighbor, distance + weight, encodeClique(node));
+                    }
+                }
+            }
+            for (int edge = weights.edgeStart(node), end = weights.edgeEnd(node); edge < end; edge++) {
+                int neighbor = weights.target(edge);
+                boolean inside = partition.cell(level, neighbor) == cell;
+                boolean crossesSubcell = sublevel < 0 || partition.cell(sublevel, neighbor) != partition.cell(sublevel, node);
+                if (inside && crossesSubcell) {
+                    relax(workspace, queue, neighbor, distance + weights.weight(edge, criteria), edge);
+                }
+            }
+        }
+    }
+
+    /**
+     * Раскрытие пути source -> target по предшественникам: рёбра клик заменяются
+     * путями внутри их ячеек. levelOf - уровень клики, по которой поиск вышел из города
+     */
+    private int[] unpack(SearchWorkspace workspace, Criteria criteria, int source, int target,
+                         IntUnaryOperator levelOf) {
+        IntList reversed = new IntList();
+        for (int node = target; node != source; ) {
+            int predecessor = workspace.predecessor(node);
+            if (predecessor >= 0) {
+                reversed.add(predecessor);
+                node = graph.source(predecessor);
+                continue;
+            }
+            int from = decodeClique(predecessor);
+            int[] inner = unpackClique(criteria, levelOf.applyAsInt(from), from, node);
+            for (int i = inner.length - 1; i >= 0; i--) {
+                reversed.add(inner[i]);
+            }
+            node = from;
+        }
+
+        int[] path = new int[reversed.size];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = reversed.values[reversed.size - 1 - i];
+        }
+        return path;
+    }
+
+    /**
+     * Путь по исходным рёбрам для ребра клики from -> to ячейки уровня level
+     */
+    private int[] unpackClique(Criteria criteria, int level, int from, int to) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph);
+        try {
+            workspace.markTarget(to);
+            cellSearch(graph, criteria, cliques, workspace, level, partition.cell(level, from), from, 1);
+            return unpack(workspace, criteria, from, to, node -> level - 1);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    private static int relax(SearchWorkspace workspace, NodeQueue queue, int neighbor, int newDistance, int predecessor) {
+        if (newDistance < workspace.distance(neighbor)) {
+            workspace.update(neighbor, newDistance, predecessor);
+            queue.push(neighbor, newDistance);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Предшественник по ребру клики кодируется отрицательным числом меньше -1
+     */
+    private static int encodeClique(int from) {
+        return -2 - from;
+    }
+
+    private static int decodeClique(int predecessor) {
+        return -2 - predecessor;
+    }
+
+    /**
+     * Растущий массив int
+     */
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
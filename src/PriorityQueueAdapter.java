@@ -0,0 +1,63 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Очередь на основе стандартной PriorityQueue с ленивым удалением.
+ * Каждое улучшение добавляет новый элемент, устаревшие пропускаются при извлечении.
+ * Оставлена как эталон для сравнения с индексированными очередями
+ */
+public class PriorityQueueAdapter implements NodeQueue {
+    private final PriorityQueue<Long> queue = new PriorityQueue<>();
+    private final int[] keys;
+    private int size;
+
+    public PriorityQueueAdapter(int capacity) {
+        this.keys = new int[capacity];
+        Arrays.fill(keys, -1);
+    }
+
+    @Override
+    public void push(int node, int key) {
+        if (keys[node] >= 0 && keys[node] <= key) {
+            return;
+        }
+        if (keys[node] < 0) {
+            size++;
+        }
+        keys[node] = key;
+        queue.offer(((long) key << 32) | node);
+    }
+
+    @Override
+    public int pop() {
+        while (true) {
+            long entry = queue.poll();
+            int node = (int) entry;
+            // Пропускаем устаревшие элементы
+            if (keys[node] == (int) (entry >>> 32)) {
+                keys[node] = -1;
+                size--;
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (long entry : queue) {
+            keys[(int) entry] = -1;
+        }
+        queue.clear();
+        size = 0;
+    }
+}
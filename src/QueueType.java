@@ -0,0 +1,28 @@
+/**
+ * Тип очереди с приоритетом для алгоритмов поиска
+ */
+public enum QueueType {
+    PRIORITY_QUEUE,  // Стандартная PriorityQueue с ленивым удалением
+    DARY_HEAP,       // Индексированная 4-арная куча с уменьшением ключа
+    BUCKET_QUEUE;    // Очередь корзин Дайла для небольших целых весов
+
+    private static final int HEAP_ARITY = 4;
+
+    /**
+     * Создание очереди для поиска по графу с заданным критерием
+     */
+    public NodeQueue create(CompactGraph graph, Criteria criteria) {
+        return create(graph.cityCount(), graph.maxWeight(criteria));
+    }
+
+    /**
+     * Создание очереди для графа из cityCount городов с максимальным весом ребра maxWeight
+     */
+    NodeQueue create(int cityCount, int maxWeight) {
+        return switch (this) {
+            case PRIORITY_QUEUE -> new PriorityQueueAdapter(cityCount);
+            case DARY_HEAP -> new DaryHeap(cityCount, HEAP_ARITY);
+            case BUCKET_QUEUE -> new BucketQueue(cityCount, maxWeight);
+        };
+    }
+}
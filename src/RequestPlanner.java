@@ -0,0 +1,61 @@
+import java.util.*;
+
+/**
+ * Планировщик запросов: группирует запросы с общим городом отправления,
+ * чтобы для каждой группы и критерия выполнялся один поиск до всех
+ * городов назначения группы вместо отдельного поиска на каждый запрос
+ */
+public class RequestPlanner {
+    private RequestPlanner() {
+    }
+
+    /**
+     * Группа запросов с общим городом отправления
+     */
+    public static class SourceGroup {
+        private final String fromCity;
+        private final List<String> toCities = new ArrayList<>();
+        private final Map<String, Integer> targetIndex = new HashMap<>();
+
+        SourceGroup(String fromCity) {
+            this.fromCity = fromCity;
+        }
+
+        public String getFromCity() {
+            return fromCity;
+        }
+
+        /**
+         * Различные города назначения группы
+         */
+        public List<String> getToCities() {
+            return Collections.unmodifiableList(toCities);
+        }
+
+        /**
+         * Позиция города назначения в списке getToCities()
+         */
+        public int indexOf(String toCity) {
+            return targetIndex.get(toCity);
+        }
+
+        private void addTarget(String toCity) {
+            if (!targetIndex.containsKey(toCity)) {
+                targetIndex.put(toCity, toCities.size());
+                toCities.add(toCity);
+            }
+        }
+    }
+
+    /**
+     * Группировка запросов по городу отправления в порядке первого появления
+     */
+    public static Map<String, SourceGroup> plan(List<Request> requests) {
+        Map<String, SourceGroup> groups = new LinkedHashMap<>();
+        for (Request request : requests) {
+            groups.computeIfAbsent(request.getFromCity(), SourceGroup::new)
+                .addTarget(request.getToCity());
+        }
+        return groups;
+    }
+}
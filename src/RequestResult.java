@@ -0,0 +1,40 @@
+/**
+ * Результат обработки запроса: три оптимальных маршрута и компромиссный
+ */
+public class RequestResult {
+    private final Request request;
+    private final Route shortestRoute;
+    private final Route fastestRoute;
+    private final Route cheapestRoute;
+    private final Route compromiseRoute;
+
+    public RequestResult(Request request, Route shortestRoute, Route fastestRoute,
+                         Route cheapestRoute, Route compromiseRoute) {
+        this.request = request;
+        this.shortestRoute = shortestRoute;
+        this.fastestRoute = fastestRoute;
+        this.cheapestRoute = cheapestRoute;
+        this.compromiseRoute = compromiseRoute;
+    }
+
+    // Геттеры
+    public Request getRequest() {
+        return request;
+    }
+
+    public Route getShortestRoute() {
+        return shortestRoute;
+    }
+
+    public Route getFastestRoute() {
+        return fastestRoute;
+    }
+
+    public Route getCheapestRoute() {
+        return cheapestRoute;
+    }
+
+    public Route getCompromiseRoute() {
+        return compromiseRoute;
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Ленивое чтение запросов из файла или стандартного ввода.
+ * Строки разбираются по одной при обращении к итератору, поэтому в памяти
+ * находится только следующий запрос. Строки до первого заголовка секции
+ * считаются запросами (поток без секций), секции [CITIES] и [ROADS]
+ * пропускаются без разбора
+ */
+public class RequestStream implements Iterator<Request>, Closeable {
+    private final BufferedReader reader;
+    private boolean inRequests = true;
+    private Request next;
+
+    public RequestStream(Reader reader) {
+        this.reader = new BufferedReader(reader);
+    }
+
+    /**
+     * Открытие файла запросов; "-" означает стандартный ввод
+     */
+    public static RequestStream open(String source) throws IOException {
+        if (source.equals("-")) {
+            return new RequestStream(new InputStreamReader(System.in));
+        }
+        return new RequestStream(new FileReader(source));
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                if (line.equals("[CITIES]") || line.equals("[ROADS]")) {
+                    inRequests = false;
+                } else if (line.equals("[REQUESTS]")) {
+                    inRequests = true;
+                } else if (inRequests) {
+                    next = Parser.parseRequest(line);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Request next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Request request = next;
+        next = null;
+        return request;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -10,18 +10,60 @@ public class ResultWriter {
         this.writer = new BufferedWriter(new FileWriter(filename));
     }
     
+    /**
+     * Запись в произвольный поток символов (например, в ответ RouteServer)
+     */
+    public ResultWriter(Writer writer) {
+        this.writer = new BufferedWriter(writer);
+    }
+    
     /**
      * Запись результата маршрута с указанием типа
      */
     public void writeRouteResult(String routeType, Route route) throws IOException {
+        writer.write(formatRoute(routeType, route));
+        writer.newLine();
+    }
+    
+    /**
+     * Строка результата маршрута без перевода строки
+     */
+    static String formatRoute(String routeType, Route route) {
         if (route.isEmpty()) {
-            writer.write(routeType + ": Маршрут не найден");
-        } else {
-            String cities = String.join(" -> ", route.getCityNames());
-            writer.write(routeType + ": " + cities + " | Д=" + route.getTotalLength() + 
-                        ", В=" + route.getTotalTime() + ", С=" + route.getTotalCost());
+            return routeType + ": Маршрут не найден";
         }
-        writer.newLine();
+        StringBuilder line = new StringBuilder(routeType).append(": ");
+        for (int i = 0; i < route.getCityCount(); i++) {
+            if (i > 0) {
+                line.append(" -> ");
+            }
+            line.append(route.getCityName(i));
+        }
+        return line.append(" | Д=").append(route.getTotalLength())
+            .append(", В=").append(route.getTotalTime())
+            .append(", С=").append(route.getTotalCost()).toString();
+    }
+    
+    /**
+     * Тип маршрута, оптимального по критерию, в выходном формате
+     */
+    static String routeType(Criteria criteria) {
+        return switch (criteria) {
+            case LENGTH -> "ДЛИНА";
+            case TIME -> "ВРЕМЯ";
+            case COST -> "СТОИМОСТЬ";
+        };
+    }
+    
+    /**
+     * Запись всех маршрутов по запросу с разделяющей пустой строкой
+     */
+    public void writeRequestResult(RequestResult result) throws IOException {
+        writeRouteResult(routeType(Criteria.LENGTH), result.getShortestRoute());
+        writeRouteResult(routeType(Criteria.TIME), result.getFastestRoute());
+        writeRouteResult(routeType(Criteria.COST), result.getCheapestRoute());
+        writeRouteResult("КОМПРОМИСС", result.getCompromiseRoute());
+        writeEmptyLine();
     }
     
     /**
@@ -31,6 +73,13 @@ public class ResultWriter {
         writer.newLine();
     }
     
+    /**
+     * Сброс буфера в файл, чтобы записанные результаты сразу стали видны читателю
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+    
     /**
      * Закрытие потока записи
      */
@@ -3,55 +3,157 @@ import java.util.List;
 
 /**
  * Класс, представляющий маршрут между городами
+ *
+ * Маршрут, найденный поиском (CompactGraph.createRoute), хранится компактно: снимок графа
+ * и массив рёбер пути, города пути - концы рёбер. Суммы по критериям считаются один раз
+ * при создании, объекты RoadSegment и названия городов создаются только при обращении к ним.
+ * Маршрут из списка сегментов хранит сам список
  */
 public class Route {
+    // Компактная форма: снимок графа и рёбра пути (null для маршрута из списка сегментов)
+    private final CompactGraph graph;
+    private final int[] edges;
     private final List<RoadSegment> segments;
-    private final List<String> cityNames;
+    private final int totalLength;
+    private final int totalTime;
+    private final int totalCost;
     
     public Route(List<RoadSegment> segments) {
+        this.graph = null;
+        this.edges = null;
         this.segments = segments;
-        this.cityNames = extractCityNames(segments);
+        int length = 0;
+        int time = 0;
+        int cost = 0;
+        for (RoadSegment segment : segments) {
+            length += segment.getLength();
+            time += segment.getTime();
+            cost += segment.getCost();
+        }
+        this.totalLength = length;
+        this.totalTime = time;
+        this.totalCost = cost;
     }
     
     /**
-     * Извлечь названия городов из сегментов маршрута
+     * Компактный маршрут по рёбрам edges графа graph (массив не копируется)
      */
-    private List<String> extractCityNames(List<RoadSegment> segments) {
-        List<String> names = new ArrayList<>();
-        if (segments.isEmpty()) {
-            return names;
-        }
-        
-        // Добавляем первый город
-        names.add(segments.get(0).getFromCity());
-        
-        // Добавляем все промежуточные города
-        for (RoadSegment segment : segments) {
-            names.add(segment.getToCity());
+    Route(CompactGraph graph, int[] edges) {
+        this.graph = graph;
+        this.edges = edges;
+        this.segments = null;
+        int length = 0;
+        int time = 0;
+        int cost = 0;
+        for (int edge : edges) {
+            length += graph.weight(edge, Criteria.LENGTH);
+            time += graph.weight(edge, Criteria.TIME);
+            cost += graph.weight(edge, Criteria.COST);
         }
-        
-        return names;
+        this.totalLength = length;
+        this.totalTime = time;
+        this.totalCost = cost;
+    }
+    
+    private Route(CompactGraph graph, int[] edges, int totalLength, int totalTime, int totalCost) {
+        this.graph = graph;
+        this.edges = edges;
+        this.segments = null;
+        this.totalLength = totalLength;
+        this.totalTime = totalTime;
+        this.totalCost = totalCost;
     }
     
     // Геттеры для общих параметров маршрута
     public int getTotalLength() {
-        return segments.stream().mapToInt(RoadSegment::getLength).sum();
+        return totalLength;
     }
     
     public int getTotalTime() {
-        return segments.stream().mapToInt(RoadSegment::getTime).sum();
+        return totalTime;
     }
     
     public int getTotalCost() {
-        return segments.stream().mapToInt(RoadSegment::getCost).sum();
+        return totalCost;
     }
     
+    /**
+     * Новый список названий городов маршрута (пустой для пустого маршрута)
+     */
     public List<String> getCityNames() {
-        return new ArrayList<>(cityNames);
+        List<String> names = new ArrayList<>(getCityCount());
+        for (int i = 0; i < getCityCount(); i++) {
+            names.add(getCityName(i));
+        }
+        return names;
+    }
+    
+    /**
+     * Число городов маршрута: на один больше числа сегментов, 0 для пустого маршрута
+     */
+    public int getCityCount() {
+        return isEmpty() ? 0 : getSegmentCount() + 1;
+    }
+    
+    public String getCityName(int index) {
+        if (graph != null) {
+            return graph.name(node(index));
+        }
+        return index == 0 ? segments.get(0).getFromCity() : segments.get(index - 1).getToCity();
+    }
+    
+    public int getSegmentCount() {
+        return edges != null ? edges.length : segments.size();
+    }
+    
+    /**
+     * Сегмент маршрута; в компактной форме создаётся при каждом обращении
+     */
+    public RoadSegment getSegment(int index) {
+        if (graph == null) {
+            return segments.get(index);
+        }
+        int edge = edges[index];
+        return new RoadSegment(graph.name(graph.source(edge)), graph.name(graph.target(edge)),
+            graph.weight(edge, Criteria.LENGTH), graph.weight(edge, Criteria.TIME), graph.weight(edge, Criteria.COST));
+    }
+    
+    /**
+     * Снимок графа компактного маршрута или null для маршрута из списка сегментов
+     */
+    CompactGraph graph() {
+        return graph;
+    }
+    
+    /**
+     * Индекс города маршрута в снимке графа (только для компактной формы)
+     */
+    int node(int index) {
+        return index == 0 ? graph.source(edges[0]) : graph.target(edges[index - 1]);
+    }
+    
+    /**
+     * Тот же маршрут в обратном направлении (все дороги двусторонние)
+     */
+    public Route reversed() {
+        if (graph != null) {
+            int[] reversedEdges = new int[edges.length];
+            for (int i = 0; i < edges.length; i++) {
+                reversedEdges[i] = graph.twin(edges[edges.length - 1 - i]);
+            }
+            return new Route(graph, reversedEdges, totalLength, totalTime, totalCost);
+        }
+        List<RoadSegment> reversedSegments = new ArrayList<>(segments.size());
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            RoadSegment segment = segments.get(i);
+            reversedSegments.add(new RoadSegment(segment.getToCity(), segment.getFromCity(),
+                segment.getLength(), segment.getTime(), segment.getCost()));
+        }
+        return new Route(reversedSegments);
     }
     
     public boolean isEmpty() {
-        return segments.isEmpty();
+        return getSegmentCount() == 0;
     }
     
     @Override
@@ -61,9 +163,9 @@ public class Route {
         }
         
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < cityNames.size(); i++) {
-            sb.append(cityNames.get(i));
-            if (i < cityNames.size() - 1) {
+        for (int i = 0; i < getCityCount(); i++) {
+            sb.append(getCityName(i));
+            if (i < getCityCount() - 1) {
                 sb.append(" -> ");
             }
         }
@@ -74,4 +176,4 @@ public class Route {
         
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный по памяти кэш маршрутов с вытеснением давно не использованных (LRU).
+ * Ключ - (город, город, критерий) в каноническом порядке названий: дороги двусторонние,
+ * поэтому маршрут B -> A получается разворотом сохранённого маршрута A -> B.
+ * Компромиссные маршруты хранятся под списком приоритетов вместо критерия.
+ * Каждая запись помечена версией графа; при изменении графа кэш очищается,
+ * и устаревшие маршруты никогда не возвращаются.
+ */
+public class RouteCache {
+    // Приблизительный размер записи без сегментов и одного сегмента маршрута:
+    // ребро компактного маршрута или объект RoadSegment
+    private static final long ENTRY_BYTES = 200;
+    private static final long EDGE_BYTES = 4;
+    private static final long SEGMENT_BYTES = 48;
+    // Ключи однокритериальных маршрутов - списки из одного критерия
+    private static final List<List<Criteria>> SINGLE = Arrays.stream(Criteria.values()).map(List::of).toList();
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Route> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long version;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public RouteCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Маршрут из кэша или null, если его нет или он построен для другой версии графа
+     */
+    public Route get(String from, String to, Criteria criteria, long graphVersion) {
+        return get(from, to, SINGLE.get(criteria.ordinal()), graphVersion);
+    }
+
+    /**
+     * Компромиссный маршрут по приоритетам из кэша или null
+     */
+    public Route get(String from, String to, List<Criteria> priorities, long graphVersion) {
+        boolean reversed = from.compareTo(to) > 0;
+        Key key = reversed ? new Key(to, from, priorities) : new Key(from, to, priorities);
+        Route route;
+        synchronized (this) {
+            if (!checkVersion(graphVersion)) {
+                misses.increment();
+                return null;
+            }
+            route = entries.get(key);
+        }
+
+        if (route == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return reversed ? route.reversed() : route;
+    }
+
+    /**
+     * Сохранение маршрута, построенного для указанной версии графа
+     */
+    public void put(String from, String to, Criteria criteria, Route route, long graphVersion) {
+        put(from, to, SINGLE.get(criteria.ordinal()), route, graphVersion);
+    }
+
+    /**
+     * Сохранение компромиссного маршрута по приоритетам
+     */
+    public void put(String from, String to, List<Criteria> priorities, Route route, long graphVersion) {
+        boolean reversed = from.compareTo(to) > 0;
+        List<Criteria> order = List.copyOf(priorities);
+        Key key = reversed ? new Key(to, from, order) : new Key(from, to, order);
+        Route canonical = reversed ? route.reversed() : route;
+        long bytes = estimateBytes(canonical);
+        if (bytes > maxBytes) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!checkVersion(graphVersion)) {
+                return;
+            }
+            Route previous = entries.put(key, canonical);
+            if (previous != null) {
+                usedBytes -= estimateBytes(previous);
+            }
+            usedBytes += bytes;
+
+            // Вытеснение давно не использованных записей
+            Iterator<Route> iterator = entries.values().iterator();
+            while (usedBytes > maxBytes && iterator.hasNext()) {
+                usedBytes -= estimateBytes(iterator.next());
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Сверка версии графа: более новая версия очищает кэш,
+     * результаты для более старой версии не используются и не сохраняются
+     */
+    private boolean checkVersion(long graphVersion) {
+        if (graphVersion > version) {
+            if (!entries.isEmpty()) {
+                invalidations.add(entries.size());
+            }
+            entries.clear();
+            usedBytes = 0;
+            version = graphVersion;
+        }
+        return graphVersion == version;
+    }
+
+    private static long estimateBytes(Route route) {
+        long segmentBytes = route.graph() != null ? EDGE_BYTES : SEGMENT_BYTES;
+        return ENTRY_BYTES + segmentBytes * route.getSegmentCount();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RouteCache{попаданий=" + getHits() + ", промахов=" + getMisses()
+            + ", вытеснено=" + getEvictions() + ", сброшено=" + getInvalidations()
+            + ", записей=" + size() + ", байт=" + getUsedBytes() + "}";
+    }
+
+    /**
+     * Канонический ключ: from <= to в лексикографическом порядке
+     */
+    private record Key(String from, String to, List<Criteria> priorities) {
+    }
+}
@@ -0,0 +1,364 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Долго работающий HTTP-сервис запросов маршрутов (встроенный в JDK HttpServer).
+ * Граф загружается один раз, ответы - в том же текстовом формате, что и output.txt (ResultWriter).
+ *
+ * GET  /route?from=А&to=Б&criteria=LENGTH|TIME|COST - маршрут по одному критерию
+ * GET  /compromise?from=А&to=Б&priorities=Д,В,С     - компромиссный маршрут
+ * GET  /request?from=А&to=Б&priorities=Д,В,С        - все маршруты запроса, как в output.txt
+ * GET  /pareto?from=А&to=Б                           - все Парето-оптимальные маршруты (ParetoSearch)
+ * POST /batch - строки запросов в формате input.txt, результаты отдаются потоком по мере готовности
+ * GET  /health, /metrics - состояние сервиса и метрики в формате Prometheus
+ *
+ * Одинаковые запросы, пришедшие во время поиска, не ищутся повторно: они ждут
+ * результат уже идущего поиска (ключ включает версию графа).
+ * Аутентификации нет, поэтому по умолчанию сервис слушает только локальный адрес
+ */
+public class RouteServer implements Closeable {
+    private static final String TEXT = "text/plain; charset=UTF-8";
+    private static final String[] ENDPOINTS = {"route", "compromise", "request", "pareto", "batch", "health", "metrics"};
+
+    private final Graph graph;
+    private final SearchMode mode;
+    private final BatchSolver solver;
+    private final SearchMetrics metrics;
+    private final ConcurrentHashMap<QueryKey, CompletableFuture<Route>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requestCounts = new HashMap<>();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+    private HttpServer server;
+
+    /**
+     * solver обрабатывает /batch; metrics - метрики поиска графа для /metrics (может быть null)
+     */
+    public RouteServer(Graph graph, SearchMode mode, BatchSolver solver, SearchMetrics metrics) {
+        this.graph = graph;
+        this.mode = mode;
+        this.solver = solver;
+        this.metrics = metrics;
+        for (String endpoint : ENDPOINTS) {
+            requestCounts.put(endpoint, new LongAdder());
+        }
+    }
+
+    /**
+     * Запуск на локальном адресе (loopback) и порту port (0 - любой свободный).
+     * Обработчики выполняются на handlers, например BatchSolver.newExecutor(threads * 4)
+     */
+    public void start(int port, Executor handlers) throws IOException {
+        start(InetAddress.getLoopbackAddress(), port, handlers);
+    }
+
+    /**
+     * Запуск на адресе address; другие адреса, кроме локального, задаются только явно
+     */
+    public synchronized void start(InetAddress address, int port, Executor handlers) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Сервер уже запущен");
+        }
+        HttpServer created = HttpServer.create(new InetSocketAddress(address, port), 0);
+        created.createContext("/route", handler("route", "GET", this::route));
+        created.createContext("/compromise", handler("compromise", "GET", this::compromise));
+        created.createContext("/request", handler("request", "GET", this::request));
+        created.createContext("/pareto", handler("pareto", "GET", this::pareto));
+        created.createContext("/batch", handler("batch", "POST", this::batch));
+        created.createContext("/health", handler("health", "GET", this::health));
+        created.createContext("/metrics", handler("metrics", "GET", this::metrics));
+        created.setExecutor(handlers);
+        created.start();
+        server = created;
+    }
+
+    /**
+     * Порт, на котором принимаются запросы
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("Сервер не запущен");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Остановка: новые соединения не принимаются, начатые обмены получают секунду на завершение
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(1);
+            server = null;
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        String from = required(query, "from");
+        String to = required(query, "to");
+        Criteria criteria = criteria(required(query, "criteria"));
+        Route route = findRoute(from, to, criteria);
+        respond(exchange, ResultWriter.formatRoute(ResultWriter.routeType(criteria), route) + "\n");
+    }
+
+    private void compromise(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        Request request = new Request(required(query, "from"), required(query, "to"), priorities(query));
+        respond(exchange, ResultWriter.formatRoute("КОМПРОМИСС", findCompromise(request)) + "\n");
+    }
+
+    private void request(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        Request request = new Request(required(query, "from"), required(query, "to"), priorities(query));
+        RequestResult result = new RequestResult(request,
+            findRoute(request.getFromCity(), request.getToCity(), Criteria.LENGTH),
+            findRoute(request.getFromCity(), request.getToCity(), Criteria.TIME),
+            findRoute(request.getFromCity(), request.getToCity(), Criteria.COST),
+            findCompromise(request));
+        StringWriter out = new StringWriter();
+        ResultWriter writer = new ResultWriter(out);
+        writer.writeRequestResult(result);
+        writer.flush();
+        respond(exchange, out.toString());
+    }
+
+    /**
+     * Парето-фронт: маршруты, не улучшаемые ни по одному критерию без ухудшения другого.
+     * Для усечённого фронта (предел числа меток поиска) добавляется строка
+     * "ФРОНТ УСЕЧЁН". Сжатый граф фронт не поддерживает (503)
+     */
+    private void pareto(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        ParetoFront front = graph.findParetoRoutes(required(query, "from"), required(query, "to"));
+        StringBuilder out = new StringBuilder();
+        for (Route route : front.getRoutes()) {
+            out.append(ResultWriter.formatRoute("ПАРЕТО", route)).append('\n');
+        }
+        if (front.isTruncated()) {
+            out.append("ФРОНТ УСЕЧЁН\n");
+        }
+        respond(exchange, out.toString());
+    }
+
+    /**
+     * Пакет: тело разбирается лениво (RequestStream), ответ пишется частями по мере готовности.
+     * Некорректные строки и запросы с неизвестными городами пропускаются
+     */
+    private void batch(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(200, 0);
+        try (RequestStream requests = new RequestStream(
+                 new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+             Writer body = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            ResultWriter writer = new ResultWriter(body);
+            solver.stream(requests, writer::writeRequestResult, 256);
+            writer.flush();
+        }
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        respond(exchange, "OK\n"
+            + "version=" + graph.getVersion() + "\n"
+            + "cities=" + graph.cityCount() + "\n"
+            + "edges=" + graph.edgeCount() + "\n"
+            + "mode=" + mode + (graph.isCompressed() ? " (сжатый граф)" : "") + "\n"
+            + "active=" + active.get() + "\n");
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP route_server_requests_total Запросы к сервису по адресам\n");
+        out.append("# TYPE route_server_requests_total counter\n");
+        for (String endpoint : ENDPOINTS) {
+            out.append("route_server_requests_total{endpoint=\"").append(endpoint).append("\"} ")
+                .append(requestCounts.get(endpoint).sum()).append('\n');
+        }
+        appendMetric(out, "route_server_errors_total", "counter", "Запросы, завершённые ошибкой", errors.sum());
+        appendMetric(out, "route_server_coalesced_total", "counter",
+            "Запросы, получившие результат уже идущего одинакового поиска", coalesced.sum());
+        appendMetric(out, "route_server_active_requests", "gauge", "Обрабатываемые запросы", active.get());
+        appendMetric(out, "route_graph_version", "gauge", "Версия графа", graph.getVersion());
+        if (metrics != null) {
+            out.append(metrics.toPrometheus());
+        }
+        respond(exchange, out.toString());
+    }
+
+    private static void appendMetric(StringBuilder out, String name, String type, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private Route findRoute(String from, String to, Criteria criteria) {
+        QueryKey key = new QueryKey(graph.getVersion(), from, to, criteria.name());
+        return coalesce(key, () -> graph.findShortestRoute(from, to, criteria, mode));
+    }
+
+    private Route findCompromise(Request request) {
+        List<Criteria> priorities = request.getPriorities();
+        QueryKey key = new QueryKey(graph.getVersion(), request.getFromCity(), request.getToCity(),
+            priorities.toString());
+        return coalesce(key, () -> graph.findCompromiseRoute(request.getFromCity(), request.getToCity(), priorities));
+    }
+
+    /**
+     * Первый из одинаковых запросов выполняет поиск в своём потоке, остальные ждут его результат.
+     * Запись удаляется по завершении поиска, поэтому результаты здесь не кэшируются (для этого RouteCache)
+     */
+    private Route coalesce(QueryKey key, Supplier<Route> search) {
+        CompletableFuture<Route> own = new CompletableFuture<>();
+        CompletableFuture<Route> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            Route route = search.get();
+            own.complete(route);
+            return route;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Обёртка обработчика: проверка метода, счётчики и перевод исключений в коды ответа
+     */
+    private HttpHandler handler(String endpoint, String method, ExchangeHandler handler) {
+        LongAdder count = requestCounts.get(endpoint);
+        return exchange -> {
+            count.increment();
+            active.incrementAndGet();
+            try {
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    error(exchange, 405, "Метод не поддерживается: " + exchange.getRequestMethod());
+                    return;
+                }
+                handler.handle(exchange);
+            } catch (IllegalArgumentException e) {
+                error(exchange, 400, e.getMessage());
+            } catch (IllegalStateException e) {
+                error(exchange, 503, e.getMessage());
+            } catch (RuntimeException e) {
+                error(exchange, 500, String.valueOf(e));
+            } finally {
+                exchange.close();
+                active.decrementAndGet();
+            }
+        };
+    }
+
+    private void error(HttpExchange exchange, int status, String message) throws IOException {
+        errors.increment();
+        // Ответ на /batch уже начат: код изменить нельзя, соединение просто закрывается
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        respond(exchange, status, message + "\n");
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        respond(exchange, 200, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Параметры строки запроса (значения в UTF-8)
+     */
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return parameters;
+        }
+        for (String pair : raw.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                               URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Не указан параметр " + name);
+        }
+        return value.trim();
+    }
+
+    private static Criteria criteria(String value) {
+        try {
+            return Criteria.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Criteria criteria = Parser.parsePriority(value);
+            if (criteria == null) {
+                throw new IllegalArgumentException("Неизвестный критерий: " + value);
+            }
+            return criteria;
+        }
+    }
+
+    /**
+     * Приоритеты в формате input.txt: "Д,В,С" (все три критерия)
+     */
+    private static List<Criteria> priorities(Map<String, String> query) {
+        List<Criteria> priorities = new ArrayList<>();
+        for (String token : required(query, "priorities").split(",")) {
+            Criteria criteria = criteria(token.trim());
+            if (priorities.contains(criteria)) {
+                throw new IllegalArgumentException("Повторяющийся приоритет: " + token.trim());
+            }
+            priorities.add(criteria);
+        }
+        if (priorities.size() != Criteria.values().length) {
+            throw new IllegalArgumentException("Должны быть указаны все приоритеты: " + query.get("priorities"));
+        }
+        return priorities;
+    }
+
+    @FunctionalInterface
+    private interface ExchangeHandler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Ключ одинаковых запросов: версия графа, города и критерий или приоритеты
+     */
+    private record QueryKey(long version, String from, String to, String criteria) {
+    }
+}
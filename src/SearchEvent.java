@@ -0,0 +1,40 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR для одного поиска маршрута.
+ * Создаётся только при включённой инструментации (SearchMetrics), а записывается,
+ * только если идёт запись JFR с включённым событием routes.Search
+ */
+@Name("routes.Search")
+@Label("Поиск маршрута")
+@Category("Routes")
+@Description("Работа одного поиска: обработанные города, рёбра и операции очереди")
+public class SearchEvent extends Event {
+    @Label("Критерий или COMPROMISE")
+    String criteria;
+
+    @Label("Режим поиска")
+    String mode;
+
+    @Label("Целей")
+    int targets;
+
+    @Label("Обработано городов")
+    long settled;
+
+    @Label("Просмотрено рёбер")
+    long relaxed;
+
+    @Label("Добавлений в очередь")
+    long pushes;
+
+    @Label("Извлечений из очереди")
+    long pops;
+
+    @Label("Пик очереди")
+    int peakQueueSize;
+}
@@ -0,0 +1,206 @@
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сводная инструментация поисков маршрутов: гистограммы задержек и счётчики
+ * работы по каждому критерию и отдельно для поисков компромиссного маршрута
+ * (метка COMPROMISE), события JFR (SearchEvent) и выгрузка в текстовом
+ * формате Prometheus. Подключается через Graph.setSearchMetrics; пока она не
+ * подключена, поиски не создают счётчиков и не читают часы.
+ * Все методы потокобезопасны
+ */
+public class SearchMetrics {
+    // Границы корзин гистограммы Prometheus, наносекунды
+    private static final long[] BUCKET_BOUNDS = {
+        10_000, 50_000, 100_000, 500_000, 1_000_000, 5_000_000, 10_000_000,
+        50_000_000, 100_000_000, 500_000_000, 1_000_000_000, 5_000_000_000L
+    };
+    private static final double[] QUANTILES = {50, 90, 99, 99.9};
+    // Метки: критерии в порядке констант Criteria, затем поиск компромиссного маршрута
+    private static final int COMPROMISE = Criteria.values().length;
+    private static final String[] LABELS = labels();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[LABELS.length];
+    private final LongAdder[] searches = newAdders();
+    private final LongAdder[] settled = newAdders();
+    private final LongAdder[] relaxed = newAdders();
+    private final LongAdder[] pushes = newAdders();
+    private final LongAdder[] pops = newAdders();
+    private final AtomicLong[] peakQueueSizes = new AtomicLong[LABELS.length];
+
+    public SearchMetrics() {
+        for (int c = 0; c < latencies.length; c++) {
+            latencies[c] = new LatencyHistogram();
+            peakQueueSizes[c] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Начало поиска: счётчики, отметка времени и начало события JFR
+     */
+    SearchStats begin() {
+        SearchStats stats = new SearchStats();
+        stats.event = new SearchEvent();
+        stats.event.begin();
+        stats.started = System.nanoTime();
+        return stats;
+    }
+
+    /**
+     * Завершение поиска до targets городов: запись в гистограмму, счётчики и JFR
+     */
+    void finish(SearchStats stats, Criteria criteria, SearchMode mode, int targets) {
+        record(stats, criteria.ordinal(), mode, targets);
+    }
+
+    /**
+     * Завершение поиска компромиссного маршрута: учитывается под меткой COMPROMISE,
+     * а не в гистограммах и счётчиках отдельных критериев
+     */
+    void finishCompromise(SearchStats stats) {
+        record(stats, COMPROMISE, SearchMode.DIJKSTRA, 1);
+    }
+
+    private void record(SearchStats stats, int c, SearchMode mode, int targets) {
+        stats.setWallNanos(System.nanoTime() - stats.started);
+        SearchEvent event = stats.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.criteria = LABELS[c];
+            event.mode = mode.name();
+            event.targets = targets;
+            event.settled = stats.getSettled();
+            event.relaxed = stats.getRelaxed();
+            event.pushes = stats.getPushes();
+            event.pops = stats.getPops();
+            event.peakQueueSize = stats.getPeakQueueSize();
+            event.commit();
+        }
+
+        latencies[c].record(stats.getWallNanos());
+        searches[c].increment();
+        settled[c].add(stats.getSettled());
+        relaxed[c].add(stats.getRelaxed());
+        pushes[c].add(stats.getPushes());
+        pops[c].add(stats.getPops());
+        peakQueueSizes[c].accumulateAndGet(stats.getPeakQueueSize(), Math::max);
+    }
+
+    /**
+     * Гистограмма задержек поисков по критерию, наносекунды
+     */
+    public LatencyHistogram latency(Criteria criteria) {
+        return latencies[criteria.ordinal()];
+    }
+
+    /**
+     * Гистограмма задержек поисков компромиссного маршрута, наносекунды
+     */
+    public LatencyHistogram compromiseLatency() {
+        return latencies[COMPROMISE];
+    }
+
+    /**
+     * Выгрузка в текстовом формате Prometheus (exposition format 0.0.4)
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP route_search_duration_seconds Длительность поиска маршрута\n");
+        out.append("# TYPE route_search_duration_seconds histogram\n");
+        for (int c = 0; c < LABELS.length; c++) {
+            LatencyHistogram histogram = latencies[c];
+            String label = "criteria=\"" + LABELS[c] + "\"";
+            for (long bound : BUCKET_BOUNDS) {
+                out.append("route_search_duration_seconds_bucket{").append(label)
+                    .append(",le=\"").append(seconds(bound)).append("\"} ")
+                    .append(histogram.countAtMost(bound)).append('\n');
+            }
+            out.append("route_search_duration_seconds_bucket{").append(label).append(",le=\"+Inf\"} ")
+                .append(histogram.count()).append('\n');
+            out.append("route_search_duration_seconds_sum{").append(label).append("} ")
+                .append(seconds(histogram.sum())).append('\n');
+            out.append("route_search_duration_seconds_count{").append(label).append("} ")
+                .append(histogram.count()).append('\n');
+        }
+
+        out.append("# HELP route_search_latency_seconds Квантили длительности поиска маршрута\n");
+        out.append("# TYPE route_search_latency_seconds summary\n");
+        for (int c = 0; c < LABELS.length; c++) {
+            LatencyHistogram histogram = latencies[c];
+            for (double quantile : QUANTILES) {
+                out.append("route_search_latency_seconds{criteria=\"").append(LABELS[c])
+                    .append("\",quantile=\"").append(fraction(quantile)).append("\"} ")
+                    .append(seconds(histogram.percentile(quantile))).append('\n');
+            }
+            out.append("route_search_latency_seconds_sum{criteria=\"").append(LABELS[c]).append("\"} ")
+                .append(seconds(histogram.sum())).append('\n');
+            out.append("route_search_latency_seconds_count{criteria=\"").append(LABELS[c]).append("\"} ")
+                .append(histogram.count()).append('\n');
+        }
+
+        appendCounter(out, "route_searches_total", "Выполненные поиски", searches);
+        appendCounter(out, "route_search_settled_nodes_total", "Обработанные города", settled);
+        appendCounter(out, "route_search_relaxed_edges_total", "Просмотренные рёбра", relaxed);
+        appendCounter(out, "route_search_queue_pushes_total", "Добавления в очередь", pushes);
+        appendCounter(out, "route_search_queue_pops_total", "Извлечения из очереди", pops);
+
+        out.append("# HELP route_search_peak_queue_size Наибольший размер очереди за всё время\n");
+        out.append("# TYPE route_search_peak_queue_size gauge\n");
+        for (int c = 0; c < LABELS.length; c++) {
+            out.append("route_search_peak_queue_size{criteria=\"").append(LABELS[c]).append("\"} ")
+                .append(peakQueueSizes[c].get()).append('\n');
+        }
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("SearchMetrics{");
+        for (int c = 0; c < LABELS.length; c++) {
+            LatencyHistogram histogram = latencies[c];
+            if (c > 0) {
+                out.append(", ");
+            }
+            out.append(LABELS[c]).append(": поисков=").append(histogram.count())
+                .append(", p50=").append(histogram.percentile(50) / 1000)
+                .append(" мкс, p99=").append(histogram.percentile(99) / 1000)
+                .append(" мкс, max=").append(histogram.max() / 1000).append(" мкс");
+        }
+        return out.append('}').toString();
+    }
+
+    private static void appendCounter(StringBuilder out, String name, String help, LongAdder[] values) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (int c = 0; c < LABELS.length; c++) {
+            out.append(name).append("{criteria=\"").append(LABELS[c]).append("\"} ")
+                .append(values[c].sum()).append('\n');
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+
+    private static String fraction(double percentile) {
+        return BigDecimal.valueOf(percentile).movePointLeft(2).stripTrailingZeros().toPlainString();
+    }
+
+    private static String[] labels() {
+        String[] labels = new String[Criteria.values().length + 1];
+        for (Criteria criteria : Criteria.values()) {
+            labels[criteria.ordinal()] = criteria.name();
+        }
+        labels[COMPROMISE] = "COMPROMISE";
+        return labels;
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[LABELS.length];
+        for (int c = 0; c < adders.length; c++) {
+            adders[c] = new LongAdder();
+        }
+        return adders;
+    }
+}
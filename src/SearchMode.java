@@ -0,0 +1,11 @@
+/**
+ * Режим поиска маршрута между двумя городами
+ */
+public enum SearchMode {
+    DIJKSTRA,       // Однонаправленный алгоритм Дейкстры
+    BIDIRECTIONAL,  // Двунаправленный алгоритм Дейкстры со встречей посередине
+    ALT,            // A* с нижними оценками по ориентирам (требует Graph.prepareLandmarks)
+    CONTRACTION_HIERARCHY, // Иерархии сжатия (требует Graph.prepareContractionHierarchies)
+    DELTA_STEPPING, // Параллельный delta-stepping на пуле ForkJoin
+    PARTITION_OVERLAY // Многоуровневый оверлей ячеек (требует Graph.preparePartitionOverlay)
+}
@@ -0,0 +1,72 @@
+/**
+ * Счётчики работы одного поиска маршрута.
+ * Алгоритмы считают работу в локальных переменных и переносят её сюда
+ * один раз в конце поиска, только если счётчики запрошены (не null),
+ * поэтому без инструментирования поиск не выполняет лишних записей в память
+ */
+public class SearchStats {
+    private long settled;
+    private long relaxed;
+    private long pushes;
+    private long pops;
+    private int peakQueueSize;
+    private long wallNanos;
+
+    // Заполняются SearchMetrics на время поиска
+    SearchEvent event;
+    long started;
+
+    /**
+     * Добавление работы одного прохода поиска; пик очереди - максимум по проходам
+     */
+    void add(long settled, long relaxed, long pushes, long pops, int peakQueueSize) {
+        this.settled += settled;
+        this.relaxed += relaxed;
+        this.pushes += pushes;
+        this.pops += pops;
+        this.peakQueueSize = Math.max(this.peakQueueSize, peakQueueSize);
+    }
+
+    void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    /**
+     * Города, окончательно обработанные поиском
+     */
+    public long getSettled() {
+        return settled;
+    }
+
+    /**
+     * Просмотренные рёбра (попытки релаксации)
+     */
+    public long getRelaxed() {
+        return relaxed;
+    }
+
+    public long getPushes() {
+        return pushes;
+    }
+
+    public long getPops() {
+        return pops;
+    }
+
+    /**
+     * Наибольшее число городов в очереди (для двунаправленных поисков - в обеих очередях)
+     */
+    public int getPeakQueueSize() {
+        return peakQueueSize;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchStats{обработано=" + settled + ", рёбер=" + relaxed + ", добавлений=" + pushes
+            + ", извлечений=" + pops + ", пик очереди=" + peakQueueSize + ", мкс=" + wallNanos / 1000 + "}";
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Переиспользуемое рабочее пространство поиска: расстояния, рёбра-предшественники
+ * и очереди для одного направления поиска.
+ * Значение города действительно, только если его отметка равна текущему поколению,
+ * поэтому сброс перед новым поиском - увеличение поколения за O(1), а стоимость
+ * запроса зависит от исследованной области, а не от размера графа.
+ *
+ * Пространства берутся из общего пула (acquire) и возвращаются в него (release).
+ * Пул, а не ThreadLocal, потому что виртуальный поток живёт одну задачу
+ * и не успел бы переиспользовать своё пространство; в пуле их не больше,
+ * чем одновременно выполняемых поисков
+ */
+public class SearchWorkspace {
+    private static final ConcurrentLinkedDeque<SearchWorkspace> POOL = new ConcurrentLinkedDeque<>();
+
+    private int[] distances = new int[0];
+    private int[] predecessors = new int[0];
+    private int[] stamps = new int[0];
+    private int[] targetStamps = new int[0];
+    private int generation;
+
+    // Очереди по типам; очередь корзин зависит от максимального веса и хранится по критериям
+    private final NodeQueue[] queues = new NodeQueue[QueueType.values().length + Criteria.values().length];
+    private final int[] bucketWeights = new int[Criteria.values().length];
+    private int queueCapacity = -1;
+
+    private SearchWorkspace() {
+    }
+
+    /**
+     * Пространство из пула, готовое к поиску по графу
+     */
+    public static SearchWorkspace acquire(CompactGraph graph) {
+        return acquire(graph.cityCount());
+    }
+
+    /**
+     * Пространство на size элементов - для поисков, хранящих несколько значений на город
+     */
+    static SearchWorkspace acquire(int size) {
+        SearchWorkspace workspace = POOL.pollFirst();
+        if (workspace == null) {
+            workspace = new SearchWorkspace();
+        }
+        workspace.reset(size);
+        return workspace;
+    }
+
+    /**
+     * Возврат в пул; после этого пространство нельзя использовать
+     */
+    public void release() {
+        POOL.offerFirst(this);
+    }
+
+    /**
+     * Расстояние до города или Integer.MAX_VALUE, если город ещё не достигнут
+     */
+    public int distance(int node) {
+        return stamps[node] == generation ? distances[node] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Ребро (или дуга), по которому достигнут город, либо -1
+     */
+    public int predecessor(int node) {
+        return stamps[node] == generation ? predecessors[node] : -1;
+    }
+
+    public void update(int node, int distance, int predecessor) {
+        stamps[node] = generation;
+        distances[node] = distance;
+        predecessors[node] = predecessor;
+    }
+
+    /**
+     * Отметка города как цели текущего поиска
+     */
+    public void markTarget(int node) {
+        targetStamps[node] = generation;
+    }
+
+    public boolean isTarget(int node) {
+        return targetStamps[node] == generation;
+    }
+
+    /**
+     * Пустая очередь заданного типа; создаётся один раз для размера графа
+     */
+    public NodeQueue queue(CompactGraph graph, Criteria criteria, QueueType type) {
+        return queue(graph.cityCount(), graph.maxWeight(criteria), criteria, type);
+    }
+
+    /**
+     * То же для графа, заданного числом городов и максимальным весом по критерию
+     * (представления графа, отличные от CompactGraph)
+     */
+    NodeQueue queue(int cityCount, int maxWeight, Criteria criteria, QueueType type) {
+        if (queueCapacity != cityCount) {
+            Arrays.fill(queues, null);
+            queueCapacity = cityCount;
+        }
+
+        int slot = type.ordinal();
+        if (type == QueueType.BUCKET_QUEUE) {
+            slot = QueueType.values().length + criteria.ordinal();
+            if (queues[slot] != null && bucketWeights[criteria.ordinal()] != maxWeight) {
+                queues[slot] = null;
+            }
+            bucketWeights[criteria.ordinal()] = maxWeight;
+        }
+
+        NodeQueue queue = queues[slot];
+        if (queue == null) {
+            queue = type.create(cityCount, maxWeight);
+            queues[slot] = queue;
+        } else {
+            // Очистка затрагивает только элементы, оставшиеся от прошлого поиска
+            queue.clear();
+        }
+        return queue;
+    }
+
+    /**
+     * Путь source -> target по рёбрам-предшественникам за линейное время.
+     * Возвращает null, если target не достигнут, и пустой путь, если source == target
+     */
+    public int[] path(CompactGraph graph, int source, int target) {
+        if (source != target && predecessor(target) < 0) {
+            return null;
+        }
+
+        // Первый проход - длина пути, второй - заполнение с конца
+        int hops = 0;
+        for (int node = target; node != source; node = graph.source(predecessors[node])) {
+            hops++;
+        }
+        int[] edges = new int[hops];
+        for (int node = target; node != source; node = graph.source(predecessors[node])) {
+            edges[--hops] = predecessors[node];
+        }
+        return edges;
+    }
+
+    /**
+     * Новое поколение; массивы растут только при переходе к большему графу
+     */
+    private void reset(int cityCount) {
+        if (stamps.length < cityCount) {
+            distances = new int[cityCount];
+            predecessors = new int[cityCount];
+            stamps = new int[cityCount];
+            targetStamps = new int[cityCount];
+            generation = 0;
+        }
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            Arrays.fill(targetStamps, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+}
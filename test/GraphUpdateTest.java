@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Graph.apply: новый снимок публикуется целиком, прежний снимок и найденные на нём
+ * маршруты не меняются, ошибочный пакет не меняет граф
+ */
+public class GraphUpdateTest {
+    private static final SearchMode[] MODES = {
+        SearchMode.DIJKSTRA, SearchMode.BIDIRECTIONAL, SearchMode.DELTA_STEPPING, SearchMode.PARTITION_OVERLAY
+    };
+
+    @Test
+    void reweightPublishesNewSnapshotAndKeepsOldOne() {
+        Graph graph = TestNetworks.build(3, List.of(
+            new Road("c0", "c1", 10, 20, 30), new Road("c1", "c2", 10, 20, 30)));
+        CompactGraph before = graph.freeze();
+        long version = graph.getVersion();
+        Route route = graph.findShortestRoute("c0", "c2", Criteria.TIME);
+        int edge = edge(before, "c0", "c1");
+
+        GraphUpdate update = new GraphUpdate();
+        update.setWeight("c1", "c0", Criteria.TIME, 99);
+        assertEquals(version + 1, graph.apply(update));
+        assertEquals(version + 1, graph.getVersion());
+
+        CompactGraph after = graph.freeze();
+        assertNotSame(before, after);
+        assertEquals(20, before.weight(edge, Criteria.TIME));
+        assertEquals(20, before.weight(before.twin(edge), Criteria.TIME));
+        assertEquals(99, after.weight(edge, Criteria.TIME));
+        assertEquals(99, after.weight(after.twin(edge), Criteria.TIME));
+        assertEquals(10, after.weight(edge, Criteria.LENGTH));
+        assertEquals(30, after.weight(edge, Criteria.COST));
+        assertEquals(before.cityCount(), after.cityCount());
+        assertSame(before.nameTable(), after.nameTable());
+
+        // Маршрут, найденный на прежнем снимке, сохраняет свои веса
+        assertEquals(40, route.getTotalTime());
+        assertEquals(119, graph.findShortestRoute("c0", "c2", Criteria.TIME).getTotalTime());
+    }
+
+    @Test
+    void structuralUpdateRebuildsSnapshot() {
+        Graph graph = TestNetworks.build(3, List.of(
+            new Road("c0", "c1", 10, 10, 10), new Road("c1", "c2", 10, 10, 10)));
+        CompactGraph before = graph.freeze();
+
+        GraphUpdate update = new GraphUpdate();
+        update.addCity(new City(100, "новый"));
+        update.addRoad(new Road("новый", "c2", 1, 1, 1));
+        update.closeRoad("c1", "c0");
+        graph.apply(update);
+
+        CompactGraph after = graph.freeze();
+        assertEquals(-1, before.indexOf("новый"));
+        assertEquals(4, before.edgeCount());
+        assertTrue(after.indexOf("новый") >= 0);
+        assertEquals(4, after.edgeCount());
+        assertEquals(List.of("c1", "c2", "новый"), graph.findShortestRoute("c1", "новый", Criteria.LENGTH).getCityNames());
+        assertTrue(graph.findShortestRoute("c0", "c2", Criteria.LENGTH).isEmpty());
+    }
+
+    @Test
+    void failedUpdateLeavesGraphUnchanged() {
+        Graph graph = TestNetworks.build(3, List.of(new Road("c0", "c1", 10, 10, 10)));
+        CompactGraph before = graph.freeze();
+        long version = graph.getVersion();
+
+        GraphUpdate missingRoad = new GraphUpdate();
+        missingRoad.setWeight("c0", "c1", Criteria.TIME, 3);
+        missingRoad.setWeight("c1", "c2", Criteria.TIME, 3);
+        assertThrows(IllegalArgumentException.class, () -> graph.apply(missingRoad));
+
+        GraphUpdate missingCity = new GraphUpdate();
+        missingCity.addRoad(new Road("c0", "нет", 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> graph.apply(missingCity));
+
+        assertEquals(version, graph.getVersion());
+        assertSame(before, graph.freeze());
+        assertEquals(10, graph.findShortestRoute("c0", "c1", Criteria.TIME).getTotalTime());
+        assertEquals(version, graph.apply(new GraphUpdate()));
+    }
+
+    @Test
+    void preparedStructuresBelongToTheirSnapshot() {
+        Random random = new Random(400);
+        List<Road> roads = TestNetworks.randomRoads(random, 20);
+        Graph graph = TestNetworks.build(20, roads);
+        graph.prepareLandmarks(2, LandmarkSelection.FARTHEST);
+        graph.prepareContractionHierarchies();
+        graph.findShortestRoute("c0", "c5", Criteria.LENGTH, SearchMode.ALT);
+
+        GraphUpdate update = new GraphUpdate();
+        update.setWeight(roads.get(0).getFromCity(), roads.get(0).getToCity(), Criteria.LENGTH, 1);
+        graph.apply(update);
+        assertThrows(IllegalStateException.class,
+            () -> graph.findShortestRoute("c0", "c5", Criteria.LENGTH, SearchMode.ALT));
+        assertThrows(IllegalStateException.class,
+            () -> graph.findShortestRoute("c0", "c5", Criteria.LENGTH, SearchMode.CONTRACTION_HIERARCHY));
+
+        graph.prepareLandmarks(2, LandmarkSelection.FARTHEST);
+        graph.prepareContractionHierarchies();
+        for (Criteria criteria : Criteria.values()) {
+            Route expected = graph.findShortestRoute("c0", "c5", criteria);
+            TestNetworks.assertSameRoute(expected, graph.findShortestRoute("c0", "c5", criteria, SearchMode.ALT),
+                criteria, "ALT");
+            TestNetworks.assertSameRoute(expected,
+                graph.findShortestRoute("c0", "c5", criteria, SearchMode.CONTRACTION_HIERARCHY), criteria, "CH");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void randomUpdatesMatchRebuiltGraph(boolean offHeap) {
+        Random random = new Random(offHeap ? 501 : 500);
+        for (int network = 0; network < 10; network++) {
+            int cities = 5 + random.nextInt(60);
+            List<City> cityList = new ArrayList<>();
+            for (int city = 0; city < cities; city++) {
+                cityList.add(new City(city + 1, TestNetworks.name(city)));
+            }
+            List<Road> roads = TestNetworks.randomRoads(random, cities);
+            Graph graph = TestNetworks.build(cities, roads);
+            if (offHeap) {
+                graph.moveOffHeap();
+            }
+            graph.preparePartitionOverlay();
+
+            for (int step = 0; step < 6; step++) {
+                GraphUpdate update = randomUpdate(random, network, step, cityList, roads);
+                if (update.isEmpty()) {
+                    break;
+                }
+                long version = graph.getVersion();
+                CompactGraph before = graph.freeze();
+                assertTrue(graph.apply(update) > version);
+                assertNotSame(before, graph.freeze());
+                assertEquals(offHeap, graph.freeze() instanceof MappedCompactGraph);
+                checkAgainstRebuilt(graph, cityList, roads, random, "шаг " + step);
+            }
+
+            // Дороги, добавленные после изменения весов, строятся по актуальным весам;
+            // addRoad сбрасывает оверлей, он строится заново
+            graph.addRoad(new Road("c0", "c1", 1, 1, 1));
+            roads.add(new Road("c0", "c1", 1, 1, 1));
+            graph.preparePartitionOverlay();
+            checkAgainstRebuilt(graph, cityList, roads, random, "после addRoad");
+        }
+    }
+
+    /**
+     * Случайный пакет: новые веса, новые города с дорогами или перекрытия.
+     * Те же изменения вносятся в списки cities и roads
+     */
+    private static GraphUpdate randomUpdate(Random random, int network, int step, List<City> cities, List<Road> roads) {
+        GraphUpdate update = new GraphUpdate();
+        int kind = random.nextInt(3);
+        int changes = 1 + random.nextInt(10);
+        for (int k = 0; k < changes && !roads.isEmpty(); k++) {
+            Road road = roads.get(random.nextInt(roads.size()));
+            if (kind == 0 || random.nextInt(3) > 0) {
+                Criteria criteria = Criteria.values()[random.nextInt(3)];
+                int weight = 1 + random.nextInt(80);
+                update.setWeight(road.getFromCity(), road.getToCity(), criteria, weight);
+                for (ListIterator<Road> it = roads.listIterator(); it.hasNext(); ) {
+                    Road other = it.next();
+                    if (samePair(road, other)) {
+                        it.set(new Road(other.getFromCity(), other.getToCity(),
+                            criteria == Criteria.LENGTH ? weight : other.getLength(),
+                            criteria == Criteria.TIME ? weight : other.getTime(),
+                            criteria == Criteria.COST ? weight : other.getCost()));
+                    }
+                }
+            } else if (kind == 1) {
+                City city = new City(10_000 + network * 100 + step * 10 + k, "n" + step + "_" + k);
+                Road added = new Road(city.getName(), road.getFromCity(), 5, 5, 5);
+                update.addCity(city);
+                update.addRoad(added);
+                cities.add(city);
+                roads.add(added);
+            } else {
+                update.closeRoad(road.getToCity(), road.getFromCity());
+                roads.removeIf(other -> samePair(road, other));
+            }
+        }
+        return update;
+    }
+
+    private static void checkAgainstRebuilt(Graph graph, List<City> cities, List<Road> roads, Random random,
+                                            String message) {
+        Graph reference = new Graph();
+        for (City city : cities) {
+            reference.addCity(city);
+        }
+        for (Road road : roads) {
+            reference.addRoad(road);
+        }
+        for (int query = 0; query < 15; query++) {
+            String from = cities.get(random.nextInt(cities.size())).getName();
+            String to = cities.get(random.nextInt(cities.size())).getName();
+            for (Criteria criteria : Criteria.values()) {
+                Route expected = reference.findShortestRoute(from, to, criteria);
+                for (SearchMode mode : MODES) {
+                    TestNetworks.assertSameRoute(expected, graph.findShortestRoute(from, to, criteria, mode),
+                        criteria, message + " " + mode + " " + from + " -> " + to);
+                }
+            }
+        }
+    }
+
+    private static boolean samePair(Road a, Road b) {
+        return a.getFromCity().equals(b.getFromCity()) && a.getToCity().equals(b.getToCity())
+            || a.getFromCity().equals(b.getToCity()) && a.getToCity().equals(b.getFromCity());
+    }
+
+    /**
+     * Ребро from -> to снимка
+     */
+    private static int edge(CompactGraph graph, String from, String to) {
+        int source = graph.indexOf(from);
+        int target = graph.indexOf(to);
+        for (int edge = graph.edgeStart(source); edge < graph.edgeEnd(source); edge++) {
+            if (graph.target(edge) == target) {
+                return edge;
+            }
+        }
+        throw new AssertionError("Нет ребра " + from + " -> " + to);
+    }
+}
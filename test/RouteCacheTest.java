@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Кэш маршрутов: версии графа, развороты маршрутов и согласованность с изменениями графа
+ */
+public class RouteCacheTest {
+    private static final List<Criteria> PRIORITIES = List.of(Criteria.COST, Criteria.LENGTH, Criteria.TIME);
+
+    @Test
+    void returnsStoredRouteForSameVersion() {
+        RouteCache cache = new RouteCache(1 << 20);
+        Route route = route("a", "b", "c");
+        cache.put("a", "c", Criteria.LENGTH, route, 1);
+        assertSame(route, cache.get("a", "c", Criteria.LENGTH, 1));
+        assertNull(cache.get("a", "c", Criteria.TIME, 1));
+        assertNull(cache.get("a", "c", PRIORITIES, 1));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void reverseRequestReturnsReversedRoute() {
+        RouteCache cache = new RouteCache(1 << 20);
+        cache.put("c", "a", Criteria.TIME, route("c", "b", "a"), 1);
+
+        Route forward = cache.get("a", "c", Criteria.TIME, 1);
+        assertNotNull(forward);
+        assertEquals(List.of("a", "b", "c"), forward.getCityNames());
+        Route backward = cache.get("c", "a", Criteria.TIME, 1);
+        assertEquals(List.of("c", "b", "a"), backward.getCityNames());
+        assertEquals(forward.getTotalLength(), backward.getTotalLength());
+        assertEquals(forward.getTotalTime(), backward.getTotalTime());
+        assertEquals(forward.getTotalCost(), backward.getTotalCost());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void reversedCompactRouteKeepsTotals() {
+        Random random = new Random(300);
+        Graph graph = TestNetworks.build(30, TestNetworks.randomRoads(random, 30));
+        RouteCache cache = new RouteCache(1 << 20);
+        for (int query = 0; query < 50; query++) {
+            String from = TestNetworks.name(random.nextInt(29));
+            String to = TestNetworks.name(random.nextInt(29));
+            Route route = graph.findShortestRoute(from, to, Criteria.COST);
+            cache.put(from, to, Criteria.COST, route, 1);
+            Route reversed = cache.get(to, from, Criteria.COST, 1);
+            assertEquals(route.getTotalCost(), reversed.getTotalCost());
+            assertEquals(route.getTotalLength(), reversed.getTotalLength());
+            if (!route.isEmpty()) {
+                List<String> names = route.getCityNames();
+                List<String> back = reversed.getCityNames();
+                for (int i = 0; i < names.size(); i++) {
+                    assertEquals(names.get(i), back.get(back.size() - 1 - i));
+                }
+                TestNetworks.assertConnected(reversed, to + " -> " + from);
+            }
+        }
+    }
+
+    @Test
+    void newerVersionClearsCacheAndOlderVersionIsIgnored() {
+        RouteCache cache = new RouteCache(1 << 20);
+        cache.put("a", "c", Criteria.LENGTH, route("a", "b", "c"), 1);
+        cache.put("a", "c", PRIORITIES, route("a", "c"), 1);
+        assertEquals(2, cache.size());
+
+        // Запрос с новой версией очищает кэш
+        assertNull(cache.get("a", "c", Criteria.LENGTH, 2));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getInvalidations());
+
+        // Маршрут старой версии не сохраняется и не возвращается
+        cache.put("a", "c", Criteria.LENGTH, route("a", "b", "c"), 1);
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a", "c", Criteria.LENGTH, 1));
+
+        cache.put("a", "c", Criteria.LENGTH, route("a", "c"), 2);
+        assertEquals(List.of("a", "c"), cache.get("a", "c", Criteria.LENGTH, 2).getCityNames());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWithinLimit() {
+        RouteCache cache = new RouteCache(1000);
+        for (int i = 0; i < 20; i++) {
+            cache.put("a" + i, "b" + i, Criteria.LENGTH, route("a" + i, "b" + i), 1);
+            assertTrue(cache.getUsedBytes() <= 1000);
+        }
+        assertTrue(cache.getEvictions() > 0);
+        assertNotNull(cache.get("a19", "b19", Criteria.LENGTH, 1));
+        assertNull(cache.get("a0", "b0", Criteria.LENGTH, 1));
+    }
+
+    @Test
+    void graphNeverReturnsStaleRoutes() {
+        Graph graph = TestNetworks.build(3, List.of(
+            new Road("c0", "c1", 10, 10, 10), new Road("c1", "c2", 10, 10, 10)));
+        RouteCache cache = new RouteCache(1 << 20);
+        graph.setRouteCache(cache);
+
+        assertEquals(20, graph.findShortestRoute("c0", "c2", Criteria.LENGTH).getTotalLength());
+        Route reversed = graph.findShortestRoute("c2", "c0", Criteria.LENGTH);
+        assertEquals(List.of("c2", "c1", "c0"), reversed.getCityNames());
+        assertEquals(1, cache.getHits());
+
+        // Новая дорога
+        graph.addRoad(new Road("c0", "c2", 5, 50, 5));
+        assertEquals(5, graph.findShortestRoute("c2", "c0", Criteria.LENGTH).getTotalLength());
+        assertEquals(20, graph.findShortestRoute("c0", "c2", Criteria.TIME).getTotalTime());
+        assertEquals(List.of("c0", "c2"), graph.findCompromiseRoute("c0", "c2", PRIORITIES).getCityNames());
+
+        // Новые веса через apply
+        GraphUpdate update = new GraphUpdate();
+        update.setWeights("c0", "c2", 5, 50, 100);
+        graph.apply(update);
+        assertEquals(List.of("c0", "c1", "c2"), graph.findCompromiseRoute("c0", "c2", PRIORITIES).getCityNames());
+        assertEquals(5, graph.findShortestRoute("c0", "c2", Criteria.LENGTH).getTotalLength());
+        assertEquals(20, graph.findShortestRoute("c2", "c0", Criteria.COST).getTotalCost());
+    }
+
+    private static Route route(String... cities) {
+        List<RoadSegment> segments = new ArrayList<>();
+        for (int i = 1; i < cities.length; i++) {
+            segments.add(new RoadSegment(cities[i - 1], cities[i], i, 2 * i, 3 * i));
+        }
+        return new Route(segments);
+    }
+}
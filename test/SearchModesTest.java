@@ -0,0 +1,259 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Все режимы и виды поиска на случайных сетях сверяются с обычным поиском Дейкстры
+ */
+public class SearchModesTest {
+    private static final int NETWORKS = 25;
+    private static final int QUERIES = 20;
+
+    @ParameterizedTest
+    @EnumSource(SearchMode.class)
+    void everyModeMatchesDijkstra(SearchMode mode) {
+        Random random = new Random(mode.ordinal());
+        for (int network = 0; network < NETWORKS; network++) {
+            int cities = 3 + random.nextInt(60);
+            Graph graph = TestNetworks.build(cities, TestNetworks.randomRoads(random, cities));
+            prepare(graph, mode, network);
+            for (int query = 0; query < QUERIES; query++) {
+                String from = TestNetworks.name(random.nextInt(cities));
+                String to = TestNetworks.name(random.nextInt(cities));
+                for (Criteria criteria : Criteria.values()) {
+                    Route expected = graph.findShortestRoute(from, to, criteria);
+                    TestNetworks.assertSameRoute(expected, graph.findShortestRoute(from, to, criteria, mode),
+                        criteria, mode + " " + from + " -> " + to);
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(QueueType.class)
+    void everyQueueMatchesPriorityQueue(QueueType queueType) {
+        Random random = new Random(queueType.ordinal());
+        for (int network = 0; network < NETWORKS; network++) {
+            int cities = 3 + random.nextInt(60);
+            List<Road> roads = TestNetworks.randomRoads(random, cities);
+            Graph reference = TestNetworks.build(cities, roads);
+            Graph graph = TestNetworks.build(cities, roads);
+            graph.setQueueType(queueType);
+            for (int query = 0; query < QUERIES; query++) {
+                String from = TestNetworks.name(random.nextInt(cities));
+                String to = TestNetworks.name(random.nextInt(cities));
+                for (Criteria criteria : Criteria.values()) {
+                    for (SearchMode mode : new SearchMode[] {SearchMode.DIJKSTRA, SearchMode.BIDIRECTIONAL}) {
+                        TestNetworks.assertSameRoute(reference.findShortestRoute(from, to, criteria),
+                            graph.findShortestRoute(from, to, criteria, mode), criteria, queueType + " " + mode);
+                    }
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = SearchMode.class, names = {"DIJKSTRA", "DELTA_STEPPING"})
+    void multiTargetSearchMatchesSingleSearches(SearchMode mode) {
+        Random random = new Random(10 + mode.ordinal());
+        for (int network = 0; network < NETWORKS; network++) {
+            int cities = 3 + random.nextInt(60);
+            Graph graph = TestNetworks.build(cities, TestNetworks.randomRoads(random, cities));
+            String from = TestNetworks.name(random.nextInt(cities));
+            List<String> targets = randomCities(random, cities, 1 + random.nextInt(8));
+            for (Criteria criteria : Criteria.values()) {
+                List<Route> routes = graph.findShortestRoutes(from, targets, criteria, mode);
+                assertEquals(targets.size(), routes.size());
+                for (int i = 0; i < targets.size(); i++) {
+                    TestNetworks.assertSameRoute(graph.findShortestRoute(from, targets.get(i), criteria),
+                        routes.get(i), criteria, mode + " " + from + " -> " + targets.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void fusedSearchMatchesSeparateSearches() {
+        Random random = new Random(20);
+        for (int network = 0; network < NETWORKS; network++) {
+            int cities = 3 + random.nextInt(60);
+            Graph graph = TestNetworks.build(cities, TestNetworks.randomRoads(random, cities));
+            String from = TestNetworks.name(random.nextInt(cities));
+            List<String> targets = randomCities(random, cities, 1 + random.nextInt(8));
+            List<List<Route>> fused = graph.findRoutesByAllCriteria(from, targets);
+            for (Criteria criteria : Criteria.values()) {
+                for (int i = 0; i < targets.size(); i++) {
+                    TestNetworks.assertSameRoute(graph.findShortestRoute(from, targets.get(i), criteria),
+                        fused.get(criteria.ordinal()).get(i), criteria, "fused " + from + " -> " + targets.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void batchSolverMatchesSingleSearches() throws IOException {
+        Random random = new Random(30);
+        ExecutorService executor = BatchSolver.newExecutor(4);
+        try {
+            for (int network = 0; network < 10; network++) {
+                int cities = 3 + random.nextInt(60);
+                Graph graph = TestNetworks.build(cities, TestNetworks.randomRoads(random, cities));
+                List<Request> requests = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    requests.add(new Request(TestNetworks.name(random.nextInt(cities)),
+                        TestNetworks.name(random.nextInt(cities)), randomPriorities(random)));
+                }
+                for (boolean fused : new boolean[] {false, true}) {
+                    BatchSolver solver = new BatchSolver(graph, executor, SearchMode.DIJKSTRA, 8);
+                    solver.setFusedSearch(fused);
+                    List<RequestResult> results = new ArrayList<>();
+                    solver.solve(requests.iterator(), results::add);
+                    assertEquals(requests.size(), results.size());
+                    for (int i = 0; i < requests.size(); i++) {
+                        RequestResult result = results.get(i);
+                        Request request = requests.get(i);
+                        assertSame(request, result.getRequest(), "порядок результатов");
+                        String from = request.getFromCity();
+                        String to = request.getToCity();
+                        String message = (fused ? "fused " : "batch ") + from + " -> " + to;
+                        TestNetworks.assertSameRoute(graph.findShortestRoute(from, to, Criteria.LENGTH),
+                            result.getShortestRoute(), Criteria.LENGTH, message);
+                        TestNetworks.assertSameRoute(graph.findShortestRoute(from, to, Criteria.TIME),
+                            result.getFastestRoute(), Criteria.TIME, message);
+                        TestNetworks.assertSameRoute(graph.findShortestRoute(from, to, Criteria.COST),
+                            result.getCheapestRoute(), Criteria.COST, message);
+                        assertSameTotals(graph.findCompromiseRoute(from, to, request.getPriorities()),
+                            result.getCompromiseRoute(), message);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void compromiseRouteIsLexicographicMinimumOfParetoFront() {
+        Random random = new Random(40);
+        for (int network = 0; network < NETWORKS; network++) {
+            int cities = 3 + random.nextInt(30);
+            Graph graph = TestNetworks.build(cities, TestNetworks.randomRoads(random, cities));
+            for (int query = 0; query < QUERIES; query++) {
+                String from = TestNetworks.name(random.nextInt(cities));
+                String to = TestNetworks.name(random.nextInt(cities));
+                List<Criteria> priorities = randomPriorities(random);
+                ParetoFront front = graph.findParetoRoutes(from, to);
+                Route compromise = graph.findCompromiseRoute(from, to, priorities);
+                String message = from + " -> " + to + " " + priorities;
+                if (front.isEmpty() || from.equals(to)) {
+                    assertTrue(compromise.isEmpty(), message);
+                    continue;
+                }
+                assertFalse(front.isTruncated(), message);
+                Route best = front.getRoutes().stream().min(lexicographic(priorities)).orElseThrow();
+                assertSameTotals(best, compromise, message);
+                TestNetworks.assertConnected(compromise, message);
+            }
+        }
+    }
+
+    @Test
+    void paretoFrontIsNonDominatedAndContainsOptima() {
+        Random random = new Random(50);
+        for (int network = 0; network < NETWORKS; network++) {
+            int cities = 3 + random.nextInt(30);
+            Graph graph = TestNetworks.build(cities, TestNetworks.randomRoads(random, cities));
+            for (int query = 0; query < QUERIES; query++) {
+                String from = TestNetworks.name(random.nextInt(cities));
+                String to = TestNetworks.name(random.nextInt(cities));
+                List<Route> routes = graph.findParetoRoutes(from, to).getRoutes();
+                String message = from + " -> " + to;
+                for (Route route : routes) {
+                    TestNetworks.assertConnected(route, message);
+                    for (Route other : routes) {
+                        assertFalse(route != other && dominates(other, route), message + ": " + other + " лучше " + route);
+                    }
+                }
+                for (Criteria criteria : Criteria.values()) {
+                    Route optimum = graph.findShortestRoute(from, to, criteria);
+                    if (optimum.isEmpty()) {
+                        continue;
+                    }
+                    int best = routes.stream().mapToInt(route -> TestNetworks.total(route, criteria)).min().orElseThrow();
+                    assertEquals(TestNetworks.total(optimum, criteria), best, message + " " + criteria);
+                }
+            }
+        }
+    }
+
+    /**
+     * Подготовка структур, которых требует режим; число ориентиров и способ их выбора чередуются
+     */
+    private static void prepare(Graph graph, SearchMode mode, int network) {
+        switch (mode) {
+            case ALT -> graph.prepareLandmarks(1 + network % 4,
+                network % 2 == 0 ? LandmarkSelection.FARTHEST : LandmarkSelection.AVOID);
+            case CONTRACTION_HIERARCHY -> graph.prepareContractionHierarchies();
+            case PARTITION_OVERLAY -> graph.preparePartitionOverlay();
+            default -> {
+            }
+        }
+    }
+
+    private static List<String> randomCities(Random random, int cities, int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(TestNetworks.name(random.nextInt(cities)));
+        }
+        return names;
+    }
+
+    private static List<Criteria> randomPriorities(Random random) {
+        List<Criteria> priorities = new ArrayList<>(Arrays.asList(Criteria.values()));
+        Collections.shuffle(priorities, random);
+        return priorities;
+    }
+
+    private static Comparator<Route> lexicographic(List<Criteria> priorities) {
+        Comparator<Route> order = Comparator.comparingInt(route -> TestNetworks.total(route, priorities.get(0)));
+        for (Criteria criteria : priorities.subList(1, priorities.size())) {
+            order = order.thenComparingInt(route -> TestNetworks.total(route, criteria));
+        }
+        return order;
+    }
+
+    private static boolean dominates(Route a, Route b) {
+        boolean strictly = false;
+        for (Criteria criteria : Criteria.values()) {
+            int x = TestNetworks.total(a, criteria);
+            int y = TestNetworks.total(b, criteria);
+            if (x > y) {
+                return false;
+            }
+            strictly |= x < y;
+        }
+        return strictly;
+    }
+
+    private static void assertSameTotals(Route expected, Route actual, String message) {
+        assertEquals(expected.isEmpty(), actual.isEmpty(), message);
+        for (Criteria criteria : Criteria.values()) {
+            assertEquals(TestNetworks.total(expected, criteria), TestNetworks.total(actual, criteria),
+                message + " " + criteria);
+        }
+    }
+}
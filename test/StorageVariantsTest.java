@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Способы хранения и загрузки графа (куча, вне кучи, сжатый граф, снимок, парсеры)
+ * на случайных сетях сверяются с поиском Дейкстры по графу, построенному на куче
+ */
+public class StorageVariantsTest {
+    private static final int NETWORKS = 15;
+    private static final int QUERIES = 20;
+
+    /**
+     * Способ получения графа из тех же городов и дорог
+     */
+    enum Storage {
+        OFF_HEAP, COMPRESSED, SNAPSHOT, PARSER, FAST_PARSER, PARALLEL_PARSER, PARSED_COMPRESSED
+    }
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(Storage.class)
+    void storageMatchesHeapGraph(Storage storage) throws IOException {
+        Random random = new Random(100 + storage.ordinal());
+        for (int network = 0; network < NETWORKS; network++) {
+            int cities = 3 + random.nextInt(60);
+            List<Road> roads = TestNetworks.randomRoads(random, cities);
+            Graph reference = TestNetworks.build(cities, roads);
+            Graph graph = load(storage, cities, roads, network);
+            assertEquals(reference.cityCount(), graph.cityCount(), storage.name());
+            assertEquals(reference.edgeCount(), graph.edgeCount(), storage.name());
+
+            boolean compressed = graph.isCompressed();
+            if (!compressed) {
+                graph.prepareLandmarks(2, LandmarkSelection.FARTHEST);
+                graph.prepareContractionHierarchies();
+                graph.preparePartitionOverlay();
+            }
+            List<SearchMode> modes = compressed ? List.of(SearchMode.DIJKSTRA) : Arrays.asList(SearchMode.values());
+            for (int query = 0; query < QUERIES; query++) {
+                String from = TestNetworks.name(random.nextInt(cities));
+                String to = TestNetworks.name(random.nextInt(cities));
+                String message = storage + " " + from + " -> " + to;
+                for (Criteria criteria : Criteria.values()) {
+                    Route expected = reference.findShortestRoute(from, to, criteria);
+                    for (SearchMode mode : modes) {
+                        TestNetworks.assertSameRoute(expected, graph.findShortestRoute(from, to, criteria, mode),
+                            criteria, message + " " + mode);
+                    }
+                }
+                List<Route> byCriteria = graph.findRoutesByAllCriteria(from, to);
+                for (Criteria criteria : Criteria.values()) {
+                    TestNetworks.assertSameRoute(reference.findShortestRoute(from, to, criteria),
+                        byCriteria.get(criteria.ordinal()), criteria, message + " по всем критериям");
+                }
+                List<Criteria> priorities = List.of(Criteria.TIME, Criteria.COST, Criteria.LENGTH);
+                Route expected = reference.findCompromiseRoute(from, to, priorities);
+                Route actual = graph.findCompromiseRoute(from, to, priorities);
+                assertEquals(expected.isEmpty(), actual.isEmpty(), message);
+                for (Criteria criteria : Criteria.values()) {
+                    assertEquals(TestNetworks.total(expected, criteria), TestNetworks.total(actual, criteria),
+                        message + " компромисс " + criteria);
+                }
+            }
+        }
+    }
+
+    @Test
+    void compressedGraphRejectsOtherModesAndUpdates() {
+        Random random = new Random(200);
+        Graph graph = TestNetworks.build(20, TestNetworks.randomRoads(random, 20));
+        graph.compress();
+        assertTrue(graph.isCompressed());
+        assertThrows(IllegalStateException.class,
+            () -> graph.findShortestRoute("c0", "c1", Criteria.LENGTH, SearchMode.BIDIRECTIONAL));
+        GraphUpdate update = new GraphUpdate();
+        update.addCity(new City(100, "новый"));
+        assertThrows(IllegalStateException.class, () -> graph.apply(update));
+        assertThrows(IllegalStateException.class, graph::freeze);
+    }
+
+    private Graph load(Storage storage, int cities, List<Road> roads, int network) throws IOException {
+        Path input = directory.resolve("input" + network + ".txt");
+        switch (storage) {
+            case OFF_HEAP -> {
+                Graph graph = TestNetworks.build(cities, roads);
+                graph.moveOffHeap();
+                return graph;
+            }
+            case COMPRESSED -> {
+                Graph graph = TestNetworks.build(cities, roads);
+                graph.compress();
+                return graph;
+            }
+            case SNAPSHOT -> {
+                Path snapshot = directory.resolve("graph" + network + ".bin");
+                GraphSnapshot.write(TestNetworks.build(cities, roads), snapshot);
+                return GraphSnapshot.load(snapshot);
+            }
+            case PARSER -> {
+                TestNetworks.writeInput(input, cities, roads);
+                return new Parser(input.toString()).parse();
+            }
+            case FAST_PARSER -> {
+                TestNetworks.writeInput(input, cities, roads);
+                return new FastParser(input.toString()).parse();
+            }
+            case PARALLEL_PARSER -> {
+                TestNetworks.writeInput(input, cities, roads);
+                return new FastParser(input.toString(), true, false).parse();
+            }
+            case PARSED_COMPRESSED -> {
+                TestNetworks.writeInput(input, cities, roads);
+                return new FastParser(input.toString(), true, false).parseCompressed();
+            }
+            default -> throw new IllegalArgumentException(storage.name());
+        }
+    }
+}
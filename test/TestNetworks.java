@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Случайные сети для тестов и сверка маршрутов.
+ * Города называются c0, c1, ...; дороги образуют связное дерево из всех городов,
+ * кроме последнего, плюс случайные дороги (в том числе параллельные и петли).
+ * Последний город без дорог: маршруты до него пустые
+ */
+final class TestNetworks {
+    private TestNetworks() {
+    }
+
+    static String name(int city) {
+        return "c" + city;
+    }
+
+    /**
+     * Дороги случайной сети из cities городов
+     */
+    static List<Road> randomRoads(Random random, int cities) {
+        List<Road> roads = new ArrayList<>();
+        int connected = cities - 1;
+        for (int city = 1; city < connected; city++) {
+            roads.add(randomRoad(random, city, random.nextInt(city)));
+        }
+        for (int i = 0; i < connected; i++) {
+            roads.add(randomRoad(random, random.nextInt(connected), random.nextInt(connected)));
+        }
+        return roads;
+    }
+
+    private static Road randomRoad(Random random, int from, int to) {
+        return new Road(name(from), name(to), 1 + random.nextInt(50), 1 + random.nextInt(50), random.nextInt(50));
+    }
+
+    /**
+     * Граф из cities городов и дорог roads
+     */
+    static Graph build(int cities, List<Road> roads) {
+        Graph graph = new Graph();
+        for (int city = 0; city < cities; city++) {
+            graph.addCity(new City(city + 1, name(city)));
+        }
+        for (Road road : roads) {
+            graph.addRoad(road);
+        }
+        return graph;
+    }
+
+    /**
+     * Входной файл в формате input.txt с одним запросом
+     */
+    static void writeInput(Path path, int cities, List<Road> roads) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("[CITIES]\n");
+            for (int city = 0; city < cities; city++) {
+                out.write((city + 1) + ": " + name(city) + "\n");
+            }
+            out.write("[ROADS]\n");
+            for (Road road : roads) {
+                out.write(id(road.getFromCity()) + " - " + id(road.getToCity()) + ": "
+                    + road.getLength() + ", " + road.getTime() + ", " + road.getCost() + "\n");
+            }
+            out.write("[REQUESTS]\n");
+            out.write(name(0) + " -> " + name(1) + " | (Д,В,С)\n");
+        }
+    }
+
+    private static int id(String name) {
+        return Integer.parseInt(name.substring(1)) + 1;
+    }
+
+    static int total(Route route, Criteria criteria) {
+        return switch (criteria) {
+            case LENGTH -> route.getTotalLength();
+            case TIME -> route.getTotalTime();
+            case COST -> route.getTotalCost();
+        };
+    }
+
+    /**
+     * Маршрут actual так же оптимален по критерию, как expected: оба пустые или оба
+     * соединяют те же города с той же суммой. Сам путь при равных суммах может отличаться,
+     * но его сегменты должны идти подряд
+     */
+    static void assertSameRoute(Route expected, Route actual, Criteria criteria, String message) {
+        assertEquals(expected.isEmpty(), actual.isEmpty(), message);
+        if (expected.isEmpty()) {
+            return;
+        }
+        assertEquals(total(expected, criteria), total(actual, criteria), message + " " + criteria);
+        assertConnected(actual, message);
+        List<String> want = expected.getCityNames();
+        List<String> got = actual.getCityNames();
+        assertEquals(want.get(0), got.get(0), message);
+        assertEquals(want.get(want.size() - 1), got.get(got.size() - 1), message);
+    }
+
+    /**
+     * Каждый сегмент маршрута начинается в городе, где закончился предыдущий
+     */
+    static void assertConnected(Route route, String message) {
+        for (int i = 1; i < route.getSegmentCount(); i++) {
+            assertTrue(route.getSegment(i).getFromCity().equals(route.getSegment(i - 1).getToCity()),
+                message + ": разрыв маршрута " + route);
+        }
+    }
+}